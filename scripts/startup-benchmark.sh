@@ -0,0 +1,77 @@
+#!/bin/sh
+# Time to first digest for short-lived sha256sum runs: the wall time of one run hashing a small file, which is
+# almost all JVM startup and class loading. Compares the jar on a stock JVM, with the AppCDS archive, and the jlink
+# image with and without its archives. Build everything first with
+#   gradlew jar cdsArchive runtimeImage
+# Usage: scripts/startup-benchmark.sh [RUNS]
+set -e
+cd "$(dirname "$0")/.."
+
+RUNS=${1:-20}
+JAR=$PWD/build/libs/lab-sha-1.0.jar
+ARCHIVE=$PWD/build/cds/app.jsa
+IMAGE=$PWD/build/image
+MAIN=uk.ac.nottingham.cryptography.Sha256Sum
+INCUBATOR="--add-modules jdk.incubator.vector,jdk.incubator.foreign"
+INPUT=$(mktemp)
+trap 'rm -f "$INPUT"' EXIT
+echo "from:20-60-40.23311492;to:35-01-17.11911597;stoken:7a2afc675906eb180ba2e18b;amount:1000" > "$INPUT"
+
+now() {
+    date +%s%N
+}
+
+# Runs the command RUNS times after one warm up run (for the page cache), checks its digest against the first
+# configuration's, and prints the mean and best time in milliseconds
+measure() {
+    label=$1
+    shift
+    digest=$("$@" "$INPUT" 2>/dev/null | cut -d' ' -f1)
+    if [ -z "$EXPECTED" ]; then
+        EXPECTED=$digest
+    elif [ "$digest" != "$EXPECTED" ]; then
+        echo "$label: wrong digest $digest" >&2
+        exit 1
+    fi
+    total=0
+    best=
+    i=0
+    while [ "$i" -lt "$RUNS" ]; do
+        start=$(now)
+        "$@" "$INPUT" > /dev/null 2>&1
+        elapsed=$(( ($(now) - start) / 1000 ))
+        total=$((total + elapsed))
+        if [ -z "$best" ] || [ "$elapsed" -lt "$best" ]; then
+            best=$elapsed
+        fi
+        i=$((i + 1))
+    done
+    printf "%-32s mean %4d.%d ms   best %4d.%d ms\n" "$label" \
+        $((total / RUNS / 1000)) $((total / RUNS % 1000 / 100)) $((best / 1000)) $((best % 1000 / 100))
+}
+
+skip() {
+    printf "%-32s skipped, %s not found\n" "$1" "$2"
+}
+
+echo "$RUNS runs each"
+EXPECTED=
+if [ ! -f "$JAR" ]; then
+    echo "$JAR not found, run gradlew jar" >&2
+    exit 1
+fi
+measure "class path" java $INCUBATOR --enable-native-access=ALL-UNNAMED -cp "$JAR" $MAIN
+if [ -f "$ARCHIVE" ]; then
+    measure "class path + AppCDS" java $INCUBATOR --enable-native-access=ALL-UNNAMED \
+        -XX:SharedArchiveFile="$ARCHIVE" -cp "$JAR" $MAIN
+else
+    skip "class path + AppCDS" "$ARCHIVE"
+fi
+if [ -d "$IMAGE" ]; then
+    measure "jlink image, no CDS" "$IMAGE/bin/java" $INCUBATOR -Xshare:off \
+        -m uk.ac.nottingham.cryptography/$MAIN
+    measure "jlink image + JDK CDS" "$IMAGE/bin/java" $INCUBATOR -m uk.ac.nottingham.cryptography/$MAIN
+    measure "jlink image + AppCDS" "$IMAGE/bin/sha256sum"
+else
+    skip "jlink image" "$IMAGE"
+fi
@@ -0,0 +1,71 @@
+package uk.ac.nottingham.cryptography.banking;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/***
+ * Per transaction cost of authentication and verification, using the message from Main
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+public class BankBenchmark {
+    @Param({"SECRET_PREFIX", "HMAC_SHA256", "SECRET_PREFIX_SHA512_256"})
+    public AuthenticationMode mode;
+
+    private Bank bank;
+    private byte[] transaction;
+    private byte[] token;
+    private ByteBuffer directTransaction;
+    private List<byte[]> batchTransactions;
+    private List<byte[]> batchTokens;
+
+    @Setup
+    public void setup() throws IOException {
+        bank = new Bank(mode);
+        transaction = "from:20-60-40.23311492;to:35-01-17.11911597;stoken:7a2afc675906eb180ba2e18b;amount:1000"
+                .getBytes(StandardCharsets.UTF_8);
+        token = bank.authenticateTransaction(transaction);
+        directTransaction = ByteBuffer.allocateDirect(transaction.length);
+        directTransaction.put(transaction).flip();
+
+        batchTransactions = new ArrayList<>();
+        batchTokens = new ArrayList<>();
+        for (int i = 0; i < 10000; i++) {
+            batchTransactions.add(transaction);
+            batchTokens.add(token);
+        }
+    }
+
+    @Benchmark
+    public byte[] authenticateTransaction() throws IOException {
+        return bank.authenticateTransaction(transaction);
+    }
+
+    @Benchmark
+    public BankTransaction verifyTransaction() throws InvalidTransactionException {
+        return bank.verifyTransaction(transaction, token);
+    }
+
+    @Benchmark
+    public long parseTransaction() throws InvalidTransactionException {
+        return BankTransaction.parse(transaction).getAmountMinorUnits();
+    }
+
+    @Benchmark
+    public BankTransaction verifyDirectBuffer() throws InvalidTransactionException {
+        return bank.verifyTransaction(directTransaction, token);
+    }
+
+    // Per op is 10000 transactions
+    @Benchmark
+    public List<VerificationResult> verifyTransactions() {
+        return bank.verifyTransactions(batchTransactions, batchTokens);
+    }
+}
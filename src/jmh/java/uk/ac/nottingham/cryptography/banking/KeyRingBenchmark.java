@@ -0,0 +1,64 @@
+package uk.ac.nottingham.cryptography.banking;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/***
+ * Verifying with a key looked up in a KeyRing, against the bank's own key, and a cold ring where every
+ * lookup misses and prepares the key again
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+public class KeyRingBenchmark {
+    private static final String MESSAGE =
+            "from:20-60-40.23311492;to:35-01-17.11911597;stoken:7a2afc675906eb180ba2e18b;amount:1000";
+    private static final int ACCOUNTS = 1000;
+
+    @Param({"SECRET_PREFIX", "HMAC_SHA256", "SECRET_PREFIX_SHA512_256"})
+    public AuthenticationMode mode;
+
+    private Bank bank;
+    private Bank cold;
+    private byte[] transaction;
+    private byte[] defaultToken;
+    private byte[][] tokens;
+    private String[] ids;
+    private int next;
+
+    @Setup
+    public void setup() throws IOException {
+        KeyRing.KeySource source = id -> KeyRing.Keys.of("key for " + id);
+        bank = new Bank(new KeyRing(mode, source));
+        // Smaller than the accounts cycled through, so every lookup loads its key
+        cold = new Bank(new KeyRing(mode, source, ACCOUNTS / 2));
+        transaction = MESSAGE.getBytes(StandardCharsets.UTF_8);
+        defaultToken = bank.authenticateTransaction(transaction);
+        ids = new String[ACCOUNTS];
+        tokens = new byte[ACCOUNTS][];
+        for (int i = 0; i < ACCOUNTS; i++) {
+            ids[i] = "acct" + i;
+            tokens[i] = bank.authenticateTransaction(ids[i], transaction);
+        }
+    }
+
+    @Benchmark
+    public BankTransaction defaultKey() throws InvalidTransactionException {
+        return bank.verifyTransaction(transaction, defaultToken);
+    }
+
+    @Benchmark
+    public BankTransaction keyRing() throws InvalidTransactionException {
+        int i = next++ % ACCOUNTS;
+        return bank.verifyTransaction(ids[i], transaction, tokens[i]);
+    }
+
+    @Benchmark
+    public BankTransaction keyRingMiss() throws InvalidTransactionException {
+        int i = next++ % ACCOUNTS;
+        return cold.verifyTransaction(ids[i], transaction, tokens[i]);
+    }
+}
@@ -0,0 +1,36 @@
+package uk.ac.nottingham.cryptography.banking;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/***
+ * Cost of BankMetrics on the verify path, comparing verifyTransaction with metrics enabled and disabled
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+public class MetricsOverheadBenchmark {
+    @Param({"true", "false"})
+    public boolean metrics;
+
+    private Bank bank;
+    private byte[] transaction;
+    private byte[] token;
+
+    @Setup
+    public void setup() throws IOException {
+        bank = new Bank();
+        bank.getMetrics().setEnabled(metrics);
+        transaction = "from:20-60-40.23311492;to:35-01-17.11911597;stoken:7a2afc675906eb180ba2e18b;amount:1000"
+                .getBytes(StandardCharsets.UTF_8);
+        token = bank.authenticateTransaction(transaction);
+    }
+
+    @Benchmark
+    public BankTransaction verifyTransaction() throws InvalidTransactionException {
+        return bank.verifyTransaction(transaction, token);
+    }
+}
@@ -0,0 +1,67 @@
+package uk.ac.nottingham.cryptography.banking;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/***
+ * ReplayGuard throughput with several threads inserting new tokens and checking replays in the same table
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+public class ReplayGuardBenchmark {
+    private static final int CAPACITY = 1 << 22;
+    private static final int REPLAYED_TOKENS = 1 << 16;
+
+    private ReplayGuard guard;
+
+    @Setup(Level.Iteration)
+    public void setup() {
+        // A short window keeps the table from filling up with inserted tokens
+        guard = ReplayGuard.withTimeWindow(CAPACITY, Duration.ofMillis(200));
+        for (int i = 0; i < REPLAYED_TOKENS; i++) {
+            guard.checkAndInsert(i, ~i);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class ThreadTokens {
+        long next;
+        int replay;
+
+        @Setup
+        public void setup() {
+            next = Thread.currentThread().getId() << 40;
+        }
+    }
+
+    @Benchmark
+    @Threads(4)
+    public ReplayGuard.Result insert(ThreadTokens tokens) {
+        long token = tokens.next++;
+        return guard.checkAndInsert(token, (int) token);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public ReplayGuard.Result replay(ThreadTokens tokens) {
+        int i = tokens.replay++ & (REPLAYED_TOKENS - 1);
+        return guard.checkAndInsert(i, ~i);
+    }
+
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(2)
+    public ReplayGuard.Result mixedInsert(ThreadTokens tokens) {
+        return insert(tokens);
+    }
+
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(2)
+    public ReplayGuard.Result mixedReplay(ThreadTokens tokens) {
+        return replay(tokens);
+    }
+}
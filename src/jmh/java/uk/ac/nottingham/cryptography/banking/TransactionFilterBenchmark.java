@@ -0,0 +1,47 @@
+package uk.ac.nottingham.cryptography.banking;
+
+import org.openjdk.jmh.annotations.*;
+import uk.ac.nottingham.cryptography.hashing.LengthExtender;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/***
+ * Cost of screening a transaction with TransactionFilter, next to the token check it runs ahead of
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+public class TransactionFilterBenchmark {
+    private static final String MESSAGE =
+            "from:20-60-40.23311492;to:35-01-17.11911597;stoken:7a2afc675906eb180ba2e18b;amount:1000";
+
+    private final TransactionFilter filter = new TransactionFilter(32);
+    private final Bank bank = new Bank();
+    private byte[] transaction;
+    private byte[] forged;
+    private byte[] token;
+
+    @Setup
+    public void setup() throws Exception {
+        transaction = MESSAGE.getBytes(StandardCharsets.UTF_8);
+        token = bank.authenticateTransaction(transaction);
+        forged = new LengthExtender(transaction, token,
+                ";amount:100000".getBytes(StandardCharsets.UTF_8)).extend(32).getMessage();
+    }
+
+    @Benchmark
+    public FailureReason clean() {
+        return filter.check(transaction);
+    }
+
+    @Benchmark
+    public FailureReason forged() {
+        return filter.check(forged);
+    }
+
+    @Benchmark
+    public boolean tokenCheck() {
+        return bank.isAuthentic(transaction, token);
+    }
+}
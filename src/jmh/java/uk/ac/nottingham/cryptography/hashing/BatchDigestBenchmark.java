@@ -0,0 +1,61 @@
+package uk.ac.nottingham.cryptography.hashing;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/***
+ * Many short independent messages, the shape of Bank verification, hashed one at a time or in SIMD lanes
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Thread)
+public class BatchDigestBenchmark {
+    @Param({"1024"})
+    public int count;
+
+    @Param({"120"})
+    public int length;
+
+    private byte[][] messages;
+    private byte[][] out;
+    private Sha256Hasher hasher;
+    private BatchHasher scalar;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(42);
+        messages = new byte[count][length];
+        for (byte[] message : messages) {
+            random.nextBytes(message);
+        }
+        out = new byte[count][Sha256Hasher.DIGEST_LENGTH];
+        hasher = new Sha256Hasher();
+        scalar = new ScalarBatchHasher();
+    }
+
+    @Benchmark
+    public byte[][] digestBatch(ByteCounter counter) {
+        counter.bytes += (long) count * length;
+        SHA256.digestBatch(messages, out);
+        return out;
+    }
+
+    @Benchmark
+    public byte[][] scalarBatch(ByteCounter counter) {
+        counter.bytes += (long) count * length;
+        scalar.digest(messages, out);
+        return out;
+    }
+
+    @Benchmark
+    public byte[][] hasherLoop(ByteCounter counter) {
+        counter.bytes += (long) count * length;
+        for (int i = 0; i < count; i++) {
+            hasher.update(messages[i]);
+            hasher.digestInto(out[i], 0);
+        }
+        return out;
+    }
+}
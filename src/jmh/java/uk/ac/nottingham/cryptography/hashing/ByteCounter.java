@@ -0,0 +1,14 @@
+package uk.ac.nottingham.cryptography.hashing;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+/***
+ * Reports bytes hashed alongside ops, so throughput runs show bytes/s (divide by 1e6 for MB/s)
+ */
+@State(Scope.Thread)
+@AuxCounters(AuxCounters.Type.OPERATIONS)
+public class ByteCounter {
+    public long bytes;
+}
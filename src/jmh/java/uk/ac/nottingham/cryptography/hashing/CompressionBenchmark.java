@@ -0,0 +1,78 @@
+package uk.ac.nottingham.cryptography.hashing;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/***
+ * Single block costs of the message schedule and the compression function
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+public class CompressionBenchmark {
+    private int[] messageBlock;
+    private int[] words;
+    private int[] state;
+    private byte[] block;
+    private CompressionEngine referenceEngine;
+    private CompressionEngine unrolledEngine;
+    private CompressionEngine nativeEngine;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(42);
+        messageBlock = new int[16];
+        for (int i = 0; i < 16; i++) {
+            messageBlock[i] = random.nextInt();
+        }
+        words = new int[64];
+        state = new int[8];
+        SHA256.initialiseState(state);
+        SHA256.expandWords(messageBlock, words);
+        block = new byte[64];
+        random.nextBytes(block);
+        referenceEngine = CompressionEngine.reference();
+        unrolledEngine = CompressionEngine.unrolled();
+        // Falls back to the unrolled engine when libcrypto cannot be loaded
+        nativeEngine = CompressionEngine.forName("native");
+    }
+
+    @Benchmark
+    public int[] expandWords() {
+        SHA256.expandWords(messageBlock, words);
+        return words;
+    }
+
+    @Benchmark
+    public int[] compressionFunction() {
+        SHA256.compressionFunction(state, words);
+        return state;
+    }
+
+    @Benchmark
+    public int[] expandAndCompress() {
+        SHA256.expandWords(messageBlock, words);
+        SHA256.compressionFunction(state, words);
+        return state;
+    }
+
+    @Benchmark
+    public int[] referenceEngine() {
+        referenceEngine.compress(state, block, 0);
+        return state;
+    }
+
+    @Benchmark
+    public int[] unrolledEngine() {
+        unrolledEngine.compress(state, block, 0);
+        return state;
+    }
+
+    @Benchmark
+    public int[] nativeEngine() {
+        nativeEngine.compress(state, block, 0);
+        return state;
+    }
+}
@@ -0,0 +1,85 @@
+package uk.ac.nottingham.cryptography.hashing;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/***
+ * Whole message hashing, compared against the JDK SHA-256 implementation
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Thread)
+public class DigestBenchmark {
+    @Param({"0", "64", "1024", "16384", "1048576", "67108864", "1073741824"})
+    public int size;
+
+    private byte[] message;
+    private byte[] suffix;
+    private byte[] token;
+    private MessageDigest jdkDigest;
+    private Sha256Hasher hasher;
+    private Sha256Hasher referenceHasher;
+    private Sha256Hasher nativeHasher;
+    private byte[] output;
+
+    @Setup
+    public void setup() throws IOException, NoSuchAlgorithmException {
+        message = new byte[size];
+        new Random(42).nextBytes(message);
+        suffix = ";amount:100000".getBytes();
+        token = SHA256.digest(new ByteArrayInputStream(message));
+        jdkDigest = MessageDigest.getInstance("SHA-256");
+        hasher = new Sha256Hasher(CompressionEngine.unrolled());
+        referenceHasher = new Sha256Hasher(CompressionEngine.reference());
+        nativeHasher = new Sha256Hasher(CompressionEngine.forName("native"));
+        output = new byte[Sha256Hasher.DIGEST_LENGTH];
+    }
+
+    @Benchmark
+    public byte[] digest(ByteCounter counter) throws IOException {
+        counter.bytes += size;
+        return SHA256.digest(new ByteArrayInputStream(message));
+    }
+
+    @Benchmark
+    public byte[] continueDigest(ByteCounter counter) throws IOException {
+        counter.bytes += size;
+        return SHA256.continueDigest(new ByteArrayInputStream(message), token, 64);
+    }
+
+    @Benchmark
+    public byte[] hasher(ByteCounter counter) {
+        counter.bytes += size;
+        hasher.update(message, 0, size);
+        hasher.digestInto(output, 0);
+        return output;
+    }
+
+    @Benchmark
+    public byte[] referenceHasher(ByteCounter counter) {
+        counter.bytes += size;
+        referenceHasher.update(message, 0, size);
+        referenceHasher.digestInto(output, 0);
+        return output;
+    }
+
+    @Benchmark
+    public byte[] nativeHasher(ByteCounter counter) {
+        counter.bytes += size;
+        nativeHasher.update(message, 0, size);
+        nativeHasher.digestInto(output, 0);
+        return output;
+    }
+
+    @Benchmark
+    public byte[] messageDigestBaseline(ByteCounter counter) {
+        counter.bytes += size;
+        return jdkDigest.digest(message);
+    }
+}
@@ -0,0 +1,51 @@
+package uk.ac.nottingham.cryptography.hashing;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/***
+ * File hashing through FileChannel (read or mapped) compared with going through an InputStream
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Thread)
+public class FileDigestBenchmark {
+    @Param({"4096", "1048576", "268435456"})
+    public int size;
+
+    private Path file;
+
+    @Setup
+    public void setup() throws IOException {
+        file = Files.createTempFile("sha256-bench", ".bin");
+        byte[] data = new byte[size];
+        new Random(42).nextBytes(data);
+        Files.write(file, data);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    public byte[] digestPath(ByteCounter counter) throws IOException {
+        counter.bytes += size;
+        return SHA256.digest(file);
+    }
+
+    @Benchmark
+    public byte[] digestInputStream(ByteCounter counter) throws IOException {
+        counter.bytes += size;
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(file))) {
+            return SHA256.digest(in);
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package uk.ac.nottingham.cryptography.hashing;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/***
+ * Fixed length fast paths against the generic digest and a reused hasher, for digest sized inputs and a
+ * transaction sized record
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+public class FixedLengthBenchmark {
+    @Param({"32", "64", "88"})
+    public int size;
+
+    private byte[] message;
+    private FixedLengthHasher fixed;
+    private Sha256Hasher hasher;
+    private byte[] output;
+
+    @Setup
+    public void setup() {
+        message = new byte[size];
+        new Random(42).nextBytes(message);
+        fixed = new FixedLengthHasher(size);
+        hasher = new Sha256Hasher(CompressionEngine.unrolled());
+        output = new byte[Sha256Hasher.DIGEST_LENGTH];
+    }
+
+    @Benchmark
+    public byte[] digest(ByteCounter counter) throws IOException {
+        counter.bytes += size;
+        return SHA256.digest(new ByteArrayInputStream(message));
+    }
+
+    @Benchmark
+    public byte[] segmentDigest(ByteCounter counter) {
+        counter.bytes += size;
+        return SHA256.digest(message);
+    }
+
+    @Benchmark
+    public byte[] hasher(ByteCounter counter) {
+        counter.bytes += size;
+        hasher.update(message, 0, size);
+        hasher.digestInto(output, 0);
+        return output;
+    }
+
+    @Benchmark
+    public byte[] fixedLengthHasher(ByteCounter counter) {
+        counter.bytes += size;
+        fixed.digestInto(message, 0, output, 0);
+        return output;
+    }
+
+    // SHA256.digest32 or digest64, with metrics, for the sizes they cover
+    @Benchmark
+    public byte[] fixedDigest(ByteCounter counter) {
+        counter.bytes += size;
+        if (size == 32) {
+            return SHA256.digest32(message);
+        } else if (size == 64) {
+            return SHA256.digest64(message);
+        }
+        return fixed.digest(message);
+    }
+}
@@ -0,0 +1,37 @@
+package uk.ac.nottingham.cryptography.hashing;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/***
+ * Sweeping candidate key lengths, each op produces 4096 extensions
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+public class LengthExtenderBenchmark {
+    @Param({"14", "4096"})
+    public int suffixLength;
+
+    private byte[] message;
+    private byte[] token;
+    private byte[] suffix;
+
+    @Setup
+    public void setup() throws IOException {
+        message = "from:20-60-40.23311492;to:35-01-17.11911597;stoken:7a2afc675906eb180ba2e18b;amount:1000"
+                .getBytes(StandardCharsets.UTF_8);
+        token = SHA256.digest(new ByteArrayInputStream(message));
+        suffix = new byte[suffixLength];
+    }
+
+    @Benchmark
+    public List<LengthExtender.Extension> extendAll() {
+        return new LengthExtender(message, token, suffix).extendAll(1, 4096);
+    }
+}
@@ -0,0 +1,57 @@
+package uk.ac.nottingham.cryptography.hashing;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/***
+ * Cost of checking one proof-of-work candidate, reusing the prefix midstate and constant schedule words,
+ * against copying a hasher that has absorbed the prefix and finishing it with the nonce
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Thread)
+public class NonceSearchBenchmark {
+    @Param({"32", "60", "200"})
+    public int prefixLength;
+
+    private NonceSearch.Target target;
+    private NonceSearch.Candidate candidate;
+    private Sha256Hasher prefixHasher;
+    private Sha256Hasher hasher;
+    private byte[] nonceBytes;
+    private byte[] output;
+    private long nonce;
+
+    @Setup
+    public void setup() {
+        byte[] prefix = new byte[prefixLength];
+        new Random(42).nextBytes(prefix);
+        // Unreachable, so every candidate is fully hashed
+        target = NonceSearch.Target.leadingZeroBits(256);
+        candidate = new NonceSearch.Candidate(new NonceSearch.Midstate(prefix));
+        prefixHasher = new Sha256Hasher();
+        prefixHasher.update(prefix);
+        hasher = new Sha256Hasher();
+        nonceBytes = new byte[NonceSearch.NONCE_LENGTH];
+        output = new byte[Sha256Hasher.DIGEST_LENGTH];
+    }
+
+    @Benchmark
+    public boolean midstateCandidate() {
+        return candidate.meets(nonce++, target);
+    }
+
+    @Benchmark
+    public boolean hasherCandidate() {
+        long n = nonce++;
+        for (int i = 0; i < 8; i++) {
+            nonceBytes[i] = (byte) (n >>> (56 - i * 8));
+        }
+        hasher.copyFrom(prefixHasher);
+        hasher.update(nonceBytes);
+        hasher.digestInto(output, 0);
+        return target.isMetBy(output);
+    }
+}
@@ -0,0 +1,38 @@
+package uk.ac.nottingham.cryptography.hashing;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/***
+ * Cost of producing padded blocks, without any hashing
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Thread)
+public class PaddedInputStreamBenchmark {
+    @Param({"0", "120", "1024", "1048576"})
+    public int size;
+
+    private byte[] message;
+    private byte[] block;
+
+    @Setup
+    public void setup() {
+        message = new byte[size];
+        block = new byte[PaddedInputStream.BLOCK_LENGTH];
+    }
+
+    @Benchmark
+    public int readBlocks(ByteCounter counter) throws IOException {
+        counter.bytes += size;
+        PaddedInputStream ps = new PaddedInputStream(new ByteArrayInputStream(message));
+        int blocks = 0;
+        while (ps.read(block) > 0) {
+            blocks++;
+        }
+        return blocks;
+    }
+}
@@ -0,0 +1,48 @@
+package uk.ac.nottingham.cryptography.hashing;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/***
+ * Hashing messages that share a long prefix, by cloning a midstate or by rehashing the prefix
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+public class PrefixCloneBenchmark {
+    @Param({"64", "4096"})
+    public int prefixLength;
+
+    private byte[] prefix;
+    private byte[] suffix;
+    private MessageDigest prefixDigest;
+    private MessageDigest digest;
+
+    @Setup
+    public void setup() throws NoSuchAlgorithmException {
+        prefix = new byte[prefixLength];
+        new Random(42).nextBytes(prefix);
+        suffix = new byte[120];
+        digest = MessageDigest.getInstance("SHA-256", new Sha256Provider());
+        prefixDigest = MessageDigest.getInstance("SHA-256", new Sha256Provider());
+        prefixDigest.update(prefix);
+    }
+
+    @Benchmark
+    public byte[] cloneMidstate() throws CloneNotSupportedException {
+        MessageDigest copy = (MessageDigest) prefixDigest.clone();
+        copy.update(suffix);
+        return copy.digest();
+    }
+
+    @Benchmark
+    public byte[] rehashPrefix() {
+        digest.update(prefix);
+        digest.update(suffix);
+        return digest.digest();
+    }
+}
@@ -0,0 +1,68 @@
+package uk.ac.nottingham.cryptography.hashing;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/***
+ * SHA-512 and SHA-512/256 against SHA-256 on the same messages. SHA-512 compresses twice as many bytes per
+ * block in 80 rather than 64 rounds, so it should overtake SHA-256 once messages span a few blocks
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Thread)
+public class Sha512Benchmark {
+    @Param({"0", "64", "1024", "16384", "1048576"})
+    public int size;
+
+    private byte[] message;
+    private Sha256Hasher sha256;
+    private Sha512Hasher sha512;
+    private Sha512Hasher sha512_256;
+    private MessageDigest jdkSha512;
+    private byte[] output;
+
+    @Setup
+    public void setup() throws NoSuchAlgorithmException {
+        message = new byte[size];
+        new Random(42).nextBytes(message);
+        sha256 = new Sha256Hasher();
+        sha512 = new Sha512Hasher();
+        sha512_256 = Sha512Hasher.sha512_256();
+        jdkSha512 = MessageDigest.getInstance("SHA-512");
+        output = new byte[Sha512Hasher.DIGEST_LENGTH];
+    }
+
+    @Benchmark
+    public byte[] sha256(ByteCounter counter) {
+        counter.bytes += size;
+        sha256.update(message, 0, size);
+        sha256.digestInto(output, 0);
+        return output;
+    }
+
+    @Benchmark
+    public byte[] sha512(ByteCounter counter) {
+        counter.bytes += size;
+        sha512.update(message, 0, size);
+        sha512.digestInto(output, 0);
+        return output;
+    }
+
+    @Benchmark
+    public byte[] sha512_256(ByteCounter counter) {
+        counter.bytes += size;
+        sha512_256.update(message, 0, size);
+        sha512_256.digestInto(output, 0);
+        return output;
+    }
+
+    @Benchmark
+    public byte[] messageDigestBaseline(ByteCounter counter) {
+        counter.bytes += size;
+        return jdkSha512.digest(message);
+    }
+}
@@ -0,0 +1,52 @@
+package uk.ac.nottingham.cryptography.hashing;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/***
+ * Tree hashing a large file on the common pool compared with plain serial SHA-256 of the same file
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Thread)
+public class TreeHashBenchmark {
+    @Param({"268435456"})
+    public int size;
+
+    @Param({"65536", "1048576"})
+    public int leafSize;
+
+    private Path file;
+    private TreeHash treeHash;
+
+    @Setup
+    public void setup() throws IOException {
+        file = Files.createTempFile("tree-bench", ".bin");
+        byte[] data = new byte[size];
+        new Random(42).nextBytes(data);
+        Files.write(file, data);
+        treeHash = new TreeHash(leafSize);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    public byte[] treeHash(ByteCounter counter) throws IOException {
+        counter.bytes += size;
+        return treeHash.digest(file);
+    }
+
+    @Benchmark
+    public byte[] serialDigest(ByteCounter counter) throws IOException {
+        counter.bytes += size;
+        return SHA256.digest(file);
+    }
+}
@@ -0,0 +1,15 @@
+/***
+ * The hashing and banking libraries, with the command line tools in the unexported root package so a jlink image
+ * can launch them. Both incubator modules are optional: the code checks for them at runtime and falls back to
+ * the scalar and Java engines, so they are only resolved when added with --add-modules or linked into an image.
+ */
+module uk.ac.nottingham.cryptography {
+    requires jdk.jfr;
+    requires static jdk.incubator.vector;
+    requires static jdk.incubator.foreign;
+
+    exports uk.ac.nottingham.cryptography.hashing;
+    exports uk.ac.nottingham.cryptography.banking;
+
+    provides java.security.Provider with uk.ac.nottingham.cryptography.hashing.Sha256Provider;
+}
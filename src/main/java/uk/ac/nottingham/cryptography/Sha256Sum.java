@@ -0,0 +1,257 @@
+package uk.ac.nottingham.cryptography;
+
+import uk.ac.nottingham.cryptography.checksum.ChecksumFormat;
+import uk.ac.nottingham.cryptography.checksum.ChecksumOptions;
+import uk.ac.nottingham.cryptography.checksum.ChecksumStats;
+import uk.ac.nottingham.cryptography.checksum.FileChecksum;
+import uk.ac.nottingham.cryptography.checksum.ParallelChecksum;
+import uk.ac.nottingham.cryptography.hashing.Sha256Hasher;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AccessDeniedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static uk.ac.nottingham.cryptography.Main.bytesToHex;
+
+/***
+ * sha256sum compatible checksums of files and directory trees, hashed in parallel. Output lines, check mode
+ * messages and exit status follow coreutils, so existing checksum files and scripts work unchanged. Progress
+ * and throughput go to stderr with --progress.
+ */
+public class Sha256Sum {
+    private static final String PROGRAM = "sha256sum";
+    private static final int MAX_MEGABYTES = Integer.MAX_VALUE >> 20;
+    private static final String USAGE = "Usage: Sha256Sum [-b|-t] [--tag] [--threads N] [--open-files N] [--in-flight MB]\n"
+            + "                 [--progress] [FILE|DIR]...\n"
+            + "       Sha256Sum -c [--quiet] [--status] [--strict] [--ignore-missing] [--threads N] [FILE]...";
+
+    private final ChecksumOptions options = new ChecksumOptions();
+    private final Writer out = new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8), 1 << 16);
+    private boolean binary;
+    private boolean tag;
+    private boolean quiet;
+    private boolean status;
+    private boolean strict;
+    private boolean ignoreMissing;
+    private boolean progress;
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        Sha256Sum sum = new Sha256Sum();
+        boolean check = false;
+        List<String> files = new ArrayList<>();
+        boolean endOfOptions = false;
+
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if (endOfOptions || !arg.startsWith("-") || arg.equals("-")) {
+                files.add(arg);
+                continue;
+            }
+            switch (arg) {
+                case "--": endOfOptions = true; break;
+                case "-b": case "--binary": sum.binary = true; break;
+                case "-t": case "--text": sum.binary = false; break;
+                case "--tag": sum.tag = true; break;
+                case "-c": case "--check": check = true; break;
+                case "--quiet": sum.quiet = true; break;
+                case "--status": sum.status = true; break;
+                case "--strict": sum.strict = true; break;
+                case "--ignore-missing": sum.ignoreMissing = true; break;
+                case "--progress": sum.progress = true; break;
+                case "--threads": sum.options.threads(intArgument(args, ++i)); break;
+                case "--open-files": sum.options.maxOpenFiles(intArgument(args, ++i)); break;
+                case "--in-flight": sum.options.maxInFlightBytes(megabytesArgument(args, ++i) << 20); break;
+                default: usage();
+            }
+        }
+        if (files.isEmpty()) {
+            files.add("-");
+        }
+        if (sum.progress) {
+            sum.options.progress(Duration.ofSeconds(1), stats -> System.err.println(stats));
+        }
+
+        int exitCode = check ? sum.check(files) : sum.hash(files);
+        sum.out.flush();
+        System.exit(exitCode);
+    }
+
+    // Standard input is hashed where it appears among the files, with the files around it hashed in parallel
+    private int hash(List<String> files) throws IOException, InterruptedException {
+        int exitCode = 0;
+        ParallelChecksum checksum = new ParallelChecksum(options);
+        List<Path> batch = new ArrayList<>();
+        for (String file : files) {
+            if (!file.equals("-")) {
+                batch.add(Paths.get(file));
+                continue;
+            }
+            exitCode |= hashBatch(checksum, batch);
+            batch.clear();
+            out.write(ChecksumFormat.format(bytesToHex(digest(System.in)), "-", binary, tag) + "\n");
+        }
+        return exitCode | hashBatch(checksum, batch);
+    }
+
+    private int hashBatch(ParallelChecksum checksum, List<Path> batch) throws IOException, InterruptedException {
+        if (batch.isEmpty()) {
+            return 0;
+        }
+        ChecksumStats stats = checksum.hash(batch, result -> {
+            if (result.getError() != null) {
+                out.flush();
+                System.err.println(PROGRAM + ": " + result.getName() + ": " + describe(result.getError()));
+            } else {
+                out.write(ChecksumFormat.format(result.getHexDigest(), result.getName(), binary, tag) + "\n");
+            }
+        });
+        report(stats);
+        return stats.getErrors() > 0 ? 1 : 0;
+    }
+
+    private int check(List<String> checksumFiles) throws IOException, InterruptedException {
+        int exitCode = 0;
+        ParallelChecksum checksum = new ParallelChecksum(options);
+        for (String checksumFile : checksumFiles) {
+            List<ChecksumFormat.Entry> entries = new ArrayList<>();
+            int improper = 0;
+            try (BufferedReader reader = checksumFile.equals("-")
+                    ? new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8))
+                    : Files.newBufferedReader(Paths.get(checksumFile), StandardCharsets.UTF_8)) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    ChecksumFormat.Entry entry = ChecksumFormat.parse(line);
+                    if (entry == null) {
+                        improper++;
+                    } else {
+                        entries.add(entry);
+                    }
+                }
+            } catch (IOException ex) {
+                System.err.println(PROGRAM + ": " + checksumFile + ": " + describe(ex));
+                exitCode = 1;
+                continue;
+            }
+            if (entries.isEmpty()) {
+                System.err.println(PROGRAM + ": " + checksumFile + ": no properly formatted checksum lines found");
+                exitCode = 1;
+                continue;
+            }
+
+            int[] counts = new int[3];
+            ChecksumStats stats = checksum.check(entries, result -> {
+                String name = ChecksumFormat.displayName(result.getName());
+                if (result.getError() != null) {
+                    if (ignoreMissing && result.getError() instanceof NoSuchFileException) {
+                        return;
+                    }
+                    counts[0]++;
+                    if (!status) {
+                        out.flush();
+                        System.err.println(PROGRAM + ": " + result.getName() + ": " + describe(result.getError()));
+                        out.write(name + ": FAILED open or read\n");
+                    }
+                } else if (!result.matches()) {
+                    counts[1]++;
+                    if (!status) {
+                        out.write(name + ": FAILED\n");
+                    }
+                } else {
+                    counts[2]++;
+                    if (!status && !quiet) {
+                        out.write(name + ": OK\n");
+                    }
+                }
+            });
+            out.flush();
+            report(stats);
+
+            if (!status) {
+                warn(improper, "line is improperly formatted", "lines are improperly formatted");
+                warn(counts[0], "listed file could not be read", "listed files could not be read");
+                warn(counts[1], "computed checksum did NOT match", "computed checksums did NOT match");
+            }
+            if (ignoreMissing && counts[0] + counts[1] + counts[2] == 0) {
+                System.err.println(PROGRAM + ": " + checksumFile + ": no file was verified");
+                exitCode = 1;
+            }
+            if (counts[0] > 0 || counts[1] > 0 || (strict && improper > 0)) {
+                exitCode = 1;
+            }
+        }
+        return exitCode;
+    }
+
+    private void report(ChecksumStats stats) {
+        if (progress) {
+            System.err.println(stats);
+        }
+    }
+
+    private static void warn(int count, String singular, String plural) {
+        if (count > 0) {
+            System.err.println(PROGRAM + ": WARNING: " + count + " " + (count == 1 ? singular : plural));
+        }
+    }
+
+    private static byte[] digest(InputStream in) throws IOException {
+        Sha256Hasher hasher = new Sha256Hasher();
+        byte[] buffer = new byte[1 << 16];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            hasher.update(buffer, 0, read);
+        }
+        return hasher.digest();
+    }
+
+    // Error text as coreutils prints it, for the common cases
+    private static String describe(IOException ex) {
+        if (ex instanceof NoSuchFileException) {
+            return "No such file or directory";
+        } else if (ex instanceof AccessDeniedException) {
+            return "Permission denied";
+        }
+        String message = ex.getMessage();
+        return message == null ? ex.getClass().getSimpleName() : message;
+    }
+
+    private static int intArgument(String[] args, int index) {
+        if (index >= args.length) {
+            usage();
+        }
+        try {
+            return Integer.parseInt(args[index]);
+        } catch (NumberFormatException e) {
+            usage();
+            return 0;
+        }
+    }
+
+    // A size in MB that still fits in an int once converted to bytes, as the in flight semaphore counts bytes
+    private static int megabytesArgument(String[] args, int index) {
+        int megabytes = intArgument(args, index);
+        if (megabytes <= 0 || megabytes > MAX_MEGABYTES) {
+            System.err.println(PROGRAM + ": --in-flight must be between 1 and " + MAX_MEGABYTES + " MB");
+            usage();
+        }
+        return megabytes;
+    }
+
+    private static void usage() {
+        System.err.println(USAGE);
+        System.exit(2);
+    }
+}
@@ -0,0 +1,90 @@
+package uk.ac.nottingham.cryptography;
+
+import uk.ac.nottingham.cryptography.banking.AuthenticationMode;
+import uk.ac.nottingham.cryptography.banking.Bank;
+import uk.ac.nottingham.cryptography.banking.InvalidTransactionException;
+import uk.ac.nottingham.cryptography.banking.TransactionFilter;
+import uk.ac.nottingham.cryptography.checksum.ChecksumFormat;
+import uk.ac.nottingham.cryptography.checksum.ChecksumOptions;
+import uk.ac.nottingham.cryptography.checksum.ParallelChecksum;
+import uk.ac.nottingham.cryptography.hashing.SHA256;
+import uk.ac.nottingham.cryptography.hashing.Sha256Hasher;
+import uk.ac.nottingham.cryptography.pipeline.VerificationPipeline;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static uk.ac.nottingham.cryptography.Main.bytesToHex;
+
+/***
+ * Training run for the class data sharing archive. Takes each tool's path once on small inputs, so the classes
+ * the tools load before their first digest are the ones dumped into the archive: hashing, every Bank mode and
+ * its filter, the length extension in Main, sha256sum hashing and checking, and the VerifyLog pipeline.
+ */
+public class StartupTraining {
+    private static final String MESSAGE =
+            "from:20-60-40.23311492;to:35-01-17.11911597;stoken:7a2afc675906eb180ba2e18b;amount:1000";
+
+    public static void main(String[] args) throws IOException, InterruptedException, InvalidTransactionException {
+        // The tools' own main classes, loaded without running them
+        List.of(Main.class, Sha256Sum.class, VerifyLog.class);
+        byte[] message = MESSAGE.getBytes(StandardCharsets.UTF_8);
+        Path dir = Files.createTempDirectory("startup-training");
+        try {
+            hashing(message);
+            banking(message);
+            checksums(dir, message);
+            verifyLog(dir, message);
+        } finally {
+            try (var files = Files.list(dir)) {
+                for (Path file : (Iterable<Path>) files::iterator) {
+                    Files.delete(file);
+                }
+            }
+            Files.delete(dir);
+        }
+    }
+
+    private static void hashing(byte[] message) throws IOException {
+        Sha256Hasher hasher = new Sha256Hasher();
+        hasher.update(message);
+        byte[] digest = hasher.digest();
+        SHA256.digest(message);
+        SHA256.digest32(digest);
+        SHA256.continueDigest(new ByteArrayInputStream(message), digest, 128);
+        SHA256.digestBatch(new byte[][] {message, digest}, new byte[2][]);
+    }
+
+    private static void banking(byte[] message) throws IOException, InvalidTransactionException {
+        for (AuthenticationMode mode : AuthenticationMode.values()) {
+            Bank bank = new Bank(mode);
+            bank.setTransactionFilter(new TransactionFilter(bank.getKeyLength()));
+            byte[] token = bank.authenticateTransaction(message);
+            bank.verifyTransaction(message, token);
+            token[0] ^= 1;
+            bank.isAuthentic(message, token);
+        }
+    }
+
+    private static void checksums(Path dir, byte[] message) throws IOException, InterruptedException {
+        Path file = Files.write(dir.resolve("message"), message);
+        List<ChecksumFormat.Entry> entries = new ArrayList<>();
+        ParallelChecksum checksum = new ParallelChecksum(new ChecksumOptions());
+        checksum.hash(List.of(file), result -> {
+            String line = ChecksumFormat.format(result.getHexDigest(), result.getName(), false, false);
+            entries.add(ChecksumFormat.parse(line));
+        });
+        checksum.check(entries, result -> ChecksumFormat.displayName(result.getName()));
+    }
+
+    private static void verifyLog(Path dir, byte[] message) throws IOException, InterruptedException {
+        byte[] token = new Bank().authenticateTransaction(message);
+        Path log = Files.writeString(dir.resolve("transactions.log"), MESSAGE + "\t" + bytesToHex(token) + "\n");
+        new VerificationPipeline(new Bank()).run(log, record -> record.getResult().isValid());
+    }
+}
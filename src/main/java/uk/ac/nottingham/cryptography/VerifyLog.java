@@ -0,0 +1,93 @@
+package uk.ac.nottingham.cryptography;
+
+import uk.ac.nottingham.cryptography.banking.AuthenticationMode;
+import uk.ac.nottingham.cryptography.banking.Bank;
+import uk.ac.nottingham.cryptography.banking.BankTransaction;
+import uk.ac.nottingham.cryptography.pipeline.PipelineOptions;
+import uk.ac.nottingham.cryptography.pipeline.PipelineStats;
+import uk.ac.nottingham.cryptography.pipeline.VerificationPipeline;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+
+/***
+ * Verifies a transaction log of message<TAB>hexToken lines, printing failed records to stdout and stats to stderr
+ */
+public class VerifyLog {
+    private static final String USAGE = "Usage: VerifyLog [--ordered|--unordered] [--hmac|--sha512-256] [--all] [--progress]\n"
+            + "                 [--decode-threads N] [--verify-threads N] [--parse-threads N]\n"
+            + "                 [--queue BATCHES] [--batch RECORDS] <log file>";
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        PipelineOptions options = new PipelineOptions();
+        AuthenticationMode mode = AuthenticationMode.SECRET_PREFIX;
+        boolean printAll = false;
+        Path log = null;
+
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--ordered": options.ordered(true); break;
+                case "--unordered": options.ordered(false); break;
+                case "--hmac": mode = AuthenticationMode.HMAC_SHA256; break;
+                case "--sha512-256": mode = AuthenticationMode.SECRET_PREFIX_SHA512_256; break;
+                case "--all": printAll = true; break;
+                case "--progress":
+                    options.progress(Duration.ofSeconds(1), stats -> System.err.println(stats));
+                    break;
+                case "--decode-threads": options.decodeThreads(intArgument(args, ++i)); break;
+                case "--verify-threads": options.verifyThreads(intArgument(args, ++i)); break;
+                case "--parse-threads": options.parseThreads(intArgument(args, ++i)); break;
+                case "--queue": options.queueCapacity(intArgument(args, ++i)); break;
+                case "--batch": options.batchSize(intArgument(args, ++i)); break;
+                default:
+                    if (args[i].startsWith("--") || log != null) {
+                        usage();
+                    }
+                    log = Paths.get(args[i]);
+            }
+        }
+        if (log == null) {
+            usage();
+        }
+
+        boolean all = printAll;
+        Writer out = new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8), 1 << 16);
+        VerificationPipeline pipeline = new VerificationPipeline(new Bank(mode), options);
+        PipelineStats stats = pipeline.run(log, record -> {
+            if (record.getResult().isValid()) {
+                if (all) {
+                    BankTransaction bt = record.getResult().getTransaction();
+                    out.write(record.getLineNumber() + "\tOK\t" + bt.getFromAccount() + "\t" + bt.getToAccount()
+                            + "\t" + bt.getAmount() + "\n");
+                }
+            } else {
+                out.write(record.getLineNumber() + "\t" + record.getResult().getFailureReason().getMessage() + "\n");
+            }
+        });
+        out.flush();
+        System.err.println(stats);
+    }
+
+    private static int intArgument(String[] args, int index) {
+        if (index >= args.length) {
+            usage();
+        }
+        try {
+            return Integer.parseInt(args[index]);
+        } catch (NumberFormatException e) {
+            usage();
+            return 0;
+        }
+    }
+
+    private static void usage() {
+        System.err.println(USAGE);
+        System.exit(2);
+    }
+}
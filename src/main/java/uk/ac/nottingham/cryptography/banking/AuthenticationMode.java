@@ -0,0 +1,14 @@
+package uk.ac.nottingham.cryptography.banking;
+
+/***
+ * How a Bank computes authentication tokens from its key and a transaction
+ */
+public enum AuthenticationMode {
+    // SHA256(key | transaction), which is open to the length extension in Main
+    SECRET_PREFIX,
+    // HMAC-SHA256 keyed with the bank key
+    HMAC_SHA256,
+    // SHA-512/256(key | transaction), the same construction as SECRET_PREFIX but the truncated output
+    // cannot be length extended
+    SECRET_PREFIX_SHA512_256
+}
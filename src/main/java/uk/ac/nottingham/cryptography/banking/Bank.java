@@ -1,40 +1,349 @@
 package uk.ac.nottingham.cryptography.banking;
 
-import uk.ac.nottingham.cryptography.hashing.SHA256;
+import uk.ac.nottingham.cryptography.hashing.Sha256Hasher;
+import uk.ac.nottingham.cryptography.hashing.Sha512Hasher;
 
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
 import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
 public class Bank {
+    // Batches are split until ranges are this small, then verified sequentially by one worker
+    private static final int BATCH_THRESHOLD = 256;
+
+    // Per thread scratch space, so that workers reuse their hasher across transactions
+    private static final ThreadLocal<Scratch> SCRATCH = ThreadLocal.withInitial(Scratch::new);
+
     private String key = "5a95b9feba8efda0b6c3c6a96ad05a87";
+    private final byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+    private final AuthenticationMode mode;
+    private final KeyRing.Key defaultKey;
+    private final KeyRing keyRing;
+    private final BankMetrics metrics;
+    private volatile ReplayGuard replayGuard;
+    private volatile TransactionFilter transactionFilter;
+
+    public Bank() {
+        this(AuthenticationMode.SECRET_PREFIX);
+    }
+
+    public Bank(AuthenticationMode mode) {
+        this(mode, null);
+    }
+
+    // The methods taking a key id authenticate with that id's keys from the ring, the others with the bank's own key
+    public Bank(KeyRing keyRing) {
+        this(keyRing.getAuthenticationMode(), keyRing);
+    }
+
+    private Bank(AuthenticationMode mode, KeyRing keyRing) {
+        this.mode = mode;
+        this.keyRing = keyRing;
+        this.defaultKey = new KeyRing.Key(mode, keyBytes);
+        this.metrics = new BankMetrics(mode);
+    }
+
+    public AuthenticationMode getAuthenticationMode() {
+        return mode;
+    }
+
+    // When set, authentic transactions are also rejected if their stoken has been seen within the guard's window
+    public void setReplayGuard(ReplayGuard replayGuard) {
+        this.replayGuard = replayGuard;
+    }
+
+    public ReplayGuard getReplayGuard() {
+        return replayGuard;
+    }
+
+    // When set, transactions the filter rejects fail with its reason before their token is computed
+    public void setTransactionFilter(TransactionFilter transactionFilter) {
+        this.transactionFilter = transactionFilter;
+    }
+
+    public TransactionFilter getTransactionFilter() {
+        return transactionFilter;
+    }
+
+    // Number of key bytes hashed ahead of each transaction, which is what a TransactionFilter needs to know
+    public int getKeyLength() {
+        return keyBytes.length;
+    }
+
+    public BankMetrics getMetrics() {
+        return metrics;
+    }
+
+    public KeyRing getKeyRing() {
+        return keyRing;
+    }
 
     public byte[] authenticateTransaction(byte[] transaction) throws IOException {
-        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
-        byte[] km = new byte[keyBytes.length + transaction.length];
-        System.arraycopy(keyBytes, 0, km, 0, keyBytes.length);
-        System.arraycopy(transaction, 0, km, keyBytes.length, transaction.length);
-        return SHA256.digest(new ByteArrayInputStream(km));
+        TransactionEvent event = metrics.begin();
+        byte[] token = new byte[Sha256Hasher.DIGEST_LENGTH];
+        computeToken(SCRATCH.get(), defaultKey, transaction, token);
+        metrics.authenticated(event, transaction.length);
+        return token;
     }
 
     public BankTransaction verifyTransaction(byte[] transaction, byte[] authToken) throws InvalidTransactionException {
-        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
-        byte[] km = new byte[keyBytes.length + transaction.length];
-        System.arraycopy(keyBytes, 0, km, 0, keyBytes.length);
-        System.arraycopy(transaction, 0, km, keyBytes.length, transaction.length);
+        VerificationResult result = verify(SCRATCH.get(), null, transaction, authToken);
+        if (!result.isValid()) {
+            throw new InvalidTransactionException(result.getFailureReason().getMessage());
+        }
+        return result.getTransaction();
+    }
+
+    // Checks the token only, without parsing the transaction
+    public boolean isAuthentic(byte[] transaction, byte[] authToken) {
+        Scratch scratch = SCRATCH.get();
+        computeToken(scratch, defaultKey, transaction, scratch.computedToken);
+        return MessageDigest.isEqual(scratch.computedToken, authToken);
+    }
+
+    // Authenticates with the active key of keyId. Throws IllegalArgumentException if the id is unknown
+    public byte[] authenticateTransaction(String keyId, byte[] transaction) {
+        KeyRing.Entry keys = keyRing().lookup(keyId);
+        if (keys == null) {
+            throw new IllegalArgumentException(FailureReason.UNKNOWN_KEY.getMessage() + ": " + keyId);
+        }
+        TransactionEvent event = metrics.begin();
+        byte[] token = new byte[Sha256Hasher.DIGEST_LENGTH];
+        computeToken(SCRATCH.get(), keys.active, transaction, token);
+        metrics.authenticated(event, transaction.length);
+        return token;
+    }
+
+    public BankTransaction verifyTransaction(String keyId, byte[] transaction, byte[] authToken)
+            throws InvalidTransactionException {
+        VerificationResult result = verify(keyId, transaction, authToken);
+        if (!result.isValid()) {
+            throw new InvalidTransactionException(result.getFailureReason().getMessage());
+        }
+        return result.getTransaction();
+    }
+
+    // Accepts a token made with the active key of keyId, or one of its keys still in its grace period
+    public VerificationResult verify(String keyId, byte[] transaction, byte[] authToken) {
+        keyRing();
+        return verify(SCRATCH.get(), keyId, transaction, authToken);
+    }
+
+    // Buffer variants hash the remaining bytes in place, e.g. straight from a direct network buffer.
+    // The buffer's position is left unchanged
+    public byte[] authenticateTransaction(ByteBuffer transaction) {
+        TransactionEvent event = metrics.begin();
+        byte[] token = new byte[Sha256Hasher.DIGEST_LENGTH];
+        computeToken(SCRATCH.get(), defaultKey, transaction, token);
+        metrics.authenticated(event, transaction.remaining());
+        return token;
+    }
+
+    public BankTransaction verifyTransaction(ByteBuffer transaction, byte[] authToken) throws InvalidTransactionException {
+        VerificationResult result = verify(transaction, authToken);
+        if (!result.isValid()) {
+            throw new InvalidTransactionException(result.getFailureReason().getMessage());
+        }
+        return result.getTransaction();
+    }
 
+    // As verifyTransaction, but failures are returned in the result rather than thrown
+    public VerificationResult verify(ByteBuffer transaction, byte[] authToken) {
+        TransactionEvent event = metrics.begin();
+        Scratch scratch = SCRATCH.get();
+        FailureReason rejected = screen(transaction);
+        VerificationResult result;
+        if (rejected != null) {
+            result = VerificationResult.failed(rejected);
+        } else if (!tokenMatches(scratch, transaction, authToken)) {
+            result = VerificationResult.failed(FailureReason.INVALID_TOKEN);
+        } else {
+            // Only authentic transactions are copied out of the buffer
+            byte[] transactionBytes = new byte[transaction.remaining()];
+            transaction.get(transaction.position(), transactionBytes);
+            result = parseAuthentic(transactionBytes);
+        }
+        metrics.verified(event, transaction.remaining(), result.getFailureReason());
+        return result;
+    }
+
+    // Verifies every transaction against its token in parallel on the common fork join pool. Failures
+    // are reported in the results rather than thrown, results are in the same order as the input
+    public List<VerificationResult> verifyTransactions(List<byte[]> transactions, List<byte[]> authTokens) {
+        return verifyTransactions(transactions, authTokens, ForkJoinPool.commonPool());
+    }
+
+    public List<VerificationResult> verifyTransactions(List<byte[]> transactions, List<byte[]> authTokens,
+                                                       ForkJoinPool pool) {
+        byte[][] txs = toArray(transactions, authTokens);
+        byte[][] tokens = authTokens.toArray(new byte[0][]);
+        VerificationResult[] results = new VerificationResult[txs.length];
+        pool.invoke(new VerifyTask(txs, tokens, results, 0, txs.length));
+        return Arrays.asList(results);
+    }
+
+    // Lazy variant, transactions are verified in parallel as the stream is consumed
+    public Stream<VerificationResult> verifyTransactionStream(List<byte[]> transactions, List<byte[]> authTokens) {
+        byte[][] txs = toArray(transactions, authTokens);
+        byte[][] tokens = authTokens.toArray(new byte[0][]);
+        return IntStream.range(0, txs.length)
+                .parallel()
+                .mapToObj(i -> verify(SCRATCH.get(), null, txs[i], tokens[i]));
+    }
+
+    private VerificationResult verify(Scratch scratch, String keyId, byte[] transaction, byte[] authToken) {
+        TransactionEvent event = metrics.begin();
+        VerificationResult result = check(scratch, keyId, transaction, authToken);
+        metrics.verified(event, transaction == null ? 0 : transaction.length, result.getFailureReason());
+        return result;
+    }
+
+    // A null keyId checks against the bank's own key
+    private VerificationResult check(Scratch scratch, String keyId, byte[] transaction, byte[] authToken) {
+        if (transaction == null || authToken == null) {
+            return VerificationResult.failed(FailureReason.MALFORMED_TRANSACTION);
+        }
+        FailureReason rejected = screen(transaction);
+        if (rejected != null) {
+            return VerificationResult.failed(rejected);
+        }
+        if (keyId == null) {
+            if (!tokenMatches(scratch, defaultKey, transaction, authToken)) {
+                return VerificationResult.failed(FailureReason.INVALID_TOKEN);
+            }
+        } else {
+            KeyRing.Entry keys = keyRing.lookup(keyId);
+            if (keys == null) {
+                return VerificationResult.failed(FailureReason.UNKNOWN_KEY);
+            }
+            if (!tokenMatches(scratch, keys, transaction, authToken)) {
+                return VerificationResult.failed(FailureReason.INVALID_TOKEN);
+            }
+        }
+        return parseAuthentic(transaction);
+    }
+
+    private boolean tokenMatches(Scratch scratch, KeyRing.Key key, byte[] transaction, byte[] authToken) {
+        computeToken(scratch, key, transaction, scratch.computedToken);
+        return MessageDigest.isEqual(scratch.computedToken, authToken);
+    }
+
+    // The active key first, then any grace period keys that have not yet expired
+    private boolean tokenMatches(Scratch scratch, KeyRing.Entry keys, byte[] transaction, byte[] authToken) {
+        if (tokenMatches(scratch, keys.active, transaction, authToken)) {
+            return true;
+        }
+        if (keys.grace.length == 0) {
+            return false;
+        }
+        long now = keyRing.now();
+        for (int i = 0; i < keys.grace.length; i++) {
+            if (now <= keys.graceUntil[i] && tokenMatches(scratch, keys.grace[i], transaction, authToken)) {
+                keyRing.recordGraceMatch();
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private KeyRing keyRing() {
+        if (keyRing == null) {
+            throw new IllegalStateException("Bank has no key ring, construct it with one to use key ids");
+        }
+        return keyRing;
+    }
+
+    private boolean tokenMatches(Scratch scratch, ByteBuffer transaction, byte[] authToken) {
+        computeToken(scratch, defaultKey, transaction, scratch.computedToken);
+        return MessageDigest.isEqual(scratch.computedToken, authToken);
+    }
+
+    // Runs the transaction filter if there is one, returning why the transaction is rejected or null if it passes
+    public FailureReason screen(byte[] transaction) {
+        TransactionFilter filter = transactionFilter;
+        return filter == null ? null : filter.check(transaction);
+    }
+
+    public FailureReason screen(ByteBuffer transaction) {
+        TransactionFilter filter = transactionFilter;
+        return filter == null ? null : filter.check(transaction);
+    }
+
+    // Parses a transaction whose token has already been checked, applying the replay guard if there is one
+    public VerificationResult parseAuthentic(byte[] transaction) {
+        BankTransaction bt;
         try {
-            byte[] computedToken = SHA256.digest(new ByteArrayInputStream(km));
+            bt = BankTransaction.parse(transaction);
+        } catch (InvalidTransactionException ex) {
+            return VerificationResult.failed(FailureReason.MALFORMED_TRANSACTION);
+        }
 
-            if (!Arrays.equals(computedToken, authToken)) {
-                throw new InvalidTransactionException("Invalid authentication token");
+        ReplayGuard guard = replayGuard;
+        if (guard != null) {
+            ReplayGuard.Result seen;
+            try {
+                seen = guard.checkAndInsert(bt.getSecurityToken());
+            } catch (IllegalArgumentException ex) {
+                return VerificationResult.failed(FailureReason.MALFORMED_TRANSACTION);
+            }
+            if (seen == ReplayGuard.Result.REPLAY) {
+                return VerificationResult.failed(FailureReason.REPLAYED);
+            } else if (seen == ReplayGuard.Result.CAPACITY_EXCEEDED) {
+                return VerificationResult.failed(FailureReason.REPLAY_GUARD_FULL);
             }
-        } catch (IOException ex) {
-            throw new InvalidTransactionException("Could not load transaction bytes");
         }
+        return VerificationResult.valid(bt);
+    }
+
+    // The key and transaction are hashed as two segments, never concatenated
+    // The key is never re-hashed: hashers start from a copy of the key's prefix hasher, HMAC from its midstates
+    private void computeToken(Scratch scratch, KeyRing.Key key, byte[] transaction, byte[] token) {
+        Sha256Hasher hasher = scratch.hasher;
+        if (mode == AuthenticationMode.HMAC_SHA256) {
+            key.hmac.macInto(hasher, transaction, 0, transaction.length, token, 0);
+        } else if (mode == AuthenticationMode.SECRET_PREFIX_SHA512_256) {
+            Sha512Hasher sha512 = scratch.sha512_256;
+            sha512.copyFrom(key.sha512_256Prefix);
+            sha512.update(transaction);
+            sha512.digestInto(token, 0);
+        } else {
+            hasher.copyFrom(key.sha256Prefix);
+            hasher.update(transaction);
+            hasher.digestInto(token, 0);
+        }
+    }
+
+    private void computeToken(Scratch scratch, KeyRing.Key key, ByteBuffer transaction, byte[] token) {
+        Sha256Hasher hasher = scratch.hasher;
+        int position = transaction.position();
+        if (mode == AuthenticationMode.HMAC_SHA256) {
+            key.hmac.macInto(hasher, transaction, token, 0);
+        } else if (mode == AuthenticationMode.SECRET_PREFIX_SHA512_256) {
+            Sha512Hasher sha512 = scratch.sha512_256;
+            sha512.copyFrom(key.sha512_256Prefix);
+            sha512.update(transaction);
+            sha512.digestInto(token, 0);
+        } else {
+            hasher.copyFrom(key.sha256Prefix);
+            hasher.update(transaction);
+            hasher.digestInto(token, 0);
+        }
+        transaction.position(position);
+    }
 
-        return new BankTransaction(new String(transaction, StandardCharsets.UTF_8));
+    private static byte[][] toArray(List<byte[]> transactions, List<byte[]> authTokens) {
+        if (transactions.size() != authTokens.size()) {
+            throw new IllegalArgumentException("Expected one token per transaction, got "
+                    + transactions.size() + " transactions and " + authTokens.size() + " tokens");
+        }
+        return transactions.toArray(new byte[0][]);
     }
 
     private static byte[] hexToBytes(String hex) {
@@ -45,4 +354,39 @@ public class Bank {
         return java.util.HexFormat.of().formatHex(bytes);
     }
 
+    private static class Scratch {
+        final Sha256Hasher hasher = new Sha256Hasher();
+        final Sha512Hasher sha512_256 = Sha512Hasher.sha512_256();
+        final byte[] computedToken = new byte[Sha256Hasher.DIGEST_LENGTH];
+    }
+
+    private class VerifyTask extends RecursiveAction {
+        private final byte[][] transactions;
+        private final byte[][] authTokens;
+        private final VerificationResult[] results;
+        private final int from;
+        private final int to;
+
+        VerifyTask(byte[][] transactions, byte[][] authTokens, VerificationResult[] results, int from, int to) {
+            this.transactions = transactions;
+            this.authTokens = authTokens;
+            this.results = results;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= BATCH_THRESHOLD) {
+                Scratch scratch = SCRATCH.get();
+                for (int i = from; i < to; i++) {
+                    results[i] = verify(scratch, null, transactions[i], authTokens[i]);
+                }
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new VerifyTask(transactions, authTokens, results, from, mid),
+                    new VerifyTask(transactions, authTokens, results, mid, to));
+        }
+    }
 }
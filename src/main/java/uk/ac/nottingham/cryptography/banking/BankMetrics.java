@@ -0,0 +1,248 @@
+package uk.ac.nottingham.cryptography.banking;
+
+import uk.ac.nottingham.cryptography.hashing.HashMetrics;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/***
+ * Counters and latency histograms for one Bank. Recording uses striped counters so verifier threads do not
+ * contend, and latency timing can be switched off with setEnabled(false)
+ */
+public class BankMetrics {
+    private final AuthenticationMode mode;
+    private volatile boolean enabled = true;
+    // Operation counts come from the histograms, so a valid verification costs a single counter update
+    private final LongAdder[] failures = new LongAdder[FailureReason.values().length];
+    private final LatencyHistogram authenticateLatency = new LatencyHistogram();
+    private final LatencyHistogram verifyLatency = new LatencyHistogram();
+
+    BankMetrics(AuthenticationMode mode) {
+        this.mode = mode;
+        for (int i = 0; i < failures.length; i++) {
+            failures[i] = new LongAdder();
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    // Disabled metrics skip timing and counting, flight recorder events are controlled by the recording
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public void reset() {
+        for (LongAdder failure : failures) {
+            failure.reset();
+        }
+        authenticateLatency.reset();
+        verifyLatency.reset();
+    }
+
+    public Snapshot snapshot() {
+        Map<FailureReason, Long> failureCounts = new EnumMap<>(FailureReason.class);
+        for (FailureReason reason : FailureReason.values()) {
+            failureCounts.put(reason, failures[reason.ordinal()].sum());
+        }
+        Latency authenticate = authenticateLatency.snapshot();
+        Latency verify = verifyLatency.snapshot();
+        long failed = 0;
+        for (long count : failureCounts.values()) {
+            failed += count;
+        }
+        return new Snapshot(authenticate.getCount(), verify.getCount(), Math.max(0, verify.getCount() - failed),
+                failureCounts, authenticate, verify,
+                HashMetrics.getBytesHashed(), HashMetrics.getBlocksCompressed());
+    }
+
+    // Passes a snapshot to the reporter every period on a daemon thread, until the returned executor is shut down
+    public ScheduledExecutorService startReporting(Duration period, Consumer<Snapshot> reporter) {
+        ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "bank-metrics");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long millis = period.toMillis();
+        executor.scheduleAtFixedRate(() -> reporter.accept(snapshot()), millis, millis, TimeUnit.MILLISECONDS);
+        return executor;
+    }
+
+    TransactionEvent begin() {
+        TransactionEvent event = new TransactionEvent();
+        event.begin();
+        if (enabled) {
+            event.startNanos = System.nanoTime();
+        }
+        return event;
+    }
+
+    void authenticated(TransactionEvent event, int length) {
+        if (enabled) {
+            authenticateLatency.record(System.nanoTime() - event.startNanos);
+        }
+        event.end();
+        if (event.shouldCommit()) {
+            event.operation = "authenticate";
+            event.mode = mode.name();
+            event.length = length;
+            event.valid = true;
+            event.commit();
+        }
+    }
+
+    void verified(TransactionEvent event, int length, FailureReason reason) {
+        if (enabled) {
+            if (reason != null) {
+                failures[reason.ordinal()].increment();
+            }
+            verifyLatency.record(System.nanoTime() - event.startNanos);
+        }
+        event.end();
+        if (event.shouldCommit()) {
+            event.operation = "verify";
+            event.mode = mode.name();
+            event.length = length;
+            event.valid = reason == null;
+            event.failureReason = reason == null ? null : reason.name();
+            event.commit();
+        }
+    }
+
+    /***
+     * Latency distribution captured by a snapshot, in nanoseconds
+     */
+    public static final class Latency {
+        private final long[] counts;
+        private final long count;
+        private final double mean;
+        private final long max;
+
+        Latency(long[] counts, long max) {
+            this.counts = counts;
+            long sum = 0;
+            double total = 0;
+            for (int i = 0; i < counts.length; i++) {
+                sum += counts[i];
+                total += counts[i] * (LatencyHistogram.lowerBound(i) + LatencyHistogram.upperBound(i)) / 2.0;
+            }
+            this.count = sum;
+            this.mean = sum == 0 ? 0 : total / sum;
+            this.max = max;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        // Estimated from bucket midpoints
+        public double getMean() {
+            return mean;
+        }
+
+        public long getMax() {
+            return max;
+        }
+
+        // Upper bound of the bucket holding the given percentile, e.g. 99.9
+        public long getPercentile(double percentile) {
+            if (count == 0) {
+                return 0;
+            }
+            long rank = (long) Math.ceil(percentile / 100 * count);
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= Math.max(1, rank)) {
+                    return Math.min(LatencyHistogram.upperBound(i), max);
+                }
+            }
+            return max;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("n=%d mean=%.0fns p50=%dns p99=%dns p99.9=%dns max=%dns", count, getMean(),
+                    getPercentile(50), getPercentile(99), getPercentile(99.9), max);
+        }
+    }
+
+    /***
+     * Point in time copy of a Bank's metrics, along with the process wide hashing counters
+     */
+    public static final class Snapshot {
+        private final long authentications;
+        private final long verifications;
+        private final long valid;
+        private final Map<FailureReason, Long> failures;
+        private final Latency authenticateLatency;
+        private final Latency verifyLatency;
+        private final long bytesHashed;
+        private final long blocksCompressed;
+
+        Snapshot(long authentications, long verifications, long valid, Map<FailureReason, Long> failures,
+                 Latency authenticateLatency, Latency verifyLatency, long bytesHashed, long blocksCompressed) {
+            this.authentications = authentications;
+            this.verifications = verifications;
+            this.valid = valid;
+            this.failures = failures;
+            this.authenticateLatency = authenticateLatency;
+            this.verifyLatency = verifyLatency;
+            this.bytesHashed = bytesHashed;
+            this.blocksCompressed = blocksCompressed;
+        }
+
+        public long getAuthentications() {
+            return authentications;
+        }
+
+        public long getVerifications() {
+            return verifications;
+        }
+
+        public long getValid() {
+            return valid;
+        }
+
+        public long getFailures(FailureReason reason) {
+            return failures.get(reason);
+        }
+
+        public Latency getAuthenticateLatency() {
+            return authenticateLatency;
+        }
+
+        public Latency getVerifyLatency() {
+            return verifyLatency;
+        }
+
+        public long getBytesHashed() {
+            return bytesHashed;
+        }
+
+        public long getBlocksCompressed() {
+            return blocksCompressed;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder();
+            sb.append(String.format("authenticated %d, verified %d (%d valid)", authentications, verifications, valid));
+            for (Map.Entry<FailureReason, Long> failure : failures.entrySet()) {
+                if (failure.getValue() > 0) {
+                    sb.append(String.format(", %s %d", failure.getKey(), failure.getValue()));
+                }
+            }
+            sb.append(String.format("%n  authenticate: %s%n  verify: %s%n  SHA256: %d bytes, %d blocks",
+                    authenticateLatency, verifyLatency, bytesHashed, blocksCompressed));
+            return sb.toString();
+        }
+    }
+}
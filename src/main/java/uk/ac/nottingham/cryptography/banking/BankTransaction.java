@@ -1,42 +1,188 @@
 package uk.ac.nottingham.cryptography.banking;
 
-import java.util.Arrays;
+import java.nio.charset.StandardCharsets;
 
+/***
+ * A transaction of the form from:...;to:...;stoken:...;amount:...
+ *
+ * Parsing is a single scan over the bytes that records where each field's value starts and ends. Values
+ * are only decoded when asked for, so the parsed transaction holds on to the array it was given, which
+ * must not be modified afterwards. As before, if a key appears more than once the last value is used,
+ * but repeated and unrecognised keys are now recorded so that callers can reject them.
+ */
 public class BankTransaction {
-    private String fromAccount;
-    private String toAccount;
-    private String amount;
+    private static final byte[] FROM = "from".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] TO = "to".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] STOKEN = "stoken".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] AMOUNT = "amount".getBytes(StandardCharsets.US_ASCII);
+
+    private static final int FROM_FIELD = 0;
+    private static final int TO_FIELD = 1;
+    private static final int STOKEN_FIELD = 2;
+    private static final int AMOUNT_FIELD = 3;
+    private static final int FIELD_COUNT = 4;
+
+    // Amounts are held in minor units, e.g. pence, with up to this many decimal places
+    public static final int AMOUNT_DECIMAL_PLACES = 2;
+
+    private final byte[] data;
+    // Start and end offsets of each field's value, -1 if the field is absent
+    private final int[] valueStart = new int[FIELD_COUNT];
+    private final int[] valueEnd = new int[FIELD_COUNT];
+    private final String[] decoded = new String[FIELD_COUNT];
+    private boolean duplicateKeys;
+    private boolean unknownKeys;
 
     public BankTransaction(String transaction) {
-        this.fromAccount = "";
-        this.toAccount = "";
-        this.amount = "";
-
-        Arrays.stream(transaction.split(";"))
-                .forEach(item -> {
-                    String[] itemArr = item.split(":");
-                    switch (itemArr[0]) {
-                        case "from":
-                            this.fromAccount = itemArr[1];
-                            break;
-                        case "to":
-                            this.toAccount = itemArr[1];
-                            break;
-                        case "amount":
-                            this.amount = itemArr[1];
-                    }
-                });
+        this.data = transaction.getBytes(StandardCharsets.UTF_8);
+        try {
+            scan();
+        } catch (InvalidTransactionException ex) {
+            throw new IllegalArgumentException(ex.getMessage(), ex);
+        }
+    }
+
+    private BankTransaction(byte[] data) throws InvalidTransactionException {
+        this.data = data;
+        scan();
+    }
+
+    // Parses a transaction from its bytes. Items without a key and value are rejected
+    public static BankTransaction parse(byte[] transaction) throws InvalidTransactionException {
+        return new BankTransaction(transaction);
+    }
+
+    private void scan() throws InvalidTransactionException {
+        for (int i = 0; i < FIELD_COUNT; i++) {
+            valueStart[i] = -1;
+            valueEnd[i] = -1;
+        }
+
+        int itemStart = 0;
+        int colon = -1;
+        for (int i = 0; i <= data.length; i++) {
+            byte b = i < data.length ? data[i] : (byte) ';';
+            if (b == ':' && colon < 0) {
+                colon = i;
+            } else if (b == ';') {
+                item(itemStart, colon, i);
+                itemStart = i + 1;
+                colon = -1;
+            }
+        }
+    }
+
+    private void item(int start, int colon, int end) throws InvalidTransactionException {
+        if (start == end) {
+            // Empty items, e.g. a trailing separator, are skipped
+            return;
+        }
+        if (colon < 0) {
+            throw new InvalidTransactionException("Malformed transaction item at offset " + start);
+        }
+
+        int field;
+        if (keyEquals(FROM, start, colon)) {
+            field = FROM_FIELD;
+        } else if (keyEquals(TO, start, colon)) {
+            field = TO_FIELD;
+        } else if (keyEquals(STOKEN, start, colon)) {
+            field = STOKEN_FIELD;
+        } else if (keyEquals(AMOUNT, start, colon)) {
+            field = AMOUNT_FIELD;
+        } else {
+            unknownKeys = true;
+            return;
+        }
+
+        if (valueStart[field] >= 0) {
+            duplicateKeys = true;
+        }
+        valueStart[field] = colon + 1;
+        valueEnd[field] = end;
+    }
+
+    private boolean keyEquals(byte[] key, int start, int end) {
+        if (end - start != key.length) {
+            return false;
+        }
+        for (int i = 0; i < key.length; i++) {
+            if (data[start + i] != key[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private String value(int field) {
+        String value = decoded[field];
+        if (value == null) {
+            int start = valueStart[field];
+            value = start < 0 ? "" : new String(data, start, valueEnd[field] - start, StandardCharsets.UTF_8);
+            decoded[field] = value;
+        }
+        return value;
     }
 
     public String getAmount() {
-        return amount;
+        return value(AMOUNT_FIELD);
+    }
+
+    // The amount in minor units, parsed directly from the bytes. "1000" and "1000.00" are both 100000
+    public long getAmountMinorUnits() {
+        int start = valueStart[AMOUNT_FIELD];
+        int end = valueEnd[AMOUNT_FIELD];
+        if (start < 0 || start == end) {
+            throw new NumberFormatException("Transaction has no amount");
+        }
+
+        boolean negative = data[start] == '-';
+        int i = negative ? start + 1 : start;
+        long units = 0;
+        int decimals = -1;
+        boolean digits = false;
+        for (; i < end; i++) {
+            byte b = data[i];
+            if (b == '.' && decimals < 0) {
+                decimals = 0;
+            } else if (b >= '0' && b <= '9' && decimals < AMOUNT_DECIMAL_PLACES) {
+                units = Math.addExact(Math.multiplyExact(units, 10), b - '0');
+                digits = true;
+                if (decimals >= 0) {
+                    decimals++;
+                }
+            } else {
+                throw new NumberFormatException("Invalid amount: " + getAmount());
+            }
+        }
+        if (!digits) {
+            throw new NumberFormatException("Invalid amount: " + getAmount());
+        }
+        for (int d = Math.max(decimals, 0); d < AMOUNT_DECIMAL_PLACES; d++) {
+            units = Math.multiplyExact(units, 10);
+        }
+        return negative ? -units : units;
     }
 
     public String getToAccount() {
-        return toAccount;
+        return value(TO_FIELD);
     }
 
     public String getFromAccount() {
-        return fromAccount;
+        return value(FROM_FIELD);
+    }
+
+    public String getSecurityToken() {
+        return value(STOKEN_FIELD);
+    }
+
+    // True if any of from, to, stoken or amount appeared more than once
+    public boolean hasDuplicateKeys() {
+        return duplicateKeys;
+    }
+
+    // True if any item had a key other than from, to, stoken or amount
+    public boolean hasUnknownKeys() {
+        return unknownKeys;
     }
 }
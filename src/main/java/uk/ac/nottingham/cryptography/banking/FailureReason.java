@@ -0,0 +1,27 @@
+package uk.ac.nottingham.cryptography.banking;
+
+/***
+ * Why a transaction failed verification
+ */
+public enum FailureReason {
+    INVALID_TOKEN("Invalid authentication token"),
+    MALFORMED_TRANSACTION("Could not parse transaction"),
+    MALFORMED_RECORD("Malformed transaction log record"),
+    REPLAYED("Transaction has already been processed"),
+    REPLAY_GUARD_FULL("Replay guard is full"),
+    GLUE_PADDING("Transaction contains SHA-256 length extension padding"),
+    NON_PRINTABLE("Transaction contains non-printable bytes"),
+    DUPLICATE_KEY("Transaction repeats a key"),
+    UNKNOWN_KEY("Unknown key id"),
+    TOO_MANY_ITEMS("Transaction has too many items");
+
+    private final String message;
+
+    FailureReason(String message) {
+        this.message = message;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+}
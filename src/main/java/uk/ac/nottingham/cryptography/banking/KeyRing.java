@@ -0,0 +1,295 @@
+package uk.ac.nottingham.cryptography.banking;
+
+import uk.ac.nottingham.cryptography.hashing.CompressionEngine;
+import uk.ac.nottingham.cryptography.hashing.HmacSha256;
+import uk.ac.nottingham.cryptography.hashing.Sha256Hasher;
+import uk.ac.nottingham.cryptography.hashing.Sha512Hasher;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/***
+ * Keys for many counterparties, looked up by account or key id. Keys are loaded from a KeySource on first use
+ * and cached, ready to hash with: the key bytes, a hasher that has already absorbed them for the secret
+ * prefix modes, and the inner and outer midstates for HMAC. Each id has an active key, used to authenticate,
+ * and any number of older keys still accepted until the end of their grace period while a rotation completes.
+ *
+ * Lookups are lock-free reads of a ConcurrentHashMap. Only a miss loads and inserts, and once the cache holds
+ * more than its capacity it evicts with the clock (second chance) policy: ids are queued in insertion order,
+ * and one that has been looked up since it was last passed over goes to the back instead of being evicted.
+ * Eviction and invalidation lock the queue, and invalidated ids leave it at once.
+ */
+public class KeyRing {
+    public static final int DEFAULT_CAPACITY = 10_000;
+
+    private final AuthenticationMode mode;
+    private final KeySource source;
+    private final int capacity;
+    private final LongSupplier clock;
+    private final ConcurrentHashMap<String, Entry> cache = new ConcurrentHashMap<>();
+    private final ConcurrentLinkedQueue<Entry> evictionOrder = new ConcurrentLinkedQueue<>();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder unknown = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder graceMatches = new LongAdder();
+
+    public KeyRing(AuthenticationMode mode, KeySource source) {
+        this(mode, source, DEFAULT_CAPACITY);
+    }
+
+    public KeyRing(AuthenticationMode mode, KeySource source, int capacity) {
+        this(mode, source, capacity, System::currentTimeMillis);
+    }
+
+    KeyRing(AuthenticationMode mode, KeySource source, int capacity, LongSupplier clock) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive, got " + capacity);
+        }
+        this.mode = mode;
+        this.source = source;
+        this.capacity = capacity;
+        this.clock = clock;
+    }
+
+    public AuthenticationMode getAuthenticationMode() {
+        return mode;
+    }
+
+    // Drops the cached keys for an id, so the next lookup reloads them from the source, e.g. after a rotation
+    public void invalidate(String keyId) {
+        synchronized (evictionOrder) {
+            Entry entry = cache.remove(keyId);
+            // Also drops it from the eviction queue, which would otherwise keep its prepared keys reachable
+            if (entry != null) {
+                evictionOrder.remove(entry);
+            }
+        }
+    }
+
+    public void invalidateAll() {
+        synchronized (evictionOrder) {
+            evictionOrder.removeIf(entry -> {
+                cache.remove(entry.keyId, entry);
+                return true;
+            });
+        }
+    }
+
+    // Number of ids currently cached
+    public int size() {
+        return cache.size();
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    // Misses for ids the source did not know, which are not cached
+    public long getUnknown() {
+        return unknown.sum();
+    }
+
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    // Tokens that only matched a key in its grace period
+    public long getGraceMatches() {
+        return graceMatches.sum();
+    }
+
+    public double getHitRate() {
+        long h = getHits();
+        long total = h + getMisses();
+        return total == 0 ? 0 : (double) h / total;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d/%d keys cached, %d hits, %d misses (%.1f%% hit rate), %d unknown, %d evictions, "
+                        + "%d grace matches", size(), capacity, getHits(), getMisses(), getHitRate() * 100,
+                getUnknown(), getEvictions(), getGraceMatches());
+    }
+
+    // Null if the source does not know keyId
+    Entry lookup(String keyId) {
+        Entry entry = cache.get(keyId);
+        if (entry != null) {
+            hits.increment();
+            // Only written when it changes, so hot ids do not keep writing to a shared cache line
+            if (!entry.referenced) {
+                entry.referenced = true;
+            }
+            return entry;
+        }
+
+        misses.increment();
+        Keys keys = source.load(keyId);
+        if (keys == null) {
+            unknown.increment();
+            return null;
+        }
+        Entry loaded = new Entry(keyId, mode, keys);
+        Entry raced = cache.putIfAbsent(keyId, loaded);
+        if (raced != null) {
+            return raced;
+        }
+        evictionOrder.add(loaded);
+        // Invalidated before it was queued, so invalidate could not take it off the queue
+        if (cache.get(keyId) != loaded) {
+            evictionOrder.remove(loaded);
+        }
+        if (cache.size() > capacity) {
+            evict();
+        }
+        return loaded;
+    }
+
+    // Entries in the eviction queue, which tracks the cache apart from brief races with lookups
+    int queued() {
+        return evictionOrder.size();
+    }
+
+    long now() {
+        return clock.getAsLong();
+    }
+
+    void recordGraceMatch() {
+        graceMatches.increment();
+    }
+
+    private void evict() {
+        synchronized (evictionOrder) {
+            while (cache.size() > capacity) {
+                Entry entry = evictionOrder.poll();
+                if (entry == null) {
+                    return;
+                }
+                // Invalidated or reloaded entries are no longer in the cache and are simply dropped
+                if (cache.get(entry.keyId) != entry) {
+                    continue;
+                }
+                if (entry.referenced) {
+                    entry.referenced = false;
+                    evictionOrder.add(entry);
+                } else if (cache.remove(entry.keyId, entry)) {
+                    evictions.increment();
+                }
+            }
+        }
+    }
+
+    /***
+     * Loads the keys for an id from wherever they are kept. Called on cache misses, possibly concurrently
+     */
+    @FunctionalInterface
+    public interface KeySource {
+        // Null if the id is unknown
+        Keys load(String keyId);
+    }
+
+    /***
+     * The active key for an id, and older keys with the time their grace period ends. Immutable
+     */
+    public static final class Keys {
+        private final byte[] active;
+        private final byte[][] grace;
+        private final long[] graceUntil;
+
+        private Keys(byte[] active, byte[][] grace, long[] graceUntil) {
+            this.active = active;
+            this.grace = grace;
+            this.graceUntil = graceUntil;
+        }
+
+        public static Keys of(byte[] active) {
+            return new Keys(active.clone(), new byte[0][], new long[0]);
+        }
+
+        public static Keys of(String active) {
+            return of(active.getBytes(StandardCharsets.UTF_8));
+        }
+
+        // These keys with one more key accepted until the given time
+        public Keys withGrace(byte[] key, Instant until) {
+            byte[][] moreGrace = Arrays.copyOf(grace, grace.length + 1);
+            long[] moreUntil = Arrays.copyOf(graceUntil, graceUntil.length + 1);
+            moreGrace[grace.length] = key.clone();
+            moreUntil[grace.length] = until.toEpochMilli();
+            return new Keys(active, moreGrace, moreUntil);
+        }
+
+        public Keys withGrace(String key, Instant until) {
+            return withGrace(key.getBytes(StandardCharsets.UTF_8), until);
+        }
+    }
+
+    /***
+     * Cached keys for one id. Immutable apart from the eviction hint
+     */
+    static final class Entry {
+        final String keyId;
+        final Key active;
+        final Key[] grace;
+        final long[] graceUntil;
+        // Set on lookup, cleared when eviction passes over the entry. Races only make eviction less precise
+        boolean referenced;
+
+        Entry(String keyId, AuthenticationMode mode, Keys keys) {
+            this.keyId = keyId;
+            this.active = new Key(mode, keys.active);
+            this.grace = new Key[keys.grace.length];
+            for (int i = 0; i < grace.length; i++) {
+                grace[i] = new Key(mode, keys.grace[i]);
+            }
+            this.graceUntil = keys.graceUntil;
+        }
+    }
+
+    /***
+     * One key, prepared for the bank's authentication mode. The prefix hashers have absorbed the key and are
+     * only ever copied from, so they can be shared between threads. For keys shorter than a block the key
+     * waits in the hasher's buffer, for longer ones its whole blocks are already compressed into the midstate
+     */
+    static final class Key {
+        final byte[] bytes;
+        final Sha256Hasher sha256Prefix;
+        final Sha512Hasher sha512_256Prefix;
+        final HmacSha256 hmac;
+
+        Key(AuthenticationMode mode, byte[] bytes) {
+            this.bytes = bytes;
+            Sha256Hasher sha256 = null;
+            Sha512Hasher sha512 = null;
+            HmacSha256 mac = null;
+            if (mode == AuthenticationMode.HMAC_SHA256) {
+                mac = new HmacSha256(bytes);
+            } else if (mode == AuthenticationMode.SECRET_PREFIX_SHA512_256) {
+                sha512 = Sha512Hasher.sha512_256();
+                sha512.update(bytes);
+            } else {
+                // The prototype only compresses the key itself, so it never needs more than the Java engine
+                sha256 = new Sha256Hasher(CompressionEngine.unrolled());
+                sha256.update(bytes);
+            }
+            this.sha256Prefix = sha256;
+            this.sha512_256Prefix = sha512;
+            this.hmac = mac;
+        }
+    }
+}
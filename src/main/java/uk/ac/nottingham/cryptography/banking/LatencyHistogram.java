@@ -0,0 +1,75 @@
+package uk.ac.nottingham.cryptography.banking;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/***
+ * Concurrent latency histogram with four buckets per power of two, so recorded values are accurate to 25%
+ */
+class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 2;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = (64 - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+    private final LongAdder[] counts = new LongAdder[BUCKETS];
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    LatencyHistogram() {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = new LongAdder();
+        }
+    }
+
+    void record(long nanos) {
+        if (nanos < 0) {
+            nanos = 0;
+        }
+        counts[bucket(nanos)].increment();
+        // Reading first avoids a CAS once the maximum has settled
+        if (nanos > max.get()) {
+            max.accumulate(nanos);
+        }
+    }
+
+    BankMetrics.Latency snapshot() {
+        long[] snapshot = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = counts[i].sum();
+        }
+        return new BankMetrics.Latency(snapshot, max.get());
+    }
+
+    void reset() {
+        for (LongAdder count : counts) {
+            count.reset();
+        }
+        max.reset();
+    }
+
+    // Values below SUB_BUCKETS get a bucket each, above that the top three bits pick the bucket
+    static int bucket(long nanos) {
+        int magnitude = 63 - Long.numberOfLeadingZeros(nanos);
+        if (magnitude < SUB_BUCKET_BITS) {
+            return (int) nanos;
+        }
+        int shift = magnitude - SUB_BUCKET_BITS;
+        return (shift + 1) * SUB_BUCKETS + (int) ((nanos >>> shift) & (SUB_BUCKETS - 1));
+    }
+
+    // Smallest value that falls in the bucket
+    static long lowerBound(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int shift = bucket / SUB_BUCKETS - 1;
+        return (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << shift;
+    }
+
+    // Largest value that falls in the bucket
+    static long upperBound(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        return lowerBound(bucket) + (1L << (bucket / SUB_BUCKETS - 1)) - 1;
+    }
+}
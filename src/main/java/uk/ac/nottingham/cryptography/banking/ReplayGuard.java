@@ -0,0 +1,241 @@
+package uk.ac.nottingham.cryptography.banking;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/***
+ * Remembers recently seen 96-bit stoken values so that replayed transactions can be rejected. Tokens are kept in
+ * a fixed size, off-heap, open addressing table and forgotten once they fall outside a time or count window.
+ * checkAndInsert is safe to call from any number of threads without locking, and never waits on another thread
+ * indefinitely. A slot another thread is in the middle of writing is treated as holding some other token. The one
+ * wait is for a concurrent insert of the same token further along the chain to back off, and that is bounded by
+ * MAX_SPINS spins and yields: if the other thread is descheduled for longer, this copy is rejected as a replay too. Both copies
+ * of a token inserted at the same moment can then be rejected, but a token is never accepted twice.
+ */
+public class ReplayGuard {
+    public enum Result {
+        FRESH,
+        REPLAY,
+        // Every slot the token could occupy holds a live token, the table is too small for the window
+        CAPACITY_EXCEEDED
+    }
+
+    public static final int TOKEN_HEX_LENGTH = 24;
+    public static final int MAX_CAPACITY = 1 << 26;
+
+    private static final VarHandle LONGS = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+
+    // Each slot is a control word followed by the high 64 and low 32 bits of the token
+    private static final int SLOT_BYTES = 24;
+    private static final int MAX_PROBES = 32;
+    // Waiting for a concurrent copy of the same token to back off spins this many times, then yields as many
+    // more, giving a descheduled thread the chance to run before this copy is given up on
+    static final int MAX_SPINS = 1 << 10;
+
+    // Slot states in the low two bits of the control word, the remaining bits hold the insertion stamp.
+    // A BUSY slot is being written, a PENDING slot has its token but is still checking for a concurrent
+    // duplicate. Stamps start at 1, so a LIVE slot with stamp 0 is a discarded duplicate that can be reused,
+    // and a BUSY slot, whose stamp is also 0, reads as expired and is passed over
+    private static final long EMPTY = 0;
+    private static final long BUSY = 1;
+    private static final long PENDING = 2;
+    private static final long LIVE = 3;
+    private static final long DISCARDED = LIVE;
+
+    private final ByteBuffer table;
+    private final int mask;
+    private final LongSupplier clock;
+    private final long window;
+
+    ReplayGuard(int capacity, LongSupplier clock, long window) {
+        if (capacity <= 0 || capacity > MAX_CAPACITY) {
+            throw new IllegalArgumentException("Capacity must be between 1 and " + MAX_CAPACITY + ", got " + capacity);
+        }
+        if (window <= 0) {
+            throw new IllegalArgumentException("Window must be positive, got " + window);
+        }
+        int slots = Integer.highestOneBit(capacity);
+        if (slots < capacity) {
+            slots <<= 1;
+        }
+        this.table = ByteBuffer.allocateDirect(slots * SLOT_BYTES).order(ByteOrder.nativeOrder());
+        this.mask = slots - 1;
+        this.clock = clock;
+        this.window = window;
+    }
+
+    // Tokens are remembered for the given duration. Capacity is rounded up to a power of two and should be
+    // comfortably above the number of transactions expected in one window
+    public static ReplayGuard withTimeWindow(int capacity, Duration window) {
+        long origin = System.nanoTime();
+        return new ReplayGuard(capacity, () -> System.nanoTime() - origin + 1, window.toNanos());
+    }
+
+    // Tokens are remembered until this many further checks have been made
+    public static ReplayGuard withCountWindow(int capacity, long checks) {
+        AtomicLong counter = new AtomicLong();
+        return new ReplayGuard(capacity, counter::incrementAndGet, checks);
+    }
+
+    public int getCapacity() {
+        return mask + 1;
+    }
+
+    // Off-heap memory used by the table, fixed at construction
+    public long getMemoryBytes() {
+        return (long) table.capacity();
+    }
+
+    // Parses a 24 digit hex stoken, as found in transactions
+    public Result checkAndInsert(String stoken) {
+        if (stoken == null || stoken.length() != TOKEN_HEX_LENGTH) {
+            throw new IllegalArgumentException("Security token must be " + TOKEN_HEX_LENGTH + " hex digits");
+        }
+        long hi = 0;
+        long lo = 0;
+        for (int i = 0; i < TOKEN_HEX_LENGTH; i++) {
+            int digit = Character.digit(stoken.charAt(i), 16);
+            if (digit < 0) {
+                throw new IllegalArgumentException("Security token must be " + TOKEN_HEX_LENGTH + " hex digits");
+            }
+            if (i < 16) {
+                hi = (hi << 4) | digit;
+            } else {
+                lo = (lo << 4) | digit;
+            }
+        }
+        return checkAndInsert(hi, (int) lo);
+    }
+
+    // Records the token and returns FRESH, or REPLAY if it is already held and within the window
+    public Result checkAndInsert(long hi, int lo) {
+        long now = clock.getAsLong();
+        int home = hash(hi, lo);
+
+        retry:
+        while (true) {
+            int target = -1;
+            int targetProbe = -1;
+            long targetControl = 0;
+
+            for (int probe = 0; probe < MAX_PROBES; probe++) {
+                int offset = ((home + probe) & mask) * SLOT_BYTES;
+                long control = (long) LONGS.getVolatile(table, offset);
+                long state = control & 3;
+
+                if (state == EMPTY) {
+                    if (target < 0) {
+                        target = offset;
+                        targetProbe = probe;
+                        targetControl = control;
+                    }
+                    break;
+                }
+
+                boolean matches = matches(offset, hi, lo);
+                if (control != (long) LONGS.getVolatile(table, offset)) {
+                    continue retry;
+                }
+                if (!isExpired(control, now)) {
+                    if (matches) {
+                        return Result.REPLAY;
+                    }
+                } else if (state == LIVE && (matches || target < 0)) {
+                    // An expired copy of the same token can be taken over straight away
+                    target = offset;
+                    targetProbe = probe;
+                    targetControl = control;
+                    if (matches) {
+                        break;
+                    }
+                }
+            }
+
+            if (target < 0) {
+                return Result.CAPACITY_EXCEEDED;
+            }
+            if (!LONGS.compareAndSet(table, target, targetControl, BUSY)) {
+                continue;
+            }
+            LONGS.set(table, target + 8, hi);
+            LONGS.set(table, target + 16, (long) lo);
+            LONGS.setVolatile(table, target, (now << 2) | PENDING);
+
+            if (hasConcurrentDuplicate(home, target, targetProbe, hi, lo, now)) {
+                LONGS.setVolatile(table, target, DISCARDED);
+                return Result.REPLAY;
+            }
+            LONGS.setVolatile(table, target, (now << 2) | LIVE);
+            return Result.FRESH;
+        }
+    }
+
+    // Another thread inserting the same token can claim a different slot if the chain changed between the two
+    // scans. Both publish before rescanning, so at least one sees the other, even when the other's slot was
+    // still BUSY to the first: a LIVE copy always wins, and between two PENDING copies the one nearer the home
+    // slot wins once the other has backed off. One that takes too long to back off costs both copies
+    private boolean hasConcurrentDuplicate(int home, int own, int ownProbe, long hi, int lo, long now) {
+        for (int probe = 0; probe < MAX_PROBES; probe++) {
+            int offset = ((home + probe) & mask) * SLOT_BYTES;
+            if (offset == own) {
+                continue;
+            }
+            long control = (long) LONGS.getVolatile(table, offset);
+            long state = control & 3;
+            if (state == EMPTY) {
+                return false;
+            }
+            if (isExpired(control, now) || !matches(offset, hi, lo)) {
+                continue;
+            }
+            if (state == LIVE || probe < ownProbe) {
+                return true;
+            }
+            // A PENDING copy further along will back off, wait a while to see it do so
+            for (int spins = 0; (long) LONGS.getVolatile(table, offset) == control; spins++) {
+                if (spins == 2 * MAX_SPINS) {
+                    return true;
+                }
+                if (spins < MAX_SPINS) {
+                    Thread.onSpinWait();
+                } else {
+                    Thread.yield();
+                }
+            }
+            control = (long) LONGS.getVolatile(table, offset);
+            if ((control & 3) == LIVE && !isExpired(control, now) && matches(offset, hi, lo)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean matches(int offset, long hi, int lo) {
+        return (long) LONGS.get(table, offset + 8) == hi && (long) LONGS.get(table, offset + 16) == lo;
+    }
+
+    private boolean isExpired(long control, long now) {
+        long stamp = control >>> 2;
+        return stamp == 0 || now - stamp > window;
+    }
+
+    // Overwrites a slot, for tests that stand in for a thread stalled part way through an insert
+    void setSlot(int slot, long control, long hi, int lo) {
+        int offset = slot * SLOT_BYTES;
+        LONGS.set(table, offset + 8, hi);
+        LONGS.set(table, offset + 16, (long) lo);
+        LONGS.setVolatile(table, offset, control);
+    }
+
+    int hash(long hi, int lo) {
+        long h = hi * 0x9E3779B97F4A7C15L + lo * 0xC2B2AE3D27D4EB4FL;
+        h ^= h >>> 29;
+        h *= 0xBF58476D1CE4E5B9L;
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+}
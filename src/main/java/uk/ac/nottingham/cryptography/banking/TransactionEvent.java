@@ -0,0 +1,38 @@
+package uk.ac.nottingham.cryptography.banking;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/***
+ * Flight recorder event for one transaction authenticated or verified by a Bank
+ */
+@Name("uk.ac.nottingham.cryptography.Transaction")
+@Label("Bank Transaction")
+@Category({"Cryptography", "Banking"})
+@Description("A transaction authenticated or verified by a Bank")
+@StackTrace(false)
+public final class TransactionEvent extends Event {
+    @Label("Operation")
+    String operation;
+
+    @Label("Authentication Mode")
+    String mode;
+
+    @Label("Transaction Length")
+    @DataAmount
+    int length;
+
+    @Label("Valid")
+    boolean valid;
+
+    @Label("Failure Reason")
+    String failureReason;
+
+    // Start time for the latency histogram, not recorded
+    transient long startNanos;
+}
@@ -0,0 +1,233 @@
+package uk.ac.nottingham.cryptography.banking;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+
+/***
+ * Cheap screening of transaction bytes before their token is checked. A length extended transaction carries
+ * the SHA-256 padding of the original message in its middle: a 0x80 byte, zero bytes, then the original
+ * bit length, ending on a block boundary once the key is counted. Legitimate transactions are printable
+ * ASCII, so any other byte is rejected, and one whose surroundings match that padding is reported as glue
+ * padding. Repeated keys are rejected too, as BankTransaction would silently keep the last value, and so are
+ * transactions with more than MAX_ITEMS items, which no legitimate transaction comes close to.
+ *
+ * Printable transactions, the common case, are checked eight bytes at a time with SWAR bit tricks, finding
+ * non-printable bytes, item separators and the colon ending each key in one pass. The keys it records are
+ * then looked up in a small open addressed table, so screening stays linear in the transaction length
+ * however many keys an unauthenticated sender packs in. Instances are immutable and thread safe.
+ */
+public class TransactionFilter {
+    // Without a known key length, glue padding is matched for any key up to this long
+    public static final int MAX_KEY_LENGTH = 256;
+    // Transactions with more items than this are rejected without comparing their keys. Empty items, such as
+    // a trailing separator, are not counted
+    public static final int MAX_ITEMS = 256;
+    // A power of two at least twice MAX_ITEMS, so probes stay short
+    private static final int TABLE_LENGTH = Integer.highestOneBit(MAX_ITEMS - 1) << 2;
+
+    private static final VarHandle LONG_LE = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+    private static final VarHandle LONG_BE = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.BIG_ENDIAN);
+
+    private static final long ONES = 0x0101010101010101L;
+    private static final long HIGH_BITS = 0x8080808080808080L;
+    private static final long LOW_BITS = 0x7f7f7f7f7f7f7f7fL;
+    private static final long SEPARATORS = ';' * ONES;
+    private static final long COLONS = ':' * ONES;
+
+    // Seeds the key hash, so keys that collide in the table cannot be prepared in advance
+    private static final int HASH_SEED = ThreadLocalRandom.current().nextInt();
+    private static final ThreadLocal<Scratch> SCRATCH = ThreadLocal.withInitial(Scratch::new);
+
+    private static final int BLOCK_LENGTH = 64;
+    private static final byte PADDING_START = (byte) 0x80;
+
+    private final int keyLength;
+
+    // Matches glue padding for any key length up to MAX_KEY_LENGTH
+    public TransactionFilter() {
+        this.keyLength = -1;
+    }
+
+    // Only matches glue padding that lines up with a key of exactly this many bytes
+    public TransactionFilter(int keyLength) {
+        if (keyLength < 0) {
+            throw new IllegalArgumentException("Key length must not be negative, got " + keyLength);
+        }
+        this.keyLength = keyLength;
+    }
+
+    // Returns why the transaction should be rejected, or null if it passes
+    public FailureReason check(byte[] transaction) {
+        return check(transaction, 0, transaction.length);
+    }
+
+    public FailureReason check(byte[] data, int offset, int length) {
+        Scratch scratch = SCRATCH.get();
+        int items = 0;
+        int keys = 0;
+        int itemStart = offset;
+        int colon = -1;
+        long nonPrintable = 0;
+        int end = offset + length;
+        int i = offset;
+        for (; i + 8 <= end; i += 8) {
+            long word = (long) LONG_LE.get(data, i);
+            nonPrintable |= nonPrintable(word);
+            long separators = zeroBytes(word ^ SEPARATORS);
+            long found = separators | zeroBytes(word ^ COLONS);
+            while (found != 0) {
+                int p = i + (Long.numberOfTrailingZeros(found) >>> 3);
+                if ((separators & found & -found) != 0) {
+                    keys = scratch.record(keys, itemStart, colon);
+                    items += p > itemStart ? 1 : 0;
+                    itemStart = p + 1;
+                    colon = -1;
+                } else if (colon < 0) {
+                    colon = p;
+                }
+                found &= found - 1;
+            }
+        }
+        for (; i < end; i++) {
+            byte b = data[i];
+            if (b < 0x20 || b > 0x7e) {
+                nonPrintable = -1;
+            } else if (b == ';') {
+                keys = scratch.record(keys, itemStart, colon);
+                items += i > itemStart ? 1 : 0;
+                itemStart = i + 1;
+                colon = -1;
+            } else if (b == ':' && colon < 0) {
+                colon = i;
+            }
+        }
+        keys = scratch.record(keys, itemStart, colon);
+        items += end > itemStart ? 1 : 0;
+
+        if (nonPrintable != 0) {
+            return hasGluePadding(data, offset, end) ? FailureReason.GLUE_PADDING : FailureReason.NON_PRINTABLE;
+        }
+        if (items > MAX_ITEMS) {
+            return FailureReason.TOO_MANY_ITEMS;
+        }
+        return scratch.hasDuplicateKeys(data, keys) ? FailureReason.DUPLICATE_KEY : null;
+    }
+
+    // Checks the remaining bytes of the buffer without moving its position. Direct buffers are copied, which
+    // is still cheap next to hashing them
+    public FailureReason check(ByteBuffer transaction) {
+        if (transaction.hasArray()) {
+            return check(transaction.array(), transaction.arrayOffset() + transaction.position(),
+                    transaction.remaining());
+        }
+        byte[] bytes = new byte[transaction.remaining()];
+        transaction.get(transaction.position(), bytes);
+        return check(bytes);
+    }
+
+    // High bit set in each byte that is below 0x20 or above 0x7e. No byte's result depends on another's,
+    // as adding to the low seven bits of a byte cannot carry out of it
+    static long nonPrintable(long word) {
+        long low = word & LOW_BITS;
+        long control = ~(low + 0x6060606060606060L) & HIGH_BITS;
+        long delete = (low + ONES) & HIGH_BITS;
+        return (word & HIGH_BITS) | control | delete;
+    }
+
+    // High bit set in each zero byte, exactly, without the borrow of the shorter x - 0x01.. & ~x form
+    static long zeroBytes(long word) {
+        long t = (word & LOW_BITS) + LOW_BITS;
+        return ~(t | word | LOW_BITS);
+    }
+
+    // A 0x80 byte at p, zeros up to the length field, and a length field holding the bit length of key | data[..p),
+    // ending where the key and data so far fill a whole number of blocks
+    private boolean hasGluePadding(byte[] data, int offset, int end) {
+        for (int p = offset; p < end; p++) {
+            if (data[p] != PADDING_START) {
+                continue;
+            }
+            long before = p - offset;
+            int zeros = p + 1;
+            while (zeros < end && data[zeros] == 0) {
+                zeros++;
+            }
+            if (keyLength >= 0) {
+                int fieldEnd = p + 1 + (int) Math.floorMod(55 - (keyLength + before), (long) BLOCK_LENGTH) + 8;
+                if (lengthFieldMatches(data, zeros, fieldEnd, end, (keyLength + before) * 8)) {
+                    return true;
+                }
+                continue;
+            }
+            // Any key length works if the field lines up with a block boundary for that key
+            for (int fieldEnd = p + 9; fieldEnd <= p + 8 + BLOCK_LENGTH && fieldEnd <= end; fieldEnd++) {
+                if (fieldEnd - 8 > zeros) {
+                    break;
+                }
+                long bits = (long) LONG_BE.get(data, fieldEnd - 8);
+                long key = bits / 8 - before;
+                if (bits % 8 == 0 && key >= 0 && key <= MAX_KEY_LENGTH
+                        && (key + fieldEnd - offset) % BLOCK_LENGTH == 0) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    // The zero run from the 0x80 byte must reach the length field, which may itself start with zero bytes
+    private static boolean lengthFieldMatches(byte[] data, int zerosEnd, int fieldEnd, int end, long bits) {
+        if (fieldEnd > end || fieldEnd - 8 > zerosEnd) {
+            return false;
+        }
+        return (long) LONG_BE.get(data, fieldEnd - 8) == bits;
+    }
+
+    // Key ranges found by the scan, and the table they are looked up in. Reused by each check on a thread
+    private static final class Scratch {
+        private final int[] keyStart = new int[MAX_ITEMS];
+        private final int[] keyEnd = new int[MAX_ITEMS];
+        // Index + 1 of the key held in each slot, 0 for an empty slot
+        private final int[] table = new int[TABLE_LENGTH];
+
+        // Records the key of an item if it has one, until there are more items than can be checked
+        int record(int keys, int start, int colon) {
+            if (colon < 0 || keys == MAX_ITEMS) {
+                return keys;
+            }
+            keyStart[keys] = start;
+            keyEnd[keys] = colon;
+            return keys + 1;
+        }
+
+        boolean hasDuplicateKeys(byte[] data, int keys) {
+            // Only the part of the table this many keys need is used, and cleared
+            int mask = Math.max(8, Integer.highestOneBit(keys - 1) << 2) - 1;
+            Arrays.fill(table, 0, mask + 1, 0);
+            for (int k = 0; k < keys; k++) {
+                int start = keyStart[k];
+                int end = keyEnd[k];
+                int slot = hash(data, start, end) & mask;
+                for (int other; (other = table[slot]) != 0; slot = (slot + 1) & mask) {
+                    if (Arrays.equals(data, keyStart[other - 1], keyEnd[other - 1], data, start, end)) {
+                        return true;
+                    }
+                }
+                table[slot] = k + 1;
+            }
+            return false;
+        }
+
+        private static int hash(byte[] data, int start, int end) {
+            int h = HASH_SEED;
+            for (int i = start; i < end; i++) {
+                h = (h ^ data[i]) * 0x01000193;
+            }
+            return h ^ (h >>> 16);
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package uk.ac.nottingham.cryptography.banking;
+
+/***
+ * Outcome of verifying a single transaction, either the parsed transaction or the reason it failed
+ */
+public class VerificationResult {
+    private final BankTransaction transaction;
+    private final FailureReason failureReason;
+
+    private VerificationResult(BankTransaction transaction, FailureReason failureReason) {
+        this.transaction = transaction;
+        this.failureReason = failureReason;
+    }
+
+    public static VerificationResult valid(BankTransaction transaction) {
+        return new VerificationResult(transaction, null);
+    }
+
+    public static VerificationResult failed(FailureReason reason) {
+        return new VerificationResult(null, reason);
+    }
+
+    public boolean isValid() {
+        return failureReason == null;
+    }
+
+    // Null unless the transaction is valid
+    public BankTransaction getTransaction() {
+        return transaction;
+    }
+
+    // Null if the transaction is valid
+    public FailureReason getFailureReason() {
+        return failureReason;
+    }
+}
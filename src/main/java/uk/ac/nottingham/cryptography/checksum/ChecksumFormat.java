@@ -0,0 +1,140 @@
+package uk.ac.nottingham.cryptography.checksum;
+
+import java.util.HexFormat;
+
+/***
+ * Lines in the formats written and read by coreutils sha256sum: "hex  name", "hex *name" in binary mode, or
+ * "SHA256 (name) = hex" with --tag. Names holding a backslash, newline or carriage return are escaped, and
+ * the line is then marked by a leading backslash.
+ */
+public final class ChecksumFormat {
+    private static final int HEX_LENGTH = 64;
+    private static final String TAG = "SHA256 (";
+    private static final String TAG_SEPARATOR = ") = ";
+
+    private ChecksumFormat() {
+
+    }
+
+    public static String format(String hexDigest, String name, boolean binary, boolean tag) {
+        String escaped = escape(name);
+        String prefix = escaped.equals(name) ? "" : "\\";
+        if (tag) {
+            return prefix + TAG + escaped + TAG_SEPARATOR + hexDigest;
+        }
+        return prefix + hexDigest + (binary ? " *" : "  ") + escaped;
+    }
+
+    // The name as sha256sum -c prints it in its OK and FAILED lines, which only escapes names with line breaks
+    public static String displayName(String name) {
+        if (name.indexOf('\n') < 0 && name.indexOf('\r') < 0) {
+            return name;
+        }
+        return "\\" + escape(name);
+    }
+
+    // Null if the line is not in either format
+    public static Entry parse(String line) {
+        boolean escaped = line.startsWith("\\");
+        if (escaped) {
+            line = line.substring(1);
+        }
+        String hex;
+        String name;
+        if (line.startsWith(TAG)) {
+            int separator = line.lastIndexOf(TAG_SEPARATOR);
+            if (separator < TAG.length()) {
+                return null;
+            }
+            name = line.substring(TAG.length(), separator);
+            hex = line.substring(separator + TAG_SEPARATOR.length());
+        } else {
+            if (line.length() < HEX_LENGTH + 3 || line.charAt(HEX_LENGTH) != ' '
+                    || (line.charAt(HEX_LENGTH + 1) != ' ' && line.charAt(HEX_LENGTH + 1) != '*')) {
+                return null;
+            }
+            hex = line.substring(0, HEX_LENGTH);
+            name = line.substring(HEX_LENGTH + 2);
+        }
+        if (hex.length() != HEX_LENGTH || !isHex(hex) || name.isEmpty()) {
+            return null;
+        }
+        if (escaped) {
+            name = unescape(name);
+            if (name == null) {
+                return null;
+            }
+        }
+        return new Entry(HexFormat.of().parseHex(hex), name);
+    }
+
+    static String escape(String name) {
+        if (name.indexOf('\\') < 0 && name.indexOf('\n') < 0 && name.indexOf('\r') < 0) {
+            return name;
+        }
+        StringBuilder sb = new StringBuilder(name.length() + 8);
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            switch (c) {
+                case '\\': sb.append("\\\\"); break;
+                case '\n': sb.append("\\n"); break;
+                case '\r': sb.append("\\r"); break;
+                default: sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+
+    // Null if the name has an escape sequence other than \\, \n or \r
+    static String unescape(String name) {
+        StringBuilder sb = new StringBuilder(name.length());
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (c != '\\') {
+                sb.append(c);
+                continue;
+            }
+            if (++i == name.length()) {
+                return null;
+            }
+            switch (name.charAt(i)) {
+                case '\\': sb.append('\\'); break;
+                case 'n': sb.append('\n'); break;
+                case 'r': sb.append('\r'); break;
+                default: return null;
+            }
+        }
+        return sb.toString();
+    }
+
+    private static boolean isHex(String s) {
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if ((c < '0' || c > '9') && (c < 'a' || c > 'f') && (c < 'A' || c > 'F')) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /***
+     * One line of a checksum file: the expected digest and the name of the file to check
+     */
+    public static final class Entry {
+        private final byte[] expected;
+        private final String name;
+
+        Entry(byte[] expected, String name) {
+            this.expected = expected;
+            this.name = name;
+        }
+
+        public byte[] getExpected() {
+            return expected.clone();
+        }
+
+        public String getName() {
+            return name;
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package uk.ac.nottingham.cryptography.checksum;
+
+import java.time.Duration;
+import java.util.function.Consumer;
+
+/***
+ * Settings for a ParallelChecksum run. Setters return this so options can be chained
+ */
+public class ChecksumOptions {
+    private int threads = Runtime.getRuntime().availableProcessors();
+    private int maxOpenFiles = 256;
+    private int maxInFlightBytes = 256 << 20;
+    private long mappedThreshold = 1 << 20;
+    private int mapWindow = 64 << 20;
+    private int bufferSize = 1 << 16;
+    private int maxPending = 4096;
+    private Duration progressInterval;
+    private Consumer<ChecksumStats> progressListener;
+
+    public ChecksumOptions threads(int threads) {
+        this.threads = positive(threads, "threads");
+        return this;
+    }
+
+    // Files held open at once across all workers
+    public ChecksumOptions maxOpenFiles(int files) {
+        this.maxOpenFiles = positive(files, "maxOpenFiles");
+        return this;
+    }
+
+    // Bytes of mapped windows and read buffers being hashed at once across all workers
+    public ChecksumOptions maxInFlightBytes(int bytes) {
+        this.maxInFlightBytes = positive(bytes, "maxInFlightBytes");
+        return this;
+    }
+
+    // Files at least this large are hashed through memory mapped windows, smaller ones through pooled buffers
+    public ChecksumOptions mappedThreshold(long bytes) {
+        if (bytes < 0) {
+            throw new IllegalArgumentException("mappedThreshold must not be negative, got " + bytes);
+        }
+        this.mappedThreshold = bytes;
+        return this;
+    }
+
+    public ChecksumOptions mapWindow(int bytes) {
+        this.mapWindow = positive(bytes, "mapWindow");
+        return this;
+    }
+
+    // Size of each worker's pooled read buffer
+    public ChecksumOptions bufferSize(int bytes) {
+        this.bufferSize = positive(bytes, "bufferSize");
+        return this;
+    }
+
+    // Files submitted ahead of the oldest unfinished one, which bounds the results held back to keep input order
+    public ChecksumOptions maxPending(int files) {
+        this.maxPending = positive(files, "maxPending");
+        return this;
+    }
+
+    // Receives the stats every interval while files are being hashed
+    public ChecksumOptions progress(Duration interval, Consumer<ChecksumStats> listener) {
+        this.progressInterval = interval;
+        this.progressListener = listener;
+        return this;
+    }
+
+    int getThreads() {
+        return threads;
+    }
+
+    int getMaxOpenFiles() {
+        return maxOpenFiles;
+    }
+
+    int getMaxInFlightBytes() {
+        return maxInFlightBytes;
+    }
+
+    long getMappedThreshold() {
+        return mappedThreshold;
+    }
+
+    // A window can never need more than the whole in flight allowance
+    int getMapWindow() {
+        return Math.min(mapWindow, maxInFlightBytes);
+    }
+
+    int getBufferSize() {
+        return Math.min(bufferSize, maxInFlightBytes);
+    }
+
+    int getMaxPending() {
+        return maxPending;
+    }
+
+    Duration getProgressInterval() {
+        return progressInterval;
+    }
+
+    Consumer<ChecksumStats> getProgressListener() {
+        return progressListener;
+    }
+
+    private static int positive(int value, String name) {
+        if (value <= 0) {
+            throw new IllegalArgumentException(name + " must be positive, got " + value);
+        }
+        return value;
+    }
+}
@@ -0,0 +1,11 @@
+package uk.ac.nottingham.cryptography.checksum;
+
+import java.io.IOException;
+
+/***
+ * Receives each file's result. Called from the thread that started the run, in input order
+ */
+@FunctionalInterface
+public interface ChecksumSink {
+    void accept(FileChecksum result) throws IOException;
+}
@@ -0,0 +1,77 @@
+package uk.ac.nottingham.cryptography.checksum;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/***
+ * Throughput of a ParallelChecksum run. Counters can be read while the run is in progress
+ */
+public class ChecksumStats {
+    private final long startNanos = System.nanoTime();
+    private volatile long endNanos;
+    private final AtomicLong files = new AtomicLong();
+    private final AtomicLong bytes = new AtomicLong();
+    private final AtomicLong errors = new AtomicLong();
+    private final AtomicLong mismatches = new AtomicLong();
+
+    void addBytes(long count) {
+        bytes.addAndGet(count);
+    }
+
+    void recordResult(FileChecksum result) {
+        files.incrementAndGet();
+        if (result.getError() != null) {
+            errors.incrementAndGet();
+        } else if (!result.matches()) {
+            mismatches.incrementAndGet();
+        }
+    }
+
+    void finish() {
+        endNanos = System.nanoTime();
+    }
+
+    public long getFiles() {
+        return files.get();
+    }
+
+    public long getBytesHashed() {
+        return bytes.get();
+    }
+
+    // Files that could not be opened or read
+    public long getErrors() {
+        return errors.get();
+    }
+
+    // Files whose digest differed from the expected one, when checking
+    public long getMismatches() {
+        return mismatches.get();
+    }
+
+    public long getElapsedNanos() {
+        long end = endNanos;
+        return (end == 0 ? System.nanoTime() : end) - startNanos;
+    }
+
+    public double getFilesPerSecond() {
+        return getFiles() * 1e9 / Math.max(1, getElapsedNanos());
+    }
+
+    public double getMegabytesPerSecond() {
+        return getBytesHashed() * 1e3 / Math.max(1, getElapsedNanos());
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("%d files, %d bytes in %.2fs, %.0f files/s, %.1f MB/s",
+                getFiles(), getBytesHashed(), getElapsedNanos() / 1e9, getFilesPerSecond(), getMegabytesPerSecond()));
+        if (getErrors() > 0) {
+            sb.append(String.format("%n  unreadable: %d", getErrors()));
+        }
+        if (getMismatches() > 0) {
+            sb.append(String.format("%n  mismatched: %d", getMismatches()));
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,57 @@
+package uk.ac.nottingham.cryptography.checksum;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+
+import static uk.ac.nottingham.cryptography.Main.bytesToHex;
+
+/***
+ * The SHA-256 of one file, or why it could not be read. When checking, also the digest it was expected to have
+ */
+public final class FileChecksum {
+    private final Path path;
+    private final String name;
+    private final byte[] digest;
+    private final byte[] expected;
+    private final IOException error;
+
+    FileChecksum(Path path, String name, byte[] digest, byte[] expected, IOException error) {
+        this.path = path;
+        this.name = name;
+        this.digest = digest;
+        this.expected = expected;
+        this.error = error;
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    // The name as given on the command line, found in a directory, or listed in a checksum file
+    public String getName() {
+        return name;
+    }
+
+    // Null if the file could not be read
+    public byte[] getDigest() {
+        return digest == null ? null : digest.clone();
+    }
+
+    public String getHexDigest() {
+        return digest == null ? null : bytesToHex(digest);
+    }
+
+    public byte[] getExpected() {
+        return expected == null ? null : expected.clone();
+    }
+
+    public IOException getError() {
+        return error;
+    }
+
+    // True if the file was read and, when there is an expected digest, matches it
+    public boolean matches() {
+        return digest != null && (expected == null || MessageDigest.isEqual(digest, expected));
+    }
+}
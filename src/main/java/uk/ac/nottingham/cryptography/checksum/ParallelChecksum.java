@@ -0,0 +1,240 @@
+package uk.ac.nottingham.cryptography.checksum;
+
+import uk.ac.nottingham.cryptography.hashing.Sha256Hasher;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/***
+ * Hashes many files at once on a work stealing pool, with each file still hashed serially from start to end,
+ * so every digest is the plain SHA-256 of the file. Large files are read through memory mapped windows and
+ * small ones through a buffer pooled per worker. Semaphores bound the files held open and the bytes being
+ * hashed across all workers. Results reach the sink in input order, and directories are walked in name order,
+ * so the output is the same for any number of threads.
+ *
+ * Symbolic links to directories are not followed when walking, and only regular files found in a directory
+ * are hashed. Files named directly are always hashed, as with sha256sum.
+ */
+public class ParallelChecksum {
+    private final ChecksumOptions options;
+    private final ThreadLocal<Scratch> scratch;
+
+    public ParallelChecksum(ChecksumOptions options) {
+        this.options = options;
+        this.scratch = ThreadLocal.withInitial(() -> new Scratch(options.getBufferSize()));
+    }
+
+    // Hashes each file, and every regular file below each directory
+    public ChecksumStats hash(List<Path> inputs, ChecksumSink sink) throws IOException, InterruptedException {
+        Run run = new Run(sink);
+        try {
+            for (Path input : inputs) {
+                if (Files.isDirectory(input)) {
+                    run.walk(input);
+                } else {
+                    run.submit(input, input.toString(), null);
+                }
+            }
+            run.drain(0);
+        } finally {
+            run.close();
+        }
+        return run.stats;
+    }
+
+    // Hashes each listed file and compares it with its expected digest. Names are resolved against base
+    public ChecksumStats check(List<ChecksumFormat.Entry> entries, Path base, ChecksumSink sink)
+            throws IOException, InterruptedException {
+        Run run = new Run(sink);
+        try {
+            for (ChecksumFormat.Entry entry : entries) {
+                Path path;
+                try {
+                    path = base.resolve(entry.getName());
+                } catch (InvalidPathException ex) {
+                    run.fail(null, entry.getName(), entry.getExpected(), new IOException(ex.getMessage(), ex));
+                    continue;
+                }
+                run.submit(path, entry.getName(), entry.getExpected());
+            }
+            run.drain(0);
+        } finally {
+            run.close();
+        }
+        return run.stats;
+    }
+
+    public ChecksumStats check(List<ChecksumFormat.Entry> entries, ChecksumSink sink)
+            throws IOException, InterruptedException {
+        return check(entries, Paths.get(""), sink);
+    }
+
+    // Runs on a pool worker, reading through that worker's pooled buffer. Mapped windows and buffer reads each hold
+    // their size in in flight bytes while being hashed
+    private FileChecksum hashFile(Path path, String name, byte[] expected, Semaphore openFiles, Semaphore inFlight,
+                                  ChecksumStats stats) {
+        Scratch s = scratch.get();
+        Sha256Hasher hasher = s.hasher;
+        hasher.reset();
+        openFiles.acquireUninterruptibly();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long position = 0;
+            long size = channel.size();
+            if (size >= options.getMappedThreshold() && size > 0) {
+                int window = options.getMapWindow();
+                while (position < size) {
+                    int length = (int) Math.min(window, size - position);
+                    inFlight.acquireUninterruptibly(length);
+                    try {
+                        hasher.update(channel.map(FileChannel.MapMode.READ_ONLY, position, length));
+                    } finally {
+                        inFlight.release(length);
+                    }
+                    position += length;
+                    stats.addBytes(length);
+                }
+            }
+            // Small files, and anything appended to a large one since it was sized, are read to the end
+            ByteBuffer buffer = s.buffer;
+            inFlight.acquireUninterruptibly(buffer.capacity());
+            try {
+                while (true) {
+                    buffer.clear();
+                    int read = channel.read(buffer, position);
+                    if (read == -1) {
+                        break;
+                    }
+                    position += read;
+                    stats.addBytes(read);
+                    buffer.flip();
+                    hasher.update(buffer);
+                }
+            } finally {
+                inFlight.release(buffer.capacity());
+            }
+            return new FileChecksum(path, name, hasher.digest(), expected, null);
+        } catch (IOException ex) {
+            return new FileChecksum(path, name, null, expected, ex);
+        } finally {
+            openFiles.release();
+        }
+    }
+
+    /***
+     * One call to hash or check. Files are submitted to the pool as they are found, and results are taken
+     * from the head of the pending queue, waiting for it if the queue is full
+     */
+    private final class Run {
+        final ChecksumSink sink;
+        final ChecksumStats stats = new ChecksumStats();
+        final ForkJoinPool pool = new ForkJoinPool(options.getThreads());
+        final Semaphore openFiles = new Semaphore(options.getMaxOpenFiles());
+        final Semaphore inFlight = new Semaphore(options.getMaxInFlightBytes());
+        final ArrayDeque<Future<FileChecksum>> pending = new ArrayDeque<>();
+        final long progressNanos = options.getProgressInterval() == null ? 0 : options.getProgressInterval().toNanos();
+        long lastProgress = System.nanoTime();
+
+        Run(ChecksumSink sink) {
+            this.sink = sink;
+        }
+
+        void submit(Path path, String name, byte[] expected) throws IOException, InterruptedException {
+            pending.add(pool.submit(() -> hashFile(path, name, expected, openFiles, inFlight, stats)));
+            drain(options.getMaxPending());
+        }
+
+        void fail(Path path, String name, byte[] expected, IOException error) throws IOException, InterruptedException {
+            pending.add(CompletableFuture.completedFuture(new FileChecksum(path, name, null, expected, error)));
+            drain(options.getMaxPending());
+        }
+
+        // Entries in name order, recursing into subdirectories as they come
+        void walk(Path dir) throws IOException, InterruptedException {
+            List<Path> children = new ArrayList<>();
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+                for (Path child : stream) {
+                    children.add(child);
+                }
+            } catch (IOException ex) {
+                fail(dir, dir.toString(), null, ex);
+                return;
+            }
+            children.sort((a, b) -> a.getFileName().toString().compareTo(b.getFileName().toString()));
+            for (Path child : children) {
+                if (Files.isDirectory(child, LinkOption.NOFOLLOW_LINKS)) {
+                    walk(child);
+                } else if (Files.isRegularFile(child)) {
+                    submit(child, child.toString(), null);
+                }
+            }
+        }
+
+        // Passes on finished results in order until at most limit are pending, waiting for the head if needed
+        void drain(int limit) throws IOException, InterruptedException {
+            while (!pending.isEmpty() && (pending.size() > limit || pending.peek().isDone())) {
+                deliver(await(pending.poll()));
+            }
+            reportProgress();
+        }
+
+        FileChecksum await(Future<FileChecksum> head) throws InterruptedException {
+            while (true) {
+                try {
+                    if (progressNanos == 0) {
+                        return head.get();
+                    }
+                    return head.get(Math.max(1, lastProgress + progressNanos - System.nanoTime()), TimeUnit.NANOSECONDS);
+                } catch (TimeoutException ex) {
+                    reportProgress();
+                } catch (ExecutionException ex) {
+                    throw new IllegalStateException("Checksum worker failed", ex.getCause());
+                }
+            }
+        }
+
+        void deliver(FileChecksum result) throws IOException {
+            stats.recordResult(result);
+            sink.accept(result);
+        }
+
+        void reportProgress() {
+            if (progressNanos > 0 && System.nanoTime() - lastProgress >= progressNanos) {
+                lastProgress = System.nanoTime();
+                options.getProgressListener().accept(stats);
+            }
+        }
+
+        void close() {
+            pool.shutdownNow();
+            stats.finish();
+        }
+    }
+
+    // Per worker hasher and read buffer. Direct, so that channel reads land in it without an extra copy
+    private static final class Scratch {
+        final Sha256Hasher hasher = new Sha256Hasher();
+        final ByteBuffer buffer;
+
+        Scratch(int bufferSize) {
+            buffer = ByteBuffer.allocateDirect(bufferSize);
+        }
+    }
+}
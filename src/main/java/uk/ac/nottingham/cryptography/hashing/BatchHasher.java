@@ -0,0 +1,8 @@
+package uk.ac.nottingham.cryptography.hashing;
+
+/***
+ * Hashes many independent messages at once, writing the 32 byte digest of messages[i] into out[i]
+ */
+interface BatchHasher {
+    void digest(byte[][] messages, byte[][] out);
+}
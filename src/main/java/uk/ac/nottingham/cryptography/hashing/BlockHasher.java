@@ -0,0 +1,170 @@
+package uk.ac.nottingham.cryptography.hashing;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/***
+ * Block buffering and Merkle-Damgard padding shared by Sha256Hasher and Sha512Hasher, which only differ in their
+ * block and length field sizes and how they compress a block. Input is gathered into whole blocks, which are
+ * read straight from the caller's array or buffer where possible, and finish() pads the message with 0x80,
+ * zeros and its big endian bit length, as PaddedInputStream does for streams.
+ */
+abstract class BlockHasher {
+    private static final VarHandle LONG_BE = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.BIG_ENDIAN);
+
+    private final int blockLength;
+    private final int lengthFieldSize;
+    final byte[] buffer;
+    int bufferLength;
+    long length;
+
+    // lengthFieldSize is 8 for a 64-bit message length, or 16 for a 128-bit one
+    BlockHasher(int blockLength, int lengthFieldSize) {
+        this.blockLength = blockLength;
+        this.lengthFieldSize = lengthFieldSize;
+        this.buffer = new byte[blockLength];
+    }
+
+    abstract void compressBlock(byte[] block, int offset);
+
+    abstract void compressBlocks(byte[] input, int offset, int count);
+
+    // input is big endian, and is read from offset without moving its position
+    abstract void compressBlocks(ByteBuffer input, int offset, int count);
+
+    public void update(byte input) {
+        buffer[bufferLength++] = input;
+        length++;
+        if (bufferLength == blockLength) {
+            compressBlock(buffer, 0);
+            bufferLength = 0;
+        }
+    }
+
+    public void update(byte[] input) {
+        update(input, 0, input.length);
+    }
+
+    public void update(byte[] input, int offset, int len) {
+        if (offset < 0 || len < 0 || offset > input.length - len) {
+            throw new IndexOutOfBoundsException("Range [" + offset + ", " + offset + " + " + len
+                    + ") out of bounds for length " + input.length);
+        }
+        length += len;
+
+        // Top up a partially filled block first
+        if (bufferLength > 0) {
+            int n = Math.min(len, blockLength - bufferLength);
+            System.arraycopy(input, offset, buffer, bufferLength, n);
+            bufferLength += n;
+            offset += n;
+            len -= n;
+            if (bufferLength < blockLength) {
+                return;
+            }
+            compressBlock(buffer, 0);
+            bufferLength = 0;
+        }
+
+        // Whole blocks are read straight from the input
+        int blocks = len / blockLength;
+        if (blocks > 0) {
+            compressBlocks(input, offset, blocks);
+            offset += blocks * blockLength;
+            len -= blocks * blockLength;
+        }
+
+        if (len > 0) {
+            System.arraycopy(input, offset, buffer, 0, len);
+            bufferLength = len;
+        }
+    }
+
+    // Hashes the remaining bytes of the buffer, leaving its position at the limit. Heap buffers are
+    // read through their backing array, direct and mapped buffers a word at a time
+    public void update(ByteBuffer input) {
+        int len = input.remaining();
+        if (input.hasArray()) {
+            update(input.array(), input.arrayOffset() + input.position(), len);
+            input.position(input.limit());
+            return;
+        }
+        int offset = input.position();
+        length += len;
+
+        // Words are read big endian, so they read through a big endian view and the caller's buffer keeps
+        // its own byte order
+        ByteBuffer view = input.duplicate().order(ByteOrder.BIG_ENDIAN);
+
+        if (bufferLength > 0) {
+            int n = Math.min(len, blockLength - bufferLength);
+            view.get(offset, buffer, bufferLength, n);
+            bufferLength += n;
+            offset += n;
+            len -= n;
+            if (bufferLength < blockLength) {
+                input.position(offset);
+                return;
+            }
+            compressBlock(buffer, 0);
+            bufferLength = 0;
+        }
+
+        int blocks = len / blockLength;
+        if (blocks > 0) {
+            compressBlocks(view, offset, blocks);
+            offset += blocks * blockLength;
+            len -= blocks * blockLength;
+        }
+
+        if (len > 0) {
+            view.get(offset, buffer, 0, len);
+            bufferLength = len;
+        }
+        input.position(input.limit());
+    }
+
+    // Total number of message bytes hashed so far, including any resumed length
+    public long getLength() {
+        return length;
+    }
+
+    // Drops any buffered input, as though processedLength bytes have been hashed in whole blocks
+    void resetBuffer(long processedLength) {
+        bufferLength = 0;
+        length = processedLength;
+    }
+
+    void copyBufferFrom(BlockHasher other) {
+        System.arraycopy(other.buffer, 0, buffer, 0, other.bufferLength);
+        bufferLength = other.bufferLength;
+        length = other.length;
+    }
+
+    // Pads the message and compresses the final block or two. The caller reads out the state and resets
+    void finish() {
+        buffer[bufferLength++] = (byte) 0b10000000;
+        if (bufferLength > blockLength - lengthFieldSize) {
+            // No room for the length, so it goes in an extra block
+            zeroBuffer(bufferLength, blockLength);
+            compressBlock(buffer, 0);
+            bufferLength = 0;
+        }
+        zeroBuffer(bufferLength, blockLength - 8);
+        // A byte length only ever fills the low 67 bits of a 128-bit field, and a 64-bit field wraps as the
+        // standard requires
+        if (lengthFieldSize == 16) {
+            LONG_BE.set(buffer, blockLength - 16, length >>> 61);
+        }
+        LONG_BE.set(buffer, blockLength - 8, length << 3);
+        compressBlock(buffer, 0);
+    }
+
+    private void zeroBuffer(int from, int to) {
+        for (int i = from; i < to; i++) {
+            buffer[i] = 0;
+        }
+    }
+}
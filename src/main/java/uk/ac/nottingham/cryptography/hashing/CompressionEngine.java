@@ -0,0 +1,74 @@
+package uk.ac.nottingham.cryptography.hashing;
+
+import java.nio.ByteBuffer;
+
+/***
+ * Applies the SHA-256 compression function to a single 64 byte block. Blocks are read as big endian
+ * words, ByteBuffers are read with absolute getInt so must be in big endian order.
+ *
+ * The reference engine is the teaching implementation built on SHA256.expandWords and
+ * SHA256.compressionFunction. The unrolled engine is the fast one, and the default unless the
+ * sha256.engine system property selects another. The native engine calls OpenSSL's libcrypto and is only
+ * available when jdk.incubator.foreign is present with native access enabled; selecting it otherwise falls
+ * back to the unrolled engine.
+ */
+public interface CompressionEngine {
+    String ENGINE_PROPERTY = "sha256.engine";
+
+    void compress(int[] state, byte[] block, int offset);
+
+    void compress(int[] state, ByteBuffer block, int offset);
+
+    // Compresses count consecutive blocks. Engines with a per call overhead can do the whole run at once
+    default void compressBlocks(int[] state, byte[] input, int offset, int count) {
+        for (int i = 0; i < count; i++) {
+            compress(state, input, offset + i * 64);
+        }
+    }
+
+    default void compressBlocks(int[] state, ByteBuffer input, int offset, int count) {
+        for (int i = 0; i < count; i++) {
+            compress(state, input, offset + i * 64);
+        }
+    }
+
+    // An engine for use by another hasher. Stateless engines can simply return themselves
+    default CompressionEngine duplicate() {
+        return this;
+    }
+
+    // Each call returns a new reference engine, as it keeps its own scratch space for the schedule
+    static CompressionEngine reference() {
+        return new ReferenceEngine();
+    }
+
+    static CompressionEngine unrolled() {
+        return UnrolledEngine.INSTANCE;
+    }
+
+    // Throws UnsupportedOperationException if libcrypto or the foreign linker is unavailable
+    static CompressionEngine nativeEngine() {
+        return NativeEngineLoader.create();
+    }
+
+    static boolean isNativeAvailable() {
+        return NativeEngineLoader.isAvailable();
+    }
+
+    static CompressionEngine forName(String name) {
+        switch (name) {
+            case "reference":
+                return reference();
+            case "unrolled":
+                return unrolled();
+            case "native":
+                return isNativeAvailable() ? nativeEngine() : unrolled();
+            default:
+                throw new IllegalArgumentException("Unknown compression engine: " + name);
+        }
+    }
+
+    static CompressionEngine defaultEngine() {
+        return forName(System.getProperty(ENGINE_PROPERTY, "unrolled"));
+    }
+}
@@ -0,0 +1,171 @@
+package uk.ac.nottingham.cryptography.hashing;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+
+/***
+ * SHA-256 of messages that are always the same length, such as 32 byte digests being hashed again or
+ * 64 byte pairs of them. Knowing the length up front makes the padding a constant: the padding words of
+ * the last message block are filled in once, and a final block holding only padding has its whole
+ * schedule, with the round constants already added, computed once and only its rounds run per message.
+ *
+ * Nothing is buffered, so each digest reads the message in place. Blocks are compressed by the given
+ * CompressionEngine, or the default engine, so the sha256.engine setting applies here as it does to Sha256Hasher.
+ * The precomputed tail words and padding schedule are only used with the unrolled engine; any other engine is
+ * handed the completed tail and padding blocks, and engines that keep scratch space are duplicated per thread.
+ * Instances are immutable and thread safe.
+ */
+public final class FixedLengthHasher {
+    private static final VarHandle INT_BE = MethodHandles.byteArrayViewVarHandle(int[].class, ByteOrder.BIG_ENDIAN);
+    private static final int BLOCK_LENGTH = Sha256Hasher.BLOCK_LENGTH;
+
+    private final int length;
+    // Blocks made up only of message bytes, compressed as they are
+    private final int messageBlocks;
+    // Message bytes in the block after them, which is completed from tailTemplate. -1 if there is no such block
+    private final int tailLength;
+    private final int[] tailTemplate;
+    // K[t] + W[t] for a last block that is only padding, null if the padding fits in the tail block
+    private final int[] paddingSchedule;
+    // The same tail and padding as bytes, for engines other than the unrolled one
+    private final byte[] tailBlock;
+    private final byte[] paddingBlock;
+    // Null when the unrolled engine is used, which needs no per thread copy
+    private final ThreadLocal<CompressionEngine> engines;
+
+    public FixedLengthHasher(int length) {
+        this(length, CompressionEngine.defaultEngine());
+    }
+
+    public FixedLengthHasher(int length, CompressionEngine engine) {
+        if (length < 0) {
+            throw new IllegalArgumentException("Length must not be negative, got " + length);
+        }
+        this.length = length;
+        this.messageBlocks = length / BLOCK_LENGTH;
+        int remainder = length % BLOCK_LENGTH;
+        long bitLength = (long) length * 8;
+
+        byte[] padding = new byte[BLOCK_LENGTH];
+        if (remainder == 0) {
+            // The padding starts a block of its own
+            tailLength = -1;
+            tailTemplate = null;
+            tailBlock = null;
+            padding[0] = (byte) 0b10000000;
+            setLength(padding, bitLength);
+            paddingSchedule = schedule(padding);
+            paddingBlock = padding;
+        } else {
+            tailLength = remainder;
+            byte[] tail = new byte[BLOCK_LENGTH];
+            tail[remainder] = (byte) 0b10000000;
+            if (remainder + 1 + 8 <= BLOCK_LENGTH) {
+                setLength(tail, bitLength);
+                paddingSchedule = null;
+                paddingBlock = null;
+            } else {
+                // No room for the length, so it goes in a block of zeros
+                setLength(padding, bitLength);
+                paddingSchedule = schedule(padding);
+                paddingBlock = padding;
+            }
+            tailBlock = tail;
+            tailTemplate = new int[16];
+            for (int i = 0; i < 16; i++) {
+                tailTemplate[i] = (int) INT_BE.get(tail, i * 4);
+            }
+        }
+        this.engines = engine == UnrolledEngine.INSTANCE ? null : ThreadLocal.withInitial(engine::duplicate);
+    }
+
+    public int getLength() {
+        return length;
+    }
+
+    public byte[] digest(byte[] message) {
+        if (message.length != length) {
+            throw new IllegalArgumentException("Expected a " + length + " byte message, got " + message.length);
+        }
+        byte[] output = new byte[Sha256Hasher.DIGEST_LENGTH];
+        digestInto(message, 0, output, 0);
+        return output;
+    }
+
+    // Hashes message[offset, offset + length) and writes the 32 byte digest into out
+    public void digestInto(byte[] message, int offset, byte[] out, int outOffset) {
+        if (offset < 0 || offset > message.length - length) {
+            throw new IndexOutOfBoundsException("Range [" + offset + ", " + offset + " + " + length
+                    + ") out of bounds for length " + message.length);
+        }
+        if (outOffset < 0 || outOffset > out.length - Sha256Hasher.DIGEST_LENGTH) {
+            throw new IndexOutOfBoundsException("Not enough space for digest at offset " + outOffset);
+        }
+        int[] state = new int[8];
+        SHA256.initialiseState(state);
+        if (engines != null) {
+            compressWith(engines.get(), state, message, offset);
+        } else {
+            compressUnrolled(state, message, offset);
+        }
+        for (int i = 0; i < 8; i++) {
+            INT_BE.set(out, outOffset + i * 4, state[i]);
+        }
+    }
+
+    private void compressUnrolled(int[] state, byte[] message, int offset) {
+        UnrolledEngine.INSTANCE.compressBlocks(state, message, offset, messageBlocks);
+        if (tailLength >= 0) {
+            compressTail(state, message, offset + messageBlocks * BLOCK_LENGTH);
+        }
+        if (paddingSchedule != null) {
+            int[] working = state.clone();
+            SHA256.rounds(working, paddingSchedule, 0, 64);
+            for (int i = 0; i < 8; i++) {
+                state[i] += working[i];
+            }
+        }
+    }
+
+    // The message blocks, then the tail and padding blocks completed as bytes
+    private void compressWith(CompressionEngine engine, int[] state, byte[] message, int offset) {
+        engine.compressBlocks(state, message, offset, messageBlocks);
+        if (tailLength >= 0) {
+            byte[] block = tailBlock.clone();
+            System.arraycopy(message, offset + messageBlocks * BLOCK_LENGTH, block, 0, tailLength);
+            engine.compress(state, block, 0);
+        }
+        if (paddingBlock != null) {
+            engine.compress(state, paddingBlock, 0);
+        }
+    }
+
+    // The last message bytes, read a word at a time and completed with the padding words of the template
+    private void compressTail(int[] state, byte[] message, int offset) {
+        int[] w = tailTemplate.clone();
+        int whole = tailLength / 4;
+        for (int i = 0; i < whole; i++) {
+            w[i] = (int) INT_BE.get(message, offset + i * 4);
+        }
+        for (int i = whole * 4; i < tailLength; i++) {
+            w[whole] |= (message[offset + i] & 0xff) << (24 - (i % 4) * 8);
+        }
+        UnrolledEngine.compress(state, w[0], w[1], w[2], w[3], w[4], w[5], w[6], w[7],
+                w[8], w[9], w[10], w[11], w[12], w[13], w[14], w[15]);
+    }
+
+    private static void setLength(byte[] block, long bitLength) {
+        INT_BE.set(block, BLOCK_LENGTH - 8, (int) (bitLength >>> 32));
+        INT_BE.set(block, BLOCK_LENGTH - 4, (int) bitLength);
+    }
+
+    private static int[] schedule(byte[] block) {
+        int[] words = new int[64];
+        SHA256.expandWords(SHA256.bytesToInts(block), words);
+        for (int t = 0; t < 64; t++) {
+            words[t] += SHA256.K[t];
+        }
+        return words;
+    }
+}
@@ -0,0 +1,116 @@
+package uk.ac.nottingham.cryptography.hashing;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.zip.CRC32;
+
+/***
+ * Everything a Sha256Hasher needs to carry on with a message: the chaining state, the number of bytes hashed
+ * so far and the bytes of the incomplete final block. Unlike a finished digest, a checkpoint can be resumed
+ * at any length and gives exactly the digest the uninterrupted hasher would have.
+ *
+ * Checkpoints are immutable and convert to a small fixed format with a CRC, so they can be kept on disk
+ * between runs. A checkpoint reveals as much about the message as a digest does, plus the partial block.
+ */
+public final class HashCheckpoint {
+    private static final int MAGIC = 0x53484b31;
+    private static final int HEADER_LENGTH = 4 + 8 + 32 + 1;
+
+    private final int[] state;
+    private final long length;
+    private final byte[] partialBlock;
+
+    HashCheckpoint(int[] state, long length, byte[] partialBlock) {
+        if (state.length != 8) {
+            throw new IllegalArgumentException("State must be 8 words, got " + state.length);
+        }
+        // The partial block is always the message's last length % 64 bytes. Any other size would restore a hasher
+        // whose buffered bytes disagree with its length, giving wrong digests without an error
+        if (length < 0 || partialBlock.length != length % Sha256Hasher.BLOCK_LENGTH) {
+            throw new IllegalArgumentException("Partial block of " + partialBlock.length
+                    + " bytes is invalid for length " + length);
+        }
+        this.state = state.clone();
+        this.length = length;
+        this.partialBlock = partialBlock.clone();
+    }
+
+    public long getLength() {
+        return length;
+    }
+
+    public int[] getState() {
+        return state.clone();
+    }
+
+    // The last length % 64 bytes of the message when hashing started from zero
+    public byte[] getPartialBlock() {
+        return partialBlock.clone();
+    }
+
+    int[] state() {
+        return state;
+    }
+
+    byte[] partialBlock() {
+        return partialBlock;
+    }
+
+    public byte[] toBytes() {
+        ByteBuffer out = ByteBuffer.allocate(HEADER_LENGTH + partialBlock.length + 8);
+        out.putInt(MAGIC).putLong(length);
+        for (int word : state) {
+            out.putInt(word);
+        }
+        out.put((byte) partialBlock.length).put(partialBlock);
+        CRC32 crc = new CRC32();
+        crc.update(out.array(), 0, out.position());
+        out.putLong(crc.getValue());
+        return out.array();
+    }
+
+    public static HashCheckpoint fromBytes(byte[] bytes) {
+        if (bytes.length < HEADER_LENGTH + 8) {
+            throw new IllegalArgumentException("Checkpoint is truncated");
+        }
+        ByteBuffer in = ByteBuffer.wrap(bytes);
+        if (in.getInt() != MAGIC) {
+            throw new IllegalArgumentException("Not a hash checkpoint");
+        }
+        long length = in.getLong();
+        int[] state = new int[8];
+        for (int i = 0; i < 8; i++) {
+            state[i] = in.getInt();
+        }
+        int partialLength = in.get() & 0xff;
+        if (bytes.length != HEADER_LENGTH + partialLength + 8) {
+            throw new IllegalArgumentException("Checkpoint is truncated");
+        }
+        byte[] partial = new byte[partialLength];
+        in.get(partial);
+        CRC32 crc = new CRC32();
+        crc.update(bytes, 0, in.position());
+        if (in.getLong() != crc.getValue()) {
+            throw new IllegalArgumentException("Checkpoint checksum does not match");
+        }
+        return new HashCheckpoint(state, length, partial);
+    }
+
+    // Writes to a temporary file first and moves it into place, so a crash never leaves a half written checkpoint
+    public void save(Path path) throws IOException {
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        Files.write(temp, toBytes());
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    public static HashCheckpoint load(Path path) throws IOException {
+        try {
+            return fromBytes(Files.readAllBytes(path));
+        } catch (IllegalArgumentException ex) {
+            throw new IOException("Invalid checkpoint " + path + ": " + ex.getMessage(), ex);
+        }
+    }
+}
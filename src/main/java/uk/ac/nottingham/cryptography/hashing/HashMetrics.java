@@ -0,0 +1,83 @@
+package uk.ac.nottingham.cryptography.hashing;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/***
+ * Process wide counters for the SHA256 digest methods. LongAdder keeps concurrent updates from contending
+ */
+public final class HashMetrics {
+    private static final LongAdder DIGESTS = new LongAdder();
+    private static final LongAdder BYTES = new LongAdder();
+    private static final LongAdder BLOCKS = new LongAdder();
+
+    private HashMetrics() {
+
+    }
+
+    public static long getDigests() {
+        return DIGESTS.sum();
+    }
+
+    public static long getBytesHashed() {
+        return BYTES.sum();
+    }
+
+    public static long getBlocksCompressed() {
+        return BLOCKS.sum();
+    }
+
+    static Sha256DigestEvent begin() {
+        Sha256DigestEvent event = new Sha256DigestEvent();
+        event.begin();
+        return event;
+    }
+
+    // Completes a digest that started from originalLength bytes of earlier state, counting only the new work
+    static byte[] finish(Sha256DigestEvent event, Sha256Hasher hasher, long originalLength) {
+        long length = hasher.getLength();
+        byte[] digest = hasher.digest();
+        long blocks = blockCount(length) - originalLength / Sha256Hasher.BLOCK_LENGTH;
+        record(event, length - originalLength, blocks, originalLength != 0);
+        return digest;
+    }
+
+    static void recordFixed(Sha256DigestEvent event, int length) {
+        record(event, length, blockCount(length), false);
+    }
+
+    static void recordBatch(Sha256DigestEvent event, byte[][] messages) {
+        long bytes = 0;
+        long blocks = 0;
+        for (byte[] message : messages) {
+            bytes += message.length;
+            blocks += blockCount(message.length);
+        }
+        DIGESTS.add(messages.length);
+        BYTES.add(bytes);
+        BLOCKS.add(blocks);
+        event.end();
+        if (event.shouldCommit()) {
+            event.bytes = bytes;
+            event.blocks = blocks;
+            event.commit();
+        }
+    }
+
+    private static void record(Sha256DigestEvent event, long bytes, long blocks, boolean continued) {
+        DIGESTS.increment();
+        BYTES.add(bytes);
+        BLOCKS.add(blocks);
+        event.end();
+        if (event.shouldCommit()) {
+            event.bytes = bytes;
+            event.blocks = blocks;
+            event.continued = continued;
+            event.commit();
+        }
+    }
+
+    // Blocks in a padded message, including the 0x80 byte and 64-bit length
+    private static long blockCount(long length) {
+        return (length + 8) / Sha256Hasher.BLOCK_LENGTH + 1;
+    }
+}
@@ -0,0 +1,85 @@
+package uk.ac.nottingham.cryptography.hashing;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/***
+ * HMAC-SHA256 (RFC 2104) for a fixed key. The first block of both the inner and outer hash is the key
+ * xored with the ipad or opad constant, so those two blocks are compressed once here and their
+ * midstates kept. Each MAC then only costs the message blocks plus a single outer block.
+ *
+ * Instances are immutable and can be shared between threads. Working state is in the Sha256Hasher
+ * passed to macInto, so callers can keep one hasher per thread.
+ */
+public class HmacSha256 {
+    public static final int MAC_LENGTH = Sha256Hasher.DIGEST_LENGTH;
+    private static final int BLOCK_LENGTH = Sha256Hasher.BLOCK_LENGTH;
+
+    private static final VarHandle INT_BE = MethodHandles.byteArrayViewVarHandle(int[].class, ByteOrder.BIG_ENDIAN);
+
+    private final int[] innerState;
+    private final int[] outerState;
+
+    public HmacSha256(byte[] key) {
+        // Keys longer than a block are replaced by their hash
+        if (key.length > BLOCK_LENGTH) {
+            Sha256Hasher hasher = new Sha256Hasher();
+            hasher.update(key);
+            key = hasher.digest();
+        }
+
+        byte[] ipad = new byte[BLOCK_LENGTH];
+        byte[] opad = new byte[BLOCK_LENGTH];
+        for (int i = 0; i < BLOCK_LENGTH; i++) {
+            byte k = i < key.length ? key[i] : 0;
+            ipad[i] = (byte) (k ^ 0x36);
+            opad[i] = (byte) (k ^ 0x5c);
+        }
+        innerState = midstate(ipad);
+        outerState = midstate(opad);
+    }
+
+    public byte[] mac(byte[] message) {
+        byte[] output = new byte[MAC_LENGTH];
+        macInto(new Sha256Hasher(), message, 0, message.length, output, 0);
+        return output;
+    }
+
+    // Computes the MAC of message[offset, offset + length) into out, using hasher as scratch space
+    public void macInto(Sha256Hasher hasher, byte[] message, int offset, int length, byte[] out, int outOffset) {
+        hasher.restore(innerState, BLOCK_LENGTH);
+        hasher.update(message, offset, length);
+        hasher.digestInto(out, outOffset);
+
+        hasher.restore(outerState, BLOCK_LENGTH);
+        hasher.update(out, outOffset, MAC_LENGTH);
+        hasher.digestInto(out, outOffset);
+    }
+
+    // Computes the MAC of the remaining bytes of message into out, the buffer is consumed
+    public void macInto(Sha256Hasher hasher, ByteBuffer message, byte[] out, int outOffset) {
+        hasher.restore(innerState, BLOCK_LENGTH);
+        hasher.update(message);
+        hasher.digestInto(out, outOffset);
+
+        hasher.restore(outerState, BLOCK_LENGTH);
+        hasher.update(out, outOffset, MAC_LENGTH);
+        hasher.digestInto(out, outOffset);
+    }
+
+    // State after compressing a single padded key block
+    private static int[] midstate(byte[] block) {
+        int[] state = new int[8];
+        int[] messageBlock = new int[16];
+        int[] words = new int[64];
+        for (int i = 0; i < 16; i++) {
+            messageBlock[i] = (int) INT_BE.get(block, i * 4);
+        }
+        SHA256.initialiseState(state);
+        SHA256.expandWords(messageBlock, words);
+        SHA256.compressionFunction(state, words);
+        return state;
+    }
+}
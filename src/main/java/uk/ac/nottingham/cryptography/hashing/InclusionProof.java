@@ -0,0 +1,75 @@
+package uk.ac.nottingham.cryptography.hashing;
+
+import java.security.MessageDigest;
+
+/***
+ * Proof that one leaf belongs to a TreeHash root: the sibling hashes on the path from the leaf to the root,
+ * lowest first. Checking it costs one leaf hash and one node hash per level
+ */
+public class InclusionProof {
+    private final int leafSize;
+    private final long inputLength;
+    private final int leafIndex;
+    private final int leafCount;
+    private final byte[][] path;
+
+    public InclusionProof(int leafSize, long inputLength, int leafIndex, int leafCount, byte[][] path) {
+        this.leafSize = leafSize;
+        this.inputLength = inputLength;
+        this.leafIndex = leafIndex;
+        this.leafCount = leafCount;
+        this.path = path;
+    }
+
+    public int getLeafSize() {
+        return leafSize;
+    }
+
+    public long getInputLength() {
+        return inputLength;
+    }
+
+    public int getLeafIndex() {
+        return leafIndex;
+    }
+
+    public int getLeafCount() {
+        return leafCount;
+    }
+
+    public byte[][] getPath() {
+        return path.clone();
+    }
+
+    public boolean verifyLeaf(byte[] leaf, byte[] root) {
+        return verify(TreeHash.leafHash(leaf), root);
+    }
+
+    // Recomputes the root from the leaf hash, following the RFC 9162 section 2.1.3.2 algorithm
+    public boolean verify(byte[] leafHash, byte[] root) {
+        if (leafIndex < 0 || leafIndex >= leafCount) {
+            return false;
+        }
+        Sha256Hasher hasher = new Sha256Hasher();
+        long fn = leafIndex;
+        long sn = leafCount - 1;
+        byte[] r = leafHash;
+        for (byte[] sibling : path) {
+            if (sn == 0) {
+                return false;
+            }
+            if ((fn & 1) == 1 || fn == sn) {
+                r = TreeHash.nodeHash(hasher, sibling, r);
+                while ((fn & 1) == 0 && fn != 0) {
+                    fn >>= 1;
+                    sn >>= 1;
+                }
+            } else {
+                r = TreeHash.nodeHash(hasher, r, sibling);
+            }
+            fn >>= 1;
+            sn >>= 1;
+        }
+        return sn == 0 && MessageDigest.isEqual(r, root);
+    }
+}
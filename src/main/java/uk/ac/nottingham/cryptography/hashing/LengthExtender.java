@@ -0,0 +1,117 @@
+package uk.ac.nottingham.cryptography.hashing;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/***
+ * Length extension of SHA256(key | message) tokens, generalising the attack in Main to any message and
+ * any key length. The key length is usually unknown, so candidates can be swept in parallel and
+ * optionally checked against a verification oracle.
+ *
+ * The token is only parsed once, and the whole blocks of the suffix are compressed once from it. This
+ * is valid for every candidate because the compression function never sees the message length, only
+ * the final padding block does. Each candidate then only costs its final block or two.
+ */
+public class LengthExtender {
+    private static final VarHandle INT_BE = MethodHandles.byteArrayViewVarHandle(int[].class, ByteOrder.BIG_ENDIAN);
+    private static final ThreadLocal<Sha256Hasher> HASHERS = ThreadLocal.withInitial(Sha256Hasher::new);
+
+    private final byte[] message;
+    private final byte[] suffix;
+    private final int[] suffixState;
+    private final int suffixBlockLength;
+
+    public LengthExtender(byte[] message, byte[] token, byte[] suffix) {
+        this.message = message;
+        this.suffix = suffix;
+        this.suffixBlockLength = suffix.length - suffix.length % Sha256Hasher.BLOCK_LENGTH;
+
+        suffixState = new int[8];
+        for (int i = 0; i < 8; i++) {
+            suffixState[i] = (int) INT_BE.get(token, i * 4);
+        }
+        CompressionEngine engine = CompressionEngine.defaultEngine();
+        for (int offset = 0; offset < suffixBlockLength; offset += Sha256Hasher.BLOCK_LENGTH) {
+            engine.compress(suffixState, suffix, offset);
+        }
+    }
+
+    // The padding SHA-256 appends to a message of the given length, 0x80 then zeros then the bit length
+    public static byte[] gluePadding(long messageLength) {
+        int zeros = (int) Math.floorMod(Sha256Hasher.BLOCK_LENGTH - 1 - 8 - messageLength, (long) Sha256Hasher.BLOCK_LENGTH);
+        byte[] padding = new byte[1 + zeros + 8];
+        padding[0] = (byte) 0b10000000;
+        long bitLength = messageLength * 8;
+        for (int i = 0; i < 8; i++) {
+            padding[padding.length - 1 - i] = (byte) (bitLength >>> (i * 8));
+        }
+        return padding;
+    }
+
+    // message | padding | suffix and its token, assuming the key is keyLength bytes long
+    public Extension extend(int keyLength) {
+        if (keyLength < 0) {
+            throw new IllegalArgumentException("Negative key length: " + keyLength);
+        }
+        long originalLength = (long) keyLength + message.length;
+        byte[] padding = gluePadding(originalLength);
+
+        byte[] extended = new byte[message.length + padding.length + suffix.length];
+        System.arraycopy(message, 0, extended, 0, message.length);
+        System.arraycopy(padding, 0, extended, message.length, padding.length);
+        System.arraycopy(suffix, 0, extended, message.length + padding.length, suffix.length);
+
+        Sha256Hasher hasher = HASHERS.get();
+        hasher.restore(suffixState, originalLength + padding.length + suffixBlockLength);
+        hasher.update(suffix, suffixBlockLength, suffix.length - suffixBlockLength);
+        return new Extension(keyLength, extended, hasher.digest());
+    }
+
+    // One extension per candidate key length in [minKeyLength, maxKeyLength], computed in parallel
+    public List<Extension> extendAll(int minKeyLength, int maxKeyLength) {
+        return IntStream.rangeClosed(minKeyLength, maxKeyLength)
+                .parallel()
+                .mapToObj(this::extend)
+                .collect(Collectors.toList());
+    }
+
+    // Tries candidate key lengths in parallel against the oracle, stopping once one is accepted. If
+    // several would be accepted the shortest key length is returned
+    public Optional<Extension> findValid(int minKeyLength, int maxKeyLength, Predicate<Extension> oracle) {
+        return IntStream.rangeClosed(minKeyLength, maxKeyLength)
+                .parallel()
+                .mapToObj(this::extend)
+                .filter(oracle)
+                .findFirst();
+    }
+
+    public static class Extension {
+        private final int keyLength;
+        private final byte[] message;
+        private final byte[] token;
+
+        Extension(int keyLength, byte[] message, byte[] token) {
+            this.keyLength = keyLength;
+            this.message = message;
+            this.token = token;
+        }
+
+        public int getKeyLength() {
+            return keyLength;
+        }
+
+        public byte[] getMessage() {
+            return message;
+        }
+
+        public byte[] getToken() {
+            return token;
+        }
+    }
+}
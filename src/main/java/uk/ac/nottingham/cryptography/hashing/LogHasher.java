@@ -0,0 +1,106 @@
+package uk.ac.nottingham.cryptography.hashing;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/***
+ * SHA-256 of an append-only file, kept up to date by hashing only what was appended since the last run. Each
+ * call to digest() resumes from a HashCheckpoint saved next to the log, hashes up to the current end of the
+ * file, saves a new checkpoint and returns the digest of the whole file, identical to hashing it from zero.
+ *
+ * Bytes before the checkpoint are trusted to be unchanged. A log that has shrunk, or whose checkpointed partial
+ * block no longer matches the file, is reported as an IOException rather than silently re-hashed.
+ */
+public class LogHasher {
+    private final Path log;
+    private final Path checkpointFile;
+
+    public LogHasher(Path log) {
+        this(log, log.resolveSibling(log.getFileName() + ".sha256ck"));
+    }
+
+    public LogHasher(Path log, Path checkpointFile) {
+        this.log = log;
+        this.checkpointFile = checkpointFile;
+    }
+
+    public Path getCheckpointFile() {
+        return checkpointFile;
+    }
+
+    public Result digest() throws IOException {
+        Sha256DigestEvent event = HashMetrics.begin();
+        Sha256Hasher hasher = new Sha256Hasher();
+        try (FileChannel channel = FileChannel.open(log, StandardOpenOption.READ)) {
+            // Anything appended while hashing is left for the next run
+            long size = channel.size();
+            long resumedFrom = 0;
+            if (Files.exists(checkpointFile)) {
+                HashCheckpoint checkpoint = HashCheckpoint.load(checkpointFile);
+                checkUnchanged(channel, size, checkpoint);
+                hasher.restore(checkpoint);
+                resumedFrom = checkpoint.getLength();
+            }
+
+            SHA256.update(hasher, channel, resumedFrom, size);
+            hasher.checkpoint().save(checkpointFile);
+            byte[] digest = HashMetrics.finish(event, hasher, resumedFrom);
+            return new Result(digest, size, size - resumedFrom);
+        }
+    }
+
+    // Forgets the checkpoint, so the next digest hashes the whole log
+    public void reset() throws IOException {
+        Files.deleteIfExists(checkpointFile);
+    }
+
+    private void checkUnchanged(FileChannel channel, long size, HashCheckpoint checkpoint) throws IOException {
+        long length = checkpoint.getLength();
+        if (size < length) {
+            throw new IOException(log + " is " + size + " bytes, shorter than its checkpoint at " + length);
+        }
+        byte[] partial = checkpoint.getPartialBlock();
+        ByteBuffer tail = ByteBuffer.allocate(partial.length);
+        long position = length - partial.length;
+        while (tail.hasRemaining()) {
+            if (channel.read(tail, position + tail.position()) == -1) {
+                throw new IOException(log + " ended before its checkpoint at " + length);
+            }
+        }
+        if (!Arrays.equals(tail.array(), partial)) {
+            throw new IOException(log + " has changed before its checkpoint at " + length);
+        }
+    }
+
+    /***
+     * Digest of the whole log, and how much of it this run had to hash
+     */
+    public static final class Result {
+        private final byte[] digest;
+        private final long length;
+        private final long bytesHashed;
+
+        Result(byte[] digest, long length, long bytesHashed) {
+            this.digest = digest;
+            this.length = length;
+            this.bytesHashed = bytesHashed;
+        }
+
+        public byte[] getDigest() {
+            return digest.clone();
+        }
+
+        public long getLength() {
+            return length;
+        }
+
+        public long getBytesHashed() {
+            return bytesHashed;
+        }
+    }
+}
@@ -0,0 +1,207 @@
+package uk.ac.nottingham.cryptography.hashing;
+
+import jdk.incubator.foreign.CLinker;
+import jdk.incubator.foreign.FunctionDescriptor;
+import jdk.incubator.foreign.MemoryAccess;
+import jdk.incubator.foreign.MemoryAddress;
+import jdk.incubator.foreign.MemorySegment;
+import jdk.incubator.foreign.ResourceScope;
+import jdk.incubator.foreign.SymbolLookup;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/***
+ * Compression by OpenSSL's libcrypto, called through the incubating foreign linker. Each instance keeps an
+ * off-heap SHA256_CTX and staging area for blocks. Before each call the state words are written into the
+ * context, and afterwards they are read back out, so the caller keeps full access to the midstate.
+ * Single blocks go through SHA256_Transform, and runs of whole blocks through one SHA256_Update call.
+ *
+ * Only loaded by NativeEngineLoader, once jdk.incubator.foreign is known to be present. Instances are not
+ * thread safe.
+ */
+final class NativeEngine implements CompressionEngine {
+    static final String LIBRARY_PROPERTY = "sha256.native.library";
+
+    // SHA256_CTX is { SHA_LONG h[8]; SHA_LONG Nl, Nh; SHA_LONG data[16]; unsigned int num, md_len; }
+    private static final long CTX_SIZE = 112;
+    private static final long NL_OFFSET = 32;
+    private static final long NH_OFFSET = 36;
+    private static final long NUM_OFFSET = 104;
+
+    // Blocks copied off-heap per SHA256_Update call
+    private static final int STAGED_BLOCKS = 64;
+
+    private static final String[] LIBRARY_PATHS = new String[] {
+            "/usr/lib/x86_64-linux-gnu/libcrypto.so.3",
+            "/usr/lib/aarch64-linux-gnu/libcrypto.so.3",
+            "/usr/lib64/libcrypto.so.3",
+            "/usr/lib/libcrypto.so.3",
+            "/usr/local/lib/libcrypto.so.3",
+            "/opt/homebrew/opt/openssl@3/lib/libcrypto.3.dylib",
+            "/usr/local/opt/openssl@3/lib/libcrypto.3.dylib"
+    };
+
+    private static final MethodHandle INIT;
+    private static final MethodHandle UPDATE;
+    private static final MethodHandle TRANSFORM;
+
+    static {
+        loadLibrary();
+        SymbolLookup lookup = SymbolLookup.loaderLookup();
+        CLinker linker = CLinker.getInstance();
+        INIT = linker.downcallHandle(lookup.lookup("SHA256_Init").orElseThrow(),
+                MethodType.methodType(int.class, MemoryAddress.class),
+                FunctionDescriptor.of(CLinker.C_INT, CLinker.C_POINTER));
+        // size_t is pointer sized, which C_LONG is not on LLP64 platforms such as Windows. Callers always pass a
+        // long, narrowed on 32-bit platforms where the staged runs fit in a size_t anyway
+        boolean sizeT64 = CLinker.C_POINTER.byteSize() == 8;
+        MethodHandle update = linker.downcallHandle(lookup.lookup("SHA256_Update").orElseThrow(),
+                MethodType.methodType(int.class, MemoryAddress.class, MemoryAddress.class,
+                        sizeT64 ? long.class : int.class),
+                FunctionDescriptor.of(CLinker.C_INT, CLinker.C_POINTER, CLinker.C_POINTER,
+                        sizeT64 ? CLinker.C_LONG_LONG : CLinker.C_INT));
+        UPDATE = MethodHandles.explicitCastArguments(update,
+                MethodType.methodType(int.class, MemoryAddress.class, MemoryAddress.class, long.class));
+        TRANSFORM = linker.downcallHandle(lookup.lookup("SHA256_Transform").orElseThrow(),
+                MethodType.methodType(void.class, MemoryAddress.class, MemoryAddress.class),
+                FunctionDescriptor.ofVoid(CLinker.C_POINTER, CLinker.C_POINTER));
+    }
+
+    private final MemorySegment ctx;
+    private final MemorySegment staging;
+
+    NativeEngine() {
+        ResourceScope scope = ResourceScope.newImplicitScope();
+        ctx = MemorySegment.allocateNative(CTX_SIZE, 8, scope);
+        staging = MemorySegment.allocateNative(STAGED_BLOCKS * Sha256Hasher.BLOCK_LENGTH, 8, scope);
+        // SHA256_Init writes the initial state, which confirms the context layout before it is relied on
+        try {
+            int ok = (int) INIT.invokeExact(ctx.address());
+            if (ok != 1 || MemoryAccess.getIntAtIndex(ctx, 0) != SHA256.H0[0]
+                    || MemoryAccess.getIntAtIndex(ctx, 7) != SHA256.H0[7]) {
+                throw new IllegalStateException("Unexpected SHA256_CTX layout");
+            }
+        } catch (RuntimeException | Error ex) {
+            throw ex;
+        } catch (Throwable ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    @Override
+    public CompressionEngine duplicate() {
+        return new NativeEngine();
+    }
+
+    @Override
+    public void compress(int[] state, byte[] block, int offset) {
+        staging.copyFrom(MemorySegment.ofArray(block).asSlice(offset, Sha256Hasher.BLOCK_LENGTH));
+        transform(state, staging.address());
+    }
+
+    // Direct and mapped buffers are passed to libcrypto in place, heap buffers are copied
+    @Override
+    public void compress(int[] state, ByteBuffer block, int offset) {
+        MemorySegment segment = wholeBuffer(block).asSlice(offset, Sha256Hasher.BLOCK_LENGTH);
+        if (block.isDirect()) {
+            transform(state, segment.address());
+        } else {
+            staging.copyFrom(segment);
+            transform(state, staging.address());
+        }
+    }
+
+    @Override
+    public void compressBlocks(int[] state, byte[] input, int offset, int count) {
+        MemorySegment source = MemorySegment.ofArray(input);
+        while (count > 0) {
+            int n = Math.min(count, STAGED_BLOCKS);
+            long bytes = (long) n * Sha256Hasher.BLOCK_LENGTH;
+            staging.asSlice(0, bytes).copyFrom(source.asSlice(offset, bytes));
+            update(state, staging.address(), bytes);
+            offset += bytes;
+            count -= n;
+        }
+    }
+
+    @Override
+    public void compressBlocks(int[] state, ByteBuffer input, int offset, int count) {
+        if (!input.isDirect()) {
+            CompressionEngine.super.compressBlocks(state, input, offset, count);
+            return;
+        }
+        long bytes = (long) count * Sha256Hasher.BLOCK_LENGTH;
+        update(state, wholeBuffer(input).asSlice(offset, bytes).address(), bytes);
+    }
+
+    // Offsets are absolute, but a buffer's segment only covers its position to its limit
+    private static MemorySegment wholeBuffer(ByteBuffer buffer) {
+        return MemorySegment.ofByteBuffer(buffer.duplicate().clear());
+    }
+
+    private void transform(int[] state, MemoryAddress block) {
+        writeState(state);
+        try {
+            TRANSFORM.invokeExact(ctx.address(), block);
+        } catch (Throwable ex) {
+            throw new IllegalStateException("SHA256_Transform failed", ex);
+        }
+        readState(state);
+    }
+
+    // With nothing buffered in the context, an update of whole blocks compresses them all and buffers nothing
+    private void update(int[] state, MemoryAddress blocks, long bytes) {
+        writeState(state);
+        MemoryAccess.setIntAtOffset(ctx, NL_OFFSET, 0);
+        MemoryAccess.setIntAtOffset(ctx, NH_OFFSET, 0);
+        MemoryAccess.setIntAtOffset(ctx, NUM_OFFSET, 0);
+        int ok;
+        try {
+            ok = (int) UPDATE.invokeExact(ctx.address(), blocks, bytes);
+        } catch (Throwable ex) {
+            throw new IllegalStateException("SHA256_Update failed", ex);
+        }
+        if (ok != 1) {
+            throw new IllegalStateException("SHA256_Update failed");
+        }
+        readState(state);
+    }
+
+    private void writeState(int[] state) {
+        for (int i = 0; i < 8; i++) {
+            MemoryAccess.setIntAtIndex(ctx, i, state[i]);
+        }
+    }
+
+    private void readState(int[] state) {
+        for (int i = 0; i < 8; i++) {
+            state[i] = MemoryAccess.getIntAtIndex(ctx, i);
+        }
+    }
+
+    // An explicit path wins, then the library path, then the usual install locations
+    private static void loadLibrary() {
+        String path = System.getProperty(LIBRARY_PROPERTY);
+        if (path != null) {
+            System.load(path);
+            return;
+        }
+        try {
+            System.loadLibrary("crypto");
+            return;
+        } catch (UnsatisfiedLinkError ex) {
+            for (String candidate : LIBRARY_PATHS) {
+                if (Files.exists(Path.of(candidate))) {
+                    System.load(candidate);
+                    return;
+                }
+            }
+            throw ex;
+        }
+    }
+}
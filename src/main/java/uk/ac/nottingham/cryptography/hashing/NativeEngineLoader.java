@@ -0,0 +1,48 @@
+package uk.ac.nottingham.cryptography.hashing;
+
+/***
+ * Loads NativeEngine reflectively, so that nothing links against jdk.incubator.foreign unless the module is
+ * present. Any failure to load the module, the library or its symbols leaves the native engine unavailable
+ * with the reason kept for diagnostics.
+ */
+final class NativeEngineLoader {
+    private static final CompressionEngine PROTOTYPE;
+    private static final String UNAVAILABLE_REASON;
+
+    static {
+        CompressionEngine prototype = null;
+        String reason = null;
+        if (ModuleLayer.boot().findModule("jdk.incubator.foreign").isEmpty()) {
+            reason = "jdk.incubator.foreign is not present, run with --add-modules jdk.incubator.foreign";
+        } else {
+            try {
+                prototype = (CompressionEngine) Class.forName("uk.ac.nottingham.cryptography.hashing.NativeEngine")
+                        .getDeclaredConstructor().newInstance();
+            } catch (ReflectiveOperationException | LinkageError | RuntimeException ex) {
+                Throwable cause = ex.getCause() != null ? ex.getCause() : ex;
+                reason = cause.toString();
+            }
+        }
+        PROTOTYPE = prototype;
+        UNAVAILABLE_REASON = reason;
+    }
+
+    private NativeEngineLoader() {
+
+    }
+
+    static boolean isAvailable() {
+        return PROTOTYPE != null;
+    }
+
+    static String unavailableReason() {
+        return UNAVAILABLE_REASON;
+    }
+
+    static CompressionEngine create() {
+        if (PROTOTYPE == null) {
+            throw new UnsupportedOperationException("Native engine unavailable: " + UNAVAILABLE_REASON);
+        }
+        return PROTOTYPE.duplicate();
+    }
+}
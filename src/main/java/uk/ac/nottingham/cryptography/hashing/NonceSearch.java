@@ -0,0 +1,472 @@
+package uk.ac.nottingham.cryptography.hashing;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/***
+ * Multi-threaded proof-of-work solver. Finds the lowest nonce n in a range such that SHA256(prefix | n), with n
+ * as 8 big endian bytes, meets a target.
+ *
+ * Whole blocks of the prefix are compressed once into a midstate, so each candidate only costs the final one
+ * or two blocks. Within those blocks every schedule word that does not depend on the nonce is expanded once,
+ * along with the rounds before the first nonce word. The range is cut into chunks which are dealt out to the
+ * workers in turn, and as the lowest solution wins the result does not depend on thread timing.
+ */
+public class NonceSearch {
+    public static final int NONCE_LENGTH = 8;
+    public static final int DEFAULT_CHUNK_SIZE = 1 << 16;
+
+    private static final VarHandle INT_BE = MethodHandles.byteArrayViewVarHandle(int[].class, ByteOrder.BIG_ENDIAN);
+    private static final VarHandle LONG_BE = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.BIG_ENDIAN);
+    private static final int BLOCK_LENGTH = Sha256Hasher.BLOCK_LENGTH;
+
+    // Cancellation and the current best are checked this often within a chunk
+    private static final int CHECK_INTERVAL = 1024;
+
+    private final byte[] prefix;
+    private final Target target;
+    private int threads = Runtime.getRuntime().availableProcessors();
+    private int chunkSize = DEFAULT_CHUNK_SIZE;
+    private long from = 0;
+    private long to = Long.MAX_VALUE;
+
+    public NonceSearch(byte[] prefix, Target target) {
+        this.prefix = prefix.clone();
+        this.target = target;
+    }
+
+    public NonceSearch threads(int threads) {
+        if (threads <= 0) {
+            throw new IllegalArgumentException("Thread count must be positive, got " + threads);
+        }
+        this.threads = threads;
+        return this;
+    }
+
+    public NonceSearch chunkSize(int chunkSize) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("Chunk size must be positive, got " + chunkSize);
+        }
+        this.chunkSize = chunkSize;
+        return this;
+    }
+
+    // Nonces from (inclusive) to to (exclusive), both non-negative
+    public NonceSearch range(long from, long to) {
+        if (from < 0 || to < from) {
+            throw new IllegalArgumentException("Invalid nonce range [" + from + ", " + to + ")");
+        }
+        this.from = from;
+        this.to = to;
+        return this;
+    }
+
+    public Result solve() throws InterruptedException {
+        return start().await();
+    }
+
+    // Starts the workers and returns straight away, the search can then be polled, awaited or cancelled
+    public Search start() {
+        Search search = new Search(new Midstate(prefix), threads, chunkSize, from, to);
+        for (int i = 0; i < threads; i++) {
+            int worker = i;
+            Thread thread = new Thread(() -> search.work(worker), "nonce-search-" + i);
+            thread.setDaemon(true);
+            search.workers[i] = thread;
+        }
+        for (Thread thread : search.workers) {
+            thread.start();
+        }
+        return search;
+    }
+
+    public static byte[] hash(byte[] prefix, long nonce) {
+        byte[] nonceBytes = new byte[NONCE_LENGTH];
+        LONG_BE.set(nonceBytes, 0, nonce);
+        return SHA256.digest(prefix, nonceBytes);
+    }
+
+    // Checks a claimed solution with a plain SHA-256
+    public static boolean verify(byte[] prefix, long nonce, Target target) {
+        return target.isMetBy(hash(prefix, nonce));
+    }
+
+    /***
+     * Hashes meet the target when they are no greater than its threshold, read as 256-bit big endian numbers
+     */
+    public static final class Target {
+        private final int[] threshold;
+
+        private Target(int[] threshold) {
+            this.threshold = threshold;
+        }
+
+        public static Target leadingZeroBits(int bits) {
+            if (bits < 0 || bits > 256) {
+                throw new IllegalArgumentException("Leading zero bits must be between 0 and 256, got " + bits);
+            }
+            int[] threshold = new int[8];
+            for (int i = 0; i < 8; i++) {
+                int zeros = Math.min(32, Math.max(0, bits - i * 32));
+                threshold[i] = zeros == 32 ? 0 : -1 >>> zeros;
+            }
+            return new Target(threshold);
+        }
+
+        public static Target threshold(byte[] threshold) {
+            if (threshold.length != Sha256Hasher.DIGEST_LENGTH) {
+                throw new IllegalArgumentException("Threshold must be " + Sha256Hasher.DIGEST_LENGTH + " bytes");
+            }
+            int[] words = new int[8];
+            for (int i = 0; i < 8; i++) {
+                words[i] = (int) INT_BE.get(threshold, i * 4);
+            }
+            return new Target(words);
+        }
+
+        public boolean isMetBy(byte[] hash) {
+            int[] state = new int[8];
+            for (int i = 0; i < 8; i++) {
+                state[i] = (int) INT_BE.get(hash, i * 4);
+            }
+            return isMetBy(state);
+        }
+
+        boolean isMetBy(int[] state) {
+            for (int i = 0; i < 8; i++) {
+                int c = Integer.compareUnsigned(state[i], threshold[i]);
+                if (c != 0) {
+                    return c < 0;
+                }
+            }
+            return true;
+        }
+
+        // Most candidates fail on the first word, so it is checked before the rest of the state is finished
+        boolean firstWordMayMeet(int word) {
+            return Integer.compareUnsigned(word, threshold[0]) <= 0;
+        }
+    }
+
+    /***
+     * Outcome of a search. A cancelled search never reports a nonce, as a lower one may not have been checked
+     */
+    public static final class Result {
+        public enum Status {
+            FOUND,
+            EXHAUSTED,
+            CANCELLED
+        }
+
+        private final Status status;
+        private final long nonce;
+        private final byte[] hash;
+        private final long hashes;
+        private final long elapsedNanos;
+
+        Result(Status status, long nonce, byte[] hash, long hashes, long elapsedNanos) {
+            this.status = status;
+            this.nonce = nonce;
+            this.hash = hash;
+            this.hashes = hashes;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        public Status getStatus() {
+            return status;
+        }
+
+        public boolean isFound() {
+            return status == Status.FOUND;
+        }
+
+        public long getNonce() {
+            if (status != Status.FOUND) {
+                throw new IllegalStateException("No nonce was found, search " + status);
+            }
+            return nonce;
+        }
+
+        public byte[] getHash() {
+            return hash == null ? null : hash.clone();
+        }
+
+        public long getHashes() {
+            return hashes;
+        }
+
+        public long getElapsedNanos() {
+            return elapsedNanos;
+        }
+
+        public double getHashesPerSecond() {
+            return elapsedNanos == 0 ? 0 : hashes * 1e9 / elapsedNanos;
+        }
+
+        @Override
+        public String toString() {
+            String outcome = status == Status.FOUND ? "found nonce " + nonce : status.name().toLowerCase();
+            return String.format("%s after %d hashes in %.3fs (%.0f hashes/s)", outcome, hashes,
+                    elapsedNanos / 1e9, getHashesPerSecond());
+        }
+    }
+
+    /***
+     * A running search. Its range and chunking are fixed when it starts, so later calls to the setters only
+     * affect searches started after them
+     */
+    public final class Search {
+        private final Midstate midstate;
+        private final Thread[] workers;
+        private final int chunkSize;
+        private final long from;
+        private final long to;
+        private final AtomicLong best = new AtomicLong(Long.MAX_VALUE);
+        private final LongAdder hashes = new LongAdder();
+        private final long startNanos = System.nanoTime();
+        private volatile boolean cancelled;
+        private volatile long endNanos;
+
+        Search(Midstate midstate, int threads, int chunkSize, long from, long to) {
+            this.midstate = midstate;
+            this.workers = new Thread[threads];
+            this.chunkSize = chunkSize;
+            this.from = from;
+            this.to = to;
+        }
+
+        // Asks the workers to stop, they notice within a few thousand hashes
+        public void cancel() {
+            cancelled = true;
+        }
+
+        public boolean isDone() {
+            for (Thread worker : workers) {
+                if (worker.isAlive()) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        public long getHashes() {
+            return hashes.sum();
+        }
+
+        public double getHashesPerSecond() {
+            long end = endNanos == 0 ? System.nanoTime() : endNanos;
+            return hashes.sum() * 1e9 / Math.max(1, end - startNanos);
+        }
+
+        public Result await() throws InterruptedException {
+            for (Thread worker : workers) {
+                worker.join();
+            }
+            if (endNanos == 0) {
+                endNanos = System.nanoTime();
+            }
+            long elapsed = endNanos - startNanos;
+            long nonce = best.get();
+            if (cancelled) {
+                return new Result(Result.Status.CANCELLED, -1, null, hashes.sum(), elapsed);
+            }
+            if (nonce == Long.MAX_VALUE) {
+                return new Result(Result.Status.EXHAUSTED, -1, null, hashes.sum(), elapsed);
+            }
+            return new Result(Result.Status.FOUND, nonce, hash(prefix, nonce), hashes.sum(), elapsed);
+        }
+
+        // Worker i takes chunks i, i + threads, i + 2 * threads and so on, stopping once its next chunk starts
+        // above the best nonce found so far
+        private void work(int worker) {
+            Candidate candidate = new Candidate(midstate);
+            long stride = (long) chunkSize * workers.length;
+            long chunkStart = from + (long) worker * chunkSize;
+            while (chunkStart < to && chunkStart >= from && chunkStart < best.get() && !cancelled) {
+                long chunkEnd = to - chunkStart > chunkSize ? chunkStart + chunkSize : to;
+                long nonce = chunkStart;
+                while (nonce < chunkEnd) {
+                    long batchEnd = Math.min(chunkEnd, nonce + CHECK_INTERVAL);
+                    long found = candidate.search(nonce, batchEnd, target);
+                    if (found >= 0) {
+                        hashes.add(found - nonce + 1);
+                        best.accumulateAndGet(found, Math::min);
+                        return;
+                    }
+                    hashes.add(batchEnd - nonce);
+                    nonce = batchEnd;
+                    if (cancelled || nonce >= best.get()) {
+                        return;
+                    }
+                }
+                // Overflow past Long.MAX_VALUE ends the loop through the chunkStart >= from check
+                chunkStart += stride;
+            }
+        }
+    }
+
+    // The prefix compressed up to its last whole block, and what is known about the final block(s)
+    static final class Midstate {
+        final int[] state = new int[8];
+        // Final blocks with the nonce bytes zeroed, padding and message length filled in
+        final byte[] tail;
+        final int nonceOffset;
+        final int blocks;
+        // Schedule words per final block, with K[t] already added to those that do not depend on the nonce
+        final int[][] kw;
+        // Message words and expanded words to recompute per nonce, in order
+        final int[][] variableWords;
+        final int[][] variableExpansion;
+        // Rounds of the first final block before the first nonce word, already applied to roundState
+        final int firstVariableRound;
+        final int[] roundState = new int[8];
+
+        Midstate(byte[] prefix) {
+            int[] messageBlock = new int[16];
+            int[] words = new int[64];
+            SHA256.initialiseState(state);
+            int whole = prefix.length / BLOCK_LENGTH;
+            for (int b = 0; b < whole; b++) {
+                for (int i = 0; i < 16; i++) {
+                    messageBlock[i] = (int) INT_BE.get(prefix, b * BLOCK_LENGTH + i * 4);
+                }
+                SHA256.expandWords(messageBlock, words);
+                SHA256.compressionFunction(state, words);
+            }
+
+            nonceOffset = prefix.length - whole * BLOCK_LENGTH;
+            blocks = nonceOffset + NONCE_LENGTH + 1 + 8 <= BLOCK_LENGTH ? 1 : 2;
+            tail = new byte[blocks * BLOCK_LENGTH];
+            System.arraycopy(prefix, whole * BLOCK_LENGTH, tail, 0, nonceOffset);
+            tail[nonceOffset + NONCE_LENGTH] = (byte) 0b10000000;
+            LONG_BE.set(tail, tail.length - 8, ((long) prefix.length + NONCE_LENGTH) * 8);
+
+            int firstWord = nonceOffset / 4;
+            int lastWord = (nonceOffset + NONCE_LENGTH - 1) / 4;
+            kw = new int[blocks][64];
+            variableWords = new int[blocks][];
+            variableExpansion = new int[blocks][];
+            for (int b = 0; b < blocks; b++) {
+                boolean[] variable = new boolean[64];
+                int[] w = new int[64];
+                int messageCount = 0;
+                for (int t = 0; t < 16; t++) {
+                    int word = b * 16 + t;
+                    w[t] = (int) INT_BE.get(tail, word * 4);
+                    // Every word of a block after the first depends on the nonce through the chaining state,
+                    // but its message words only do if the nonce runs into it
+                    variable[t] = word >= firstWord && word <= lastWord;
+                    if (variable[t]) {
+                        messageCount++;
+                    }
+                }
+                int expansionCount = 0;
+                for (int t = 16; t < 64; t++) {
+                    variable[t] = variable[t - 2] || variable[t - 7] || variable[t - 15] || variable[t - 16];
+                    w[t] = schedule(w, t);
+                    if (variable[t]) {
+                        expansionCount++;
+                    }
+                }
+                variableWords[b] = new int[messageCount];
+                variableExpansion[b] = new int[expansionCount];
+                messageCount = 0;
+                expansionCount = 0;
+                for (int t = 0; t < 64; t++) {
+                    kw[b][t] = SHA256.K[t] + w[t];
+                    if (variable[t]) {
+                        if (t < 16) {
+                            variableWords[b][messageCount++] = t;
+                        } else {
+                            variableExpansion[b][expansionCount++] = t;
+                        }
+                    }
+                }
+            }
+
+            firstVariableRound = firstWord;
+            System.arraycopy(state, 0, roundState, 0, 8);
+            SHA256.rounds(roundState, kw[0], 0, firstVariableRound);
+        }
+    }
+
+    // Per worker copy of the final block schedule, refilled for each nonce
+    static final class Candidate {
+        private final Midstate midstate;
+        private final byte[] tail;
+        private final int[][] w;
+        private final int[][] kw;
+        private final int[] working = new int[8];
+        private final int[] chained = new int[8];
+
+        Candidate(Midstate midstate) {
+            this.midstate = midstate;
+            this.tail = midstate.tail.clone();
+            this.w = new int[midstate.blocks][64];
+            this.kw = new int[midstate.blocks][];
+            for (int b = 0; b < midstate.blocks; b++) {
+                kw[b] = midstate.kw[b].clone();
+                for (int t = 0; t < 64; t++) {
+                    w[b][t] = kw[b][t] - SHA256.K[t];
+                }
+            }
+        }
+
+        // The first nonce in [from, to) meeting the target, or -1
+        long search(long from, long to, Target target) {
+            for (long nonce = from; nonce < to; nonce++) {
+                if (meets(nonce, target)) {
+                    return nonce;
+                }
+            }
+            return -1;
+        }
+
+        boolean meets(long nonce, Target target) {
+            LONG_BE.set(tail, midstate.nonceOffset, nonce);
+            int[] input = midstate.state;
+            for (int b = 0; b < midstate.blocks; b++) {
+                int[] words = w[b];
+                int[] keyed = kw[b];
+                for (int t : midstate.variableWords[b]) {
+                    words[t] = (int) INT_BE.get(tail, (b * 16 + t) * 4);
+                    keyed[t] = SHA256.K[t] + words[t];
+                }
+                for (int t : midstate.variableExpansion[b]) {
+                    words[t] = schedule(words, t);
+                    keyed[t] = SHA256.K[t] + words[t];
+                }
+
+                int start;
+                if (b == 0) {
+                    System.arraycopy(midstate.roundState, 0, working, 0, 8);
+                    start = midstate.firstVariableRound;
+                } else {
+                    System.arraycopy(chained, 0, working, 0, 8);
+                    start = 0;
+                }
+                SHA256.rounds(working, keyed, start, 64);
+
+                if (b == midstate.blocks - 1 && !target.firstWordMayMeet(input[0] + working[0])) {
+                    return false;
+                }
+                for (int i = 0; i < 8; i++) {
+                    chained[i] = input[i] + working[i];
+                }
+                input = chained;
+            }
+            return target.isMetBy(chained);
+        }
+    }
+
+    private static int schedule(int[] w, int t) {
+        int im15 = w[t - 15];
+        int im2 = w[t - 2];
+        int s0 = Integer.rotateRight(im15, 7) ^ Integer.rotateRight(im15, 18) ^ (im15 >>> 3);
+        int s1 = Integer.rotateRight(im2, 17) ^ Integer.rotateRight(im2, 19) ^ (im2 >>> 10);
+        return w[t - 16] + s0 + w[t - 7] + s1;
+    }
+}
@@ -9,14 +9,33 @@ import java.util.Queue;
 
 public class PaddedInputStream extends InputStream {
     static final int BLOCK_LENGTH = 64;
+    // SHA-512 uses 128 byte blocks ending in a 128-bit length, rather than 64 byte blocks and a 64-bit length
+    static final int SHA512_BLOCK_LENGTH = 128;
+    final int blockLength;
+    final int lengthFieldSize;
     byte[] buffer;
     InputStream source;
-    int totalSize = 0;
+    long totalSize = 0;
     boolean streamExhausted;
     Queue<byte[]> paddingBytes;
 
     public PaddedInputStream(InputStream source) {
-        this.buffer = new byte[BLOCK_LENGTH];
+        this(source, 0, BLOCK_LENGTH);
+    }
+
+    public PaddedInputStream(InputStream source, long initialSize) {
+        this(source, initialSize, BLOCK_LENGTH);
+    }
+
+    public PaddedInputStream(InputStream source, long initialSize, int blockLength) {
+        if (blockLength != BLOCK_LENGTH && blockLength != SHA512_BLOCK_LENGTH) {
+            throw new IllegalArgumentException("Block length must be " + BLOCK_LENGTH + " or "
+                    + SHA512_BLOCK_LENGTH + ", got " + blockLength);
+        }
+        this.blockLength = blockLength;
+        this.lengthFieldSize = blockLength / 8;
+        this.totalSize = initialSize;
+        this.buffer = new byte[blockLength];
         this.source = source;
 
         try {
@@ -29,11 +48,6 @@ public class PaddedInputStream extends InputStream {
         this.paddingBytes = new LinkedList<byte[]>();
     }
 
-    public PaddedInputStream(InputStream source, int initialSize) {
-        this(source);
-        this.totalSize = initialSize;
-    }
-
     @Override
     public int read() throws IOException {
         throw new IOException("Output via read() not supported");
@@ -46,19 +60,19 @@ public class PaddedInputStream extends InputStream {
         if (this.streamExhausted) {
             if (this.paddingBytes.size() > 0) {
                 byte[] paddingBlock = this.paddingBytes.poll();
-                System.arraycopy(paddingBlock,0,buffer,0,BLOCK_LENGTH);
-                return BLOCK_LENGTH;
+                System.arraycopy(paddingBlock,0,buffer,0,blockLength);
+                return blockLength;
             } else {
                 return -1;
             }
         }
 
         // Read from stream
-        int bytesRead = this.source.read(this.buffer, 0, BLOCK_LENGTH);
+        int bytesRead = this.source.read(this.buffer, 0, blockLength);
 
-        if (bytesRead == BLOCK_LENGTH) {
+        if (bytesRead == blockLength) {
             // Stream has enough data
-            System.arraycopy(this.buffer, 0, buffer, 0, BLOCK_LENGTH);
+            System.arraycopy(this.buffer, 0, buffer, 0, blockLength);
             totalSize += bytesRead;
             return bytesRead;
         } else if (bytesRead > 0) {
@@ -70,9 +84,9 @@ public class PaddedInputStream extends InputStream {
 
             if (this.paddingBytes.size() > 0) {
                 byte[] paddingBlock = this.paddingBytes.poll();
-                System.arraycopy(paddingBlock,0,buffer,0,BLOCK_LENGTH);
+                System.arraycopy(paddingBlock,0,buffer,0,blockLength);
                 this.streamExhausted = true;
-                return BLOCK_LENGTH;
+                return blockLength;
             }
 
             return -1;
@@ -82,9 +96,9 @@ public class PaddedInputStream extends InputStream {
 
             if (this.paddingBytes.size() > 0) {
                 byte[] paddingBlock = this.paddingBytes.poll();
-                System.arraycopy(paddingBlock,0,buffer,0,BLOCK_LENGTH);
+                System.arraycopy(paddingBlock,0,buffer,0,blockLength);
                 this.streamExhausted = true;
-                return BLOCK_LENGTH;
+                return blockLength;
             }
 
             return -1;
@@ -96,40 +110,39 @@ public class PaddedInputStream extends InputStream {
         throw new IOException("Output via readAllBytes() not supported");
     }
 
-    private Queue<byte[]> padMessage(byte[] block, int blockLength, int messageLength) throws IOException {
+    private Queue<byte[]> padMessage(byte[] block, int blockLength, long messageLength) throws IOException {
         // Calculates appropriate padding and adds blocks into a queue
         Queue<byte[]> paddingBlocks = new LinkedList<>();
 
+        int blockBits = this.blockLength * 8;
+        int lengthBits = lengthFieldSize * 8;
         int blockBitLength = blockLength * 8;
-        int messageBitLength = messageLength * 8;
 
-        int padBitLength = Math.floorMod(512 - 1 - 64 - blockBitLength, 512);
+        int padBitLength = Math.floorMod(blockBits - 1 - lengthBits - blockBitLength, blockBits);
 
-        int totalBitLength = blockBitLength + padBitLength + 1 + 64;
+        int totalBitLength = blockBitLength + padBitLength + 1 + lengthBits;
         // There should be either one or two blocks of padding
-        if (totalBitLength != 512 && totalBitLength != 1024) {
+        if (totalBitLength != blockBits && totalBitLength != 2 * blockBits) {
             throw new IOException("Error calculating padding size");
         }
+        byte[] lenBytes = lengthField(messageLength);
 
-        if (totalBitLength == 512) {
-            byte[] paddingBlock = new byte[BLOCK_LENGTH];
+        if (totalBitLength == blockBits) {
+            byte[] paddingBlock = new byte[this.blockLength];
             System.arraycopy(block, 0, paddingBlock, 0, blockLength);
             paddingBlock[blockLength] = (byte)0b10000000;
-            byte[] lenBytes = ByteBuffer.allocate(8).putLong(messageBitLength).array();
-
-            System.arraycopy(lenBytes, 0, paddingBlock, block.length - 8, 8);
+            System.arraycopy(lenBytes, 0, paddingBlock, block.length - lengthFieldSize, lengthFieldSize);
             paddingBlocks.add(paddingBlock);
 
             return paddingBlocks;
         } else {
-            byte[] paddingBlock1 = new byte[BLOCK_LENGTH];
+            byte[] paddingBlock1 = new byte[this.blockLength];
 
             System.arraycopy(block, 0, paddingBlock1, 0, blockLength);
             paddingBlock1[blockLength] = (byte)0b10000000;
 
-            byte[] paddingBlock2 = new byte[BLOCK_LENGTH];
-            byte[] lenBytes = ByteBuffer.allocate(8).putLong(messageBitLength).array();
-            System.arraycopy(lenBytes, 0, paddingBlock2, block.length - 8, 8);
+            byte[] paddingBlock2 = new byte[this.blockLength];
+            System.arraycopy(lenBytes, 0, paddingBlock2, block.length - lengthFieldSize, lengthFieldSize);
 
             paddingBlocks.add(paddingBlock1);
             paddingBlocks.add(paddingBlock2);
@@ -138,6 +151,15 @@ public class PaddedInputStream extends InputStream {
         }
     }
 
+    // Big endian bit length of the message, with the high word of a 128-bit length holding the bits shifted out
+    private byte[] lengthField(long messageLength) {
+        ByteBuffer field = ByteBuffer.allocate(lengthFieldSize);
+        if (lengthFieldSize == 16) {
+            field.putLong(messageLength >>> 61);
+        }
+        return field.putLong(messageLength << 3).array();
+    }
+
     @Override
     public void close() throws IOException {
         this.source.close();
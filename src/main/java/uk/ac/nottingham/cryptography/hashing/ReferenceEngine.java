@@ -0,0 +1,39 @@
+package uk.ac.nottingham.cryptography.hashing;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/***
+ * Compression via the reference SHA256.expandWords and SHA256.compressionFunction. Instances hold a
+ * 64 word schedule, so are not thread safe.
+ */
+final class ReferenceEngine implements CompressionEngine {
+    private static final VarHandle INT_BE = MethodHandles.byteArrayViewVarHandle(int[].class, ByteOrder.BIG_ENDIAN);
+
+    private final int[] words = new int[64];
+
+    @Override
+    public CompressionEngine duplicate() {
+        return new ReferenceEngine();
+    }
+
+    @Override
+    public void compress(int[] state, byte[] block, int offset) {
+        for (int i = 0; i < 16; i++) {
+            words[i] = (int) INT_BE.get(block, offset + i * 4);
+        }
+        SHA256.expandWords(words);
+        SHA256.compressionFunction(state, words);
+    }
+
+    @Override
+    public void compress(int[] state, ByteBuffer block, int offset) {
+        for (int i = 0; i < 16; i++) {
+            words[i] = block.getInt(offset + i * 4);
+        }
+        SHA256.expandWords(words);
+        SHA256.compressionFunction(state, words);
+    }
+}
@@ -2,13 +2,17 @@ package uk.ac.nottingham.cryptography.hashing;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.Arrays;
 import java.util.LinkedList;
 
 import static uk.ac.nottingham.cryptography.Main.bytesToHex;
 
 public class SHA256 {
-    private static final int[] H0 = new int[] {
+    static final int[] H0 = new int[] {
             0x6a09e667,
             0xbb67ae85,
             0x3c6ef372,
@@ -19,7 +23,13 @@ public class SHA256 {
             0x5be0cd19
     };
 
-    private static final int[] K = new int[]{
+    private static final BatchHasher BATCH_HASHER = createBatchHasher();
+
+    // Files at least this large are hashed through memory mapped windows rather than reads
+    static final long MAPPED_THRESHOLD = 1 << 20;
+    static final long MAPPED_WINDOW = 64 << 20;
+
+    static final int[] K = new int[]{
             0x428a2f98, 0x71374491, 0xb5c0fbcf, 0xe9b5dba5, 0x3956c25b, 0x59f111f1, 0x923f82a4, 0xab1c5ed5,
             0xd807aa98, 0x12835b01, 0x243185be, 0x550c7dc3, 0x72be5d74, 0x80deb1fe, 0x9bdc06a7, 0xc19bf174,
             0xe49b69c1, 0xefbe4786, 0x0fc19dc6, 0x240ca1cc, 0x2de92c6f, 0x4a7484aa, 0x5cb0a9dc, 0x76f988da,
@@ -30,6 +40,10 @@ public class SHA256 {
             0x748f82ee, 0x78a5636f, 0x84c87814, 0x8cc70208, 0x90befffa, 0xa4506ceb, 0xbef9a3f7, 0xc67178f2
     };
 
+    // Created after K, which their padding schedules are built from
+    private static final FixedLengthHasher DIGEST32 = new FixedLengthHasher(32);
+    private static final FixedLengthHasher DIGEST64 = new FixedLengthHasher(64);
+
     private SHA256() {
 
     }
@@ -41,7 +55,11 @@ public class SHA256 {
     public static void expandWords(int[] messageBlock, int[] words) {
         // Copy first 16 words unchanged
         System.arraycopy(messageBlock, 0, words, 0, 16);
+        expandWords(words);
+    }
 
+    // Expands in place, where words already holds the 16 word message block
+    static void expandWords(int[] words) {
         // Remaining words calculated from previous words
         for (int i = 16; i < 64; i++) {
             int im15 = words[i - 15];
@@ -84,39 +102,194 @@ public class SHA256 {
     }
 
     public static byte[] digest(InputStream stream) throws IOException {
-        PaddedInputStream ps = new PaddedInputStream(stream);
-
-        int[] state = new int[8];
-        int[] words = new int[64];
-        initialiseState(state);
-        byte[] buffer = new byte[64];
-        while (true) {
-            int bytesRead = ps.read(buffer);
-            if (bytesRead <= 0)
-                break;
-            int[] messageBlock = bytesToInts(buffer);
-            expandWords(messageBlock, words);
-            compressionFunction(state, words);
+        Sha256DigestEvent event = HashMetrics.begin();
+        Sha256Hasher hasher = new Sha256Hasher();
+        update(hasher, stream);
+        return HashMetrics.finish(event, hasher, 0);
+    }
+
+    public static byte[] continueDigest(InputStream stream, byte[] originalState, long originalLength) throws IOException {
+        Sha256DigestEvent event = HashMetrics.begin();
+        Sha256Hasher hasher = new Sha256Hasher();
+        hasher.reset(originalState, originalLength);
+        update(hasher, stream);
+        return HashMetrics.finish(event, hasher, originalLength);
+    }
+
+    // Hashes the segments as one logical message, without concatenating them first
+    public static byte[] digest(byte[]... segments) {
+        Sha256DigestEvent event = HashMetrics.begin();
+        Sha256Hasher hasher = new Sha256Hasher();
+        for (byte[] segment : segments) {
+            hasher.update(segment);
+        }
+        return HashMetrics.finish(event, hasher, 0);
+    }
+
+    // Fast path for hashing a digest again, as in Merkle trees and double SHA-256. The message must be 32 bytes
+    public static byte[] digest32(byte[] message) {
+        return digestFixed(DIGEST32, message);
+    }
+
+    // Fast path for hashing a pair of digests. The message must be 64 bytes
+    public static byte[] digest64(byte[] message) {
+        return digestFixed(DIGEST64, message);
+    }
+
+    private static byte[] digestFixed(FixedLengthHasher hasher, byte[] message) {
+        Sha256DigestEvent event = HashMetrics.begin();
+        byte[] digest = hasher.digest(message);
+        HashMetrics.recordFixed(event, message.length);
+        return digest;
+    }
+
+    // Hashes the remaining bytes of each buffer as one logical message. Heap, direct and mapped buffers
+    // are all read in place, and each buffer is consumed as with MessageDigest.update(ByteBuffer)
+    public static byte[] digest(ByteBuffer... segments) {
+        Sha256DigestEvent event = HashMetrics.begin();
+        Sha256Hasher hasher = new Sha256Hasher();
+        for (ByteBuffer segment : segments) {
+            hasher.update(segment);
+        }
+        return HashMetrics.finish(event, hasher, 0);
+    }
+
+    public static byte[] digest(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return digest(channel);
+        }
+    }
+
+    // Hashes from the channel's current position to the end of the file, leaving the position at the end
+    public static byte[] digest(FileChannel channel) throws IOException {
+        Sha256DigestEvent event = HashMetrics.begin();
+        Sha256Hasher hasher = new Sha256Hasher();
+        long size = channel.size();
+        update(hasher, channel, channel.position(), size);
+        channel.position(size);
+        return HashMetrics.finish(event, hasher, 0);
+    }
+
+    // Hashes bytes [position, end) of the file without moving the channel's position. Large ranges are
+    // memory mapped a window at a time, small ones are read into a heap buffer
+    static void update(Sha256Hasher hasher, FileChannel channel, long position, long end) throws IOException {
+        if (end - position >= MAPPED_THRESHOLD) {
+            while (position < end) {
+                long window = Math.min(MAPPED_WINDOW, end - position);
+                hasher.update(channel.map(FileChannel.MapMode.READ_ONLY, position, window));
+                position += window;
+            }
+        } else {
+            ByteBuffer buffer = ByteBuffer.allocate(8192);
+            while (position < end) {
+                buffer.limit((int) Math.min(buffer.capacity(), end - position));
+                int read = channel.read(buffer, position);
+                if (read == -1) {
+                    throw new IOException("File ended at " + position + " bytes, expected " + end);
+                }
+                position += read;
+                buffer.flip();
+                hasher.update(buffer);
+                buffer.clear();
+            }
         }
-        return intsToBytes(state);
     }
 
-    public static byte[] continueDigest(InputStream stream, byte[] originalState, int originalLength) throws IOException {
-        PaddedInputStream ps = new PaddedInputStream(stream, originalLength);
+    // Hashes each message independently, writing the digest of messages[i] into out[i]. Any null
+    // entries in out are allocated. Uses SIMD lanes via the Vector API when available
+    public static void digestBatch(byte[][] messages, byte[][] out) {
+        if (out.length < messages.length) {
+            throw new IllegalArgumentException("Output array shorter than message array");
+        }
+        for (int i = 0; i < messages.length; i++) {
+            if (out[i] == null) {
+                out[i] = new byte[Sha256Hasher.DIGEST_LENGTH];
+            } else if (out[i].length < Sha256Hasher.DIGEST_LENGTH) {
+                throw new IllegalArgumentException("Output " + i + " is shorter than a digest");
+            }
+        }
+        Sha256DigestEvent event = HashMetrics.begin();
+        BATCH_HASHER.digest(messages, out);
+        HashMetrics.recordBatch(event, messages);
+    }
 
-        int[] state = bytesToInts(originalState);
-        int[] words = new int[64];
-        byte[] buffer = new byte[64];
+    // The vector implementation is only loaded once the incubator module is known to be present,
+    // otherwise linking against jdk.incubator.vector would fail
+    private static BatchHasher createBatchHasher() {
+        if (ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent()) {
+            try {
+                return (BatchHasher) Class.forName("uk.ac.nottingham.cryptography.hashing.VectorBatchHasher")
+                        .getDeclaredConstructor().newInstance();
+            } catch (ReflectiveOperationException | LinkageError ex) {
+                // Fall through to the scalar implementation
+            }
+        }
+        return new ScalarBatchHasher();
+    }
 
-        while (true) {
-            int bytesRead = ps.read(buffer);
-            if (bytesRead <= 0)
-                break;
-            int[] messageBlock = bytesToInts(buffer);
-            expandWords(messageBlock, words);
-            compressionFunction(state, words);
+    private static void update(Sha256Hasher hasher, InputStream stream) throws IOException {
+        byte[] buffer = new byte[8192];
+        int bytesRead;
+        while ((bytesRead = stream.read(buffer)) != -1) {
+            hasher.update(buffer, 0, bytesRead);
+        }
+    }
+
+    // Applies rounds [from, to) to state in place, without the final feed forward. kw holds K[t] + W[t].
+    // Single rounds are applied until the rest is a whole number of eight round passes, which are written
+    // with the same renaming as UnrolledEngine
+    static void rounds(int[] state, int[] kw, int from, int to) {
+        int a = state[0], b = state[1], c = state[2], d = state[3], e = state[4],
+                f = state[5], g = state[6], h = state[7];
+        int i = from;
+        for (; (to - i) % 8 != 0; i++) {
+            int t1 = h + (Integer.rotateRight(e, 6) ^ Integer.rotateRight(e, 11) ^ Integer.rotateRight(e, 25))
+                    + ((e & f) ^ (~e & g)) + kw[i];
+            int t2 = (Integer.rotateRight(a, 2) ^ Integer.rotateRight(a, 13) ^ Integer.rotateRight(a, 22))
+                    + ((a & b) ^ (a & c) ^ (b & c));
+            h = g;
+            g = f;
+            f = e;
+            e = d + t1;
+            d = c;
+            c = b;
+            b = a;
+            a = t1 + t2;
+        }
+        for (; i < to; i += 8) {
+            h += (Integer.rotateRight(e, 6) ^ Integer.rotateRight(e, 11) ^ Integer.rotateRight(e, 25)) + ((e & f) ^ (~e & g)) + kw[i + 0];
+            d += h;
+            h += (Integer.rotateRight(a, 2) ^ Integer.rotateRight(a, 13) ^ Integer.rotateRight(a, 22)) + ((a & b) ^ (a & c) ^ (b & c));
+            g += (Integer.rotateRight(d, 6) ^ Integer.rotateRight(d, 11) ^ Integer.rotateRight(d, 25)) + ((d & e) ^ (~d & f)) + kw[i + 1];
+            c += g;
+            g += (Integer.rotateRight(h, 2) ^ Integer.rotateRight(h, 13) ^ Integer.rotateRight(h, 22)) + ((h & a) ^ (h & b) ^ (a & b));
+            f += (Integer.rotateRight(c, 6) ^ Integer.rotateRight(c, 11) ^ Integer.rotateRight(c, 25)) + ((c & d) ^ (~c & e)) + kw[i + 2];
+            b += f;
+            f += (Integer.rotateRight(g, 2) ^ Integer.rotateRight(g, 13) ^ Integer.rotateRight(g, 22)) + ((g & h) ^ (g & a) ^ (h & a));
+            e += (Integer.rotateRight(b, 6) ^ Integer.rotateRight(b, 11) ^ Integer.rotateRight(b, 25)) + ((b & c) ^ (~b & d)) + kw[i + 3];
+            a += e;
+            e += (Integer.rotateRight(f, 2) ^ Integer.rotateRight(f, 13) ^ Integer.rotateRight(f, 22)) + ((f & g) ^ (f & h) ^ (g & h));
+            d += (Integer.rotateRight(a, 6) ^ Integer.rotateRight(a, 11) ^ Integer.rotateRight(a, 25)) + ((a & b) ^ (~a & c)) + kw[i + 4];
+            h += d;
+            d += (Integer.rotateRight(e, 2) ^ Integer.rotateRight(e, 13) ^ Integer.rotateRight(e, 22)) + ((e & f) ^ (e & g) ^ (f & g));
+            c += (Integer.rotateRight(h, 6) ^ Integer.rotateRight(h, 11) ^ Integer.rotateRight(h, 25)) + ((h & a) ^ (~h & b)) + kw[i + 5];
+            g += c;
+            c += (Integer.rotateRight(d, 2) ^ Integer.rotateRight(d, 13) ^ Integer.rotateRight(d, 22)) + ((d & e) ^ (d & f) ^ (e & f));
+            b += (Integer.rotateRight(g, 6) ^ Integer.rotateRight(g, 11) ^ Integer.rotateRight(g, 25)) + ((g & h) ^ (~g & a)) + kw[i + 6];
+            f += b;
+            b += (Integer.rotateRight(c, 2) ^ Integer.rotateRight(c, 13) ^ Integer.rotateRight(c, 22)) + ((c & d) ^ (c & e) ^ (d & e));
+            a += (Integer.rotateRight(f, 6) ^ Integer.rotateRight(f, 11) ^ Integer.rotateRight(f, 25)) + ((f & g) ^ (~f & h)) + kw[i + 7];
+            e += a;
+            a += (Integer.rotateRight(b, 2) ^ Integer.rotateRight(b, 13) ^ Integer.rotateRight(b, 22)) + ((b & c) ^ (b & d) ^ (c & d));
         }
-        return intsToBytes(state);
+        state[0] = a;
+        state[1] = b;
+        state[2] = c;
+        state[3] = d;
+        state[4] = e;
+        state[5] = f;
+        state[6] = g;
+        state[7] = h;
     }
 
     // Rotates int x to the right by n bits
@@ -0,0 +1,15 @@
+package uk.ac.nottingham.cryptography.hashing;
+
+/***
+ * Batch hashing one message at a time, used where the Vector API is not available
+ */
+final class ScalarBatchHasher implements BatchHasher {
+    @Override
+    public void digest(byte[][] messages, byte[][] out) {
+        Sha256Hasher hasher = new Sha256Hasher();
+        for (int i = 0; i < messages.length; i++) {
+            hasher.update(messages[i]);
+            hasher.digestInto(out[i], 0);
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package uk.ac.nottingham.cryptography.hashing;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/***
+ * Flight recorder event for one SHA256 digest call. Disabled unless a recording enables it
+ */
+@Name("uk.ac.nottingham.cryptography.Sha256Digest")
+@Label("SHA-256 Digest")
+@Category({"Cryptography", "Hashing"})
+@Description("A digest computed through the SHA256 class")
+@StackTrace(false)
+public final class Sha256DigestEvent extends Event {
+    @Label("Bytes Hashed")
+    @DataAmount
+    long bytes;
+
+    @Label("Blocks Compressed")
+    long blocks;
+
+    @Label("Continued")
+    @Description("True if the digest continued from an earlier state")
+    boolean continued;
+}
@@ -0,0 +1,114 @@
+package uk.ac.nottingham.cryptography.hashing;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/***
+ * Incremental SHA-256. BlockHasher buffers input into 64 byte blocks, so update() can be called
+ * with any amount of data. All working memory is allocated once on construction, and a hasher can be
+ * reused for any number of messages via reset(). Blocks are compressed by the given CompressionEngine,
+ * or the default engine. Instances are not thread safe.
+ */
+public class Sha256Hasher extends BlockHasher {
+    public static final int DIGEST_LENGTH = 32;
+    static final int BLOCK_LENGTH = 64;
+
+    private static final VarHandle INT_BE = MethodHandles.byteArrayViewVarHandle(int[].class, ByteOrder.BIG_ENDIAN);
+
+    private final CompressionEngine engine;
+    private final int[] state = new int[8];
+
+    public Sha256Hasher() {
+        this(CompressionEngine.defaultEngine());
+    }
+
+    public Sha256Hasher(CompressionEngine engine) {
+        super(BLOCK_LENGTH, 8);
+        this.engine = engine;
+        reset();
+    }
+
+    // Starts a new message
+    public void reset() {
+        SHA256.initialiseState(state);
+        resetBuffer(0);
+    }
+
+    // Starts from a previous digest as though processedLength bytes have already been hashed,
+    // which is exactly what a length extension requires
+    public void reset(byte[] digest, long processedLength) {
+        for (int i = 0; i < 8; i++) {
+            state[i] = (int) INT_BE.get(digest, i * 4);
+        }
+        resetBuffer(processedLength);
+    }
+
+    // A new hasher holding the same in progress message, which can then be continued independently
+    public Sha256Hasher copy() {
+        Sha256Hasher copy = new Sha256Hasher(engine.duplicate());
+        copy.copyFrom(this);
+        return copy;
+    }
+
+    // Replaces this hasher's in progress message with other's, without allocating
+    public void copyFrom(Sha256Hasher other) {
+        System.arraycopy(other.state, 0, state, 0, 8);
+        copyBufferFrom(other);
+    }
+
+    // Captures the in progress message without finishing it, so hashing can carry on later from restore()
+    public HashCheckpoint checkpoint() {
+        return new HashCheckpoint(state, length, Arrays.copyOf(buffer, bufferLength));
+    }
+
+    // Replaces this hasher's in progress message with the checkpointed one
+    public void restore(HashCheckpoint checkpoint) {
+        System.arraycopy(checkpoint.state(), 0, state, 0, 8);
+        byte[] partial = checkpoint.partialBlock();
+        System.arraycopy(partial, 0, buffer, 0, partial.length);
+        bufferLength = partial.length;
+        length = checkpoint.getLength();
+    }
+
+    // Continues from a midstate after processedLength bytes, which must be a whole number of blocks
+    void restore(int[] midstate, long processedLength) {
+        System.arraycopy(midstate, 0, state, 0, 8);
+        resetBuffer(processedLength);
+    }
+
+    public byte[] digest() {
+        byte[] output = new byte[DIGEST_LENGTH];
+        digestInto(output, 0);
+        return output;
+    }
+
+    // Pads and finishes the message, writes the 32 byte digest into out, then resets the hasher
+    public void digestInto(byte[] out, int offset) {
+        if (offset < 0 || offset > out.length - DIGEST_LENGTH) {
+            throw new IndexOutOfBoundsException("Not enough space for digest at offset " + offset);
+        }
+        finish();
+        for (int i = 0; i < 8; i++) {
+            INT_BE.set(out, offset + i * 4, state[i]);
+        }
+        reset();
+    }
+
+    @Override
+    void compressBlock(byte[] block, int offset) {
+        engine.compress(state, block, offset);
+    }
+
+    @Override
+    void compressBlocks(byte[] input, int offset, int count) {
+        engine.compressBlocks(state, input, offset, count);
+    }
+
+    @Override
+    void compressBlocks(ByteBuffer input, int offset, int count) {
+        engine.compressBlocks(state, input, offset, count);
+    }
+}
@@ -0,0 +1,60 @@
+package uk.ac.nottingham.cryptography.hashing;
+
+import java.nio.ByteBuffer;
+import java.security.DigestException;
+import java.security.MessageDigestSpi;
+
+/***
+ * MessageDigest SPI backed by a Sha256Hasher. Cloning copies only the eight word state and any
+ * partially filled block, so a digest that has absorbed a long common prefix can be cloned and
+ * finished with different suffixes without rehashing the prefix.
+ */
+public class Sha256MessageDigestSpi extends MessageDigestSpi implements Cloneable {
+    private Sha256Hasher hasher = new Sha256Hasher();
+
+    @Override
+    protected int engineGetDigestLength() {
+        return Sha256Hasher.DIGEST_LENGTH;
+    }
+
+    @Override
+    protected void engineUpdate(byte input) {
+        hasher.update(input);
+    }
+
+    @Override
+    protected void engineUpdate(byte[] input, int offset, int len) {
+        hasher.update(input, offset, len);
+    }
+
+    @Override
+    protected void engineUpdate(ByteBuffer input) {
+        hasher.update(input);
+    }
+
+    @Override
+    protected byte[] engineDigest() {
+        return hasher.digest();
+    }
+
+    @Override
+    protected int engineDigest(byte[] buf, int offset, int len) throws DigestException {
+        if (len < Sha256Hasher.DIGEST_LENGTH) {
+            throw new DigestException("Output buffer too small, need " + Sha256Hasher.DIGEST_LENGTH + " bytes");
+        }
+        hasher.digestInto(buf, offset);
+        return Sha256Hasher.DIGEST_LENGTH;
+    }
+
+    @Override
+    protected void engineReset() {
+        hasher.reset();
+    }
+
+    @Override
+    public Object clone() throws CloneNotSupportedException {
+        Sha256MessageDigestSpi copy = (Sha256MessageDigestSpi) super.clone();
+        copy.hasher = hasher.copy();
+        return copy;
+    }
+}
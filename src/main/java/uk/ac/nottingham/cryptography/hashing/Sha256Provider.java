@@ -0,0 +1,18 @@
+package uk.ac.nottingham.cryptography.hashing;
+
+import java.security.Provider;
+import java.util.List;
+
+/***
+ * JCA provider exposing this SHA-256 implementation through MessageDigest, e.g.
+ * MessageDigest.getInstance("SHA-256", new Sha256Provider())
+ */
+public class Sha256Provider extends Provider {
+    public static final String NAME = "LabSHA";
+
+    public Sha256Provider() {
+        super(NAME, "1.0", "Pure Java SHA-256 with cheap cloning of in progress digests");
+        putService(new Service(this, "MessageDigest", "SHA-256", Sha256MessageDigestSpi.class.getName(),
+                List.of("SHA256", "2.16.840.1.101.3.4.2.1", "OID.2.16.840.1.101.3.4.2.1"), null));
+    }
+}
@@ -0,0 +1,126 @@
+package uk.ac.nottingham.cryptography.hashing;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/***
+ * Incremental SHA-512 and SHA-512/256. BlockHasher does the buffering and padding as for Sha256Hasher, here with
+ * 128 byte blocks of 64-bit words and a 128-bit message length. All working memory is allocated once on
+ * construction. Instances are not thread safe.
+ */
+public class Sha512Hasher extends BlockHasher {
+    public static final int DIGEST_LENGTH = 64;
+    static final int BLOCK_LENGTH = 128;
+
+    private static final VarHandle LONG_BE = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.BIG_ENDIAN);
+
+    private final long[] initialState;
+    private final int digestLength;
+    private final long[] state = new long[8];
+    private final long[] words = new long[80];
+
+    public Sha512Hasher() {
+        this(SHA512.H0, DIGEST_LENGTH);
+    }
+
+    private Sha512Hasher(long[] initialState, int digestLength) {
+        super(BLOCK_LENGTH, 16);
+        this.initialState = initialState;
+        this.digestLength = digestLength;
+        reset();
+    }
+
+    // SHA-512/256, a 32 byte digest computed with its own initial state
+    public static Sha512Hasher sha512_256() {
+        return new Sha512Hasher(SHA512.H0_512_256, Sha256Hasher.DIGEST_LENGTH);
+    }
+
+    public int getDigestLength() {
+        return digestLength;
+    }
+
+    // Starts a new message
+    public void reset() {
+        System.arraycopy(initialState, 0, state, 0, 8);
+        resetBuffer(0);
+    }
+
+    // Starts from a previous SHA-512 digest as though processedLength bytes have already been hashed.
+    // Truncated digests do not hold the whole state, so they cannot be continued
+    public void reset(byte[] digest, long processedLength) {
+        if (digestLength != DIGEST_LENGTH) {
+            throw new UnsupportedOperationException("Truncated digests cannot be continued");
+        }
+        for (int i = 0; i < 8; i++) {
+            state[i] = (long) LONG_BE.get(digest, i * 8);
+        }
+        resetBuffer(processedLength);
+    }
+
+    // A new hasher holding the same in progress message, which can then be continued independently
+    public Sha512Hasher copy() {
+        Sha512Hasher copy = new Sha512Hasher(initialState, digestLength);
+        copy.copyFrom(this);
+        return copy;
+    }
+
+    // Replaces this hasher's in progress message with other's, without allocating. Both must be the same variant
+    public void copyFrom(Sha512Hasher other) {
+        if (other.initialState != initialState) {
+            throw new IllegalArgumentException("Cannot copy between SHA-512 and SHA-512/256 hashers");
+        }
+        System.arraycopy(other.state, 0, state, 0, 8);
+        copyBufferFrom(other);
+    }
+
+    public byte[] digest() {
+        byte[] output = new byte[digestLength];
+        digestInto(output, 0);
+        return output;
+    }
+
+    // Pads and finishes the message, writes the digest into out, then resets the hasher
+    public void digestInto(byte[] out, int offset) {
+        if (offset < 0 || offset > out.length - digestLength) {
+            throw new IndexOutOfBoundsException("Not enough space for digest at offset " + offset);
+        }
+        finish();
+        for (int i = 0; i < digestLength / 8; i++) {
+            LONG_BE.set(out, offset + i * 8, state[i]);
+        }
+        reset();
+    }
+
+    @Override
+    void compressBlock(byte[] block, int offset) {
+        for (int i = 0; i < 16; i++) {
+            words[i] = (long) LONG_BE.get(block, offset + i * 8);
+        }
+        compressWords();
+    }
+
+    @Override
+    void compressBlocks(byte[] input, int offset, int count) {
+        for (int i = 0; i < count; i++) {
+            compressBlock(input, offset + i * BLOCK_LENGTH);
+        }
+    }
+
+    @Override
+    void compressBlocks(ByteBuffer input, int offset, int count) {
+        for (int b = 0; b < count; b++) {
+            int block = offset + b * BLOCK_LENGTH;
+            for (int i = 0; i < 16; i++) {
+                words[i] = input.getLong(block + i * 8);
+            }
+            compressWords();
+        }
+    }
+
+    private void compressWords() {
+        SHA512.expandWords(words);
+        SHA512.compressionFunction(state, words);
+    }
+}
@@ -0,0 +1,259 @@
+package uk.ac.nottingham.cryptography.hashing;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/***
+ * Merkle tree hash built on SHA-256, for inputs too large to hash on one core. The input is split into fixed
+ * size leaves which are hashed independently in parallel, then combined pairwise up to a single root.
+ *
+ * The tree follows RFC 6962: leaves are hashed as SHA256(0x00 | leaf) and nodes as SHA256(0x01 | left | right),
+ * with each node splitting its leaves at the largest power of two below their count. The prefixes keep leaf
+ * and node hashes apart, and mean a root never equals the plain SHA-256 of the same input. Unlike RFC 6962 an
+ * empty input is a single empty leaf. The root only depends on the input and the leaf size, never on how
+ * the work was scheduled.
+ */
+public class TreeHash {
+    public static final int DEFAULT_LEAF_SIZE = 1 << 20;
+    public static final int MAX_LEAF_SIZE = 1 << 30;
+
+    static final byte LEAF_PREFIX = 0x00;
+    static final byte NODE_PREFIX = 0x01;
+
+    // Each fork join task maps at most this much of a file at once
+    private static final long TASK_BYTES = SHA256.MAPPED_WINDOW;
+
+    private final int leafSize;
+    private final ForkJoinPool pool;
+
+    public TreeHash() {
+        this(DEFAULT_LEAF_SIZE);
+    }
+
+    public TreeHash(int leafSize) {
+        this(leafSize, ForkJoinPool.commonPool());
+    }
+
+    public TreeHash(int leafSize, ForkJoinPool pool) {
+        if (leafSize <= 0 || leafSize > MAX_LEAF_SIZE) {
+            throw new IllegalArgumentException("Leaf size must be between 1 and " + MAX_LEAF_SIZE + ", got " + leafSize);
+        }
+        this.leafSize = leafSize;
+        this.pool = pool;
+    }
+
+    public int getLeafSize() {
+        return leafSize;
+    }
+
+    public byte[] digest(Path path) throws IOException {
+        return hash(path).getRoot();
+    }
+
+    public byte[] digest(byte[] data) {
+        return hash(data).getRoot();
+    }
+
+    // Hashes every leaf of the file, reading them through memory mapped regions
+    public Tree hash(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return hash(channel);
+        }
+    }
+
+    public Tree hash(FileChannel channel) throws IOException {
+        long size = channel.size();
+        try {
+            return hash(size, (offset, length) -> channel.map(FileChannel.MapMode.READ_ONLY, offset, length));
+        } catch (UncheckedIOException ex) {
+            throw ex.getCause();
+        }
+    }
+
+    public Tree hash(byte[] data) {
+        return hash(data.length, (offset, length) -> ByteBuffer.wrap(data, (int) offset, length).slice());
+    }
+
+    private Tree hash(long size, Source source) {
+        int leafCount = leafCount(size);
+        byte[][] leaves = new byte[leafCount][];
+        long leavesPerTask = Math.max(1, TASK_BYTES / leafSize);
+        pool.invoke(new LeafTask(source, size, leaves, 0, leafCount, leavesPerTask));
+        return new Tree(leafSize, size, leaves);
+    }
+
+    // Rehashes one leaf of the file and checks it against a root, without reading the rest of the file
+    public static boolean verifyLeaf(Path path, InclusionProof proof, byte[] root) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long offset = (long) proof.getLeafIndex() * proof.getLeafSize();
+            long size = channel.size();
+            if (size != proof.getInputLength() || offset > size) {
+                return false;
+            }
+            int length = (int) Math.min(proof.getLeafSize(), size - offset);
+            return proof.verify(leafHash(channel.map(FileChannel.MapMode.READ_ONLY, offset, length)), root);
+        }
+    }
+
+    public static byte[] leafHash(byte[] leaf) {
+        return leafHash(ByteBuffer.wrap(leaf));
+    }
+
+    // Consumes the remaining bytes of the buffer
+    public static byte[] leafHash(ByteBuffer leaf) {
+        Sha256Hasher hasher = new Sha256Hasher();
+        hasher.update(LEAF_PREFIX);
+        hasher.update(leaf);
+        return hasher.digest();
+    }
+
+    static byte[] nodeHash(Sha256Hasher hasher, byte[] left, byte[] right) {
+        hasher.update(NODE_PREFIX);
+        hasher.update(left);
+        hasher.update(right);
+        return hasher.digest();
+    }
+
+    private int leafCount(long size) {
+        long count = Math.max(1, (size + leafSize - 1) / leafSize);
+        if (count > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("Input needs " + count + " leaves, use a larger leaf size");
+        }
+        return (int) count;
+    }
+
+    // Largest power of two strictly below n, for n > 1
+    static int split(int n) {
+        return Integer.highestOneBit(n - 1);
+    }
+
+    @FunctionalInterface
+    private interface Source {
+        ByteBuffer region(long offset, int length) throws IOException;
+    }
+
+    // Splits the leaves until a range fits in one mapped region, then hashes that range on one worker
+    private final class LeafTask extends RecursiveAction {
+        private final Source source;
+        private final long size;
+        private final byte[][] leaves;
+        private final int from;
+        private final int to;
+        private final long leavesPerTask;
+
+        LeafTask(Source source, long size, byte[][] leaves, int from, int to, long leavesPerTask) {
+            this.source = source;
+            this.size = size;
+            this.leaves = leaves;
+            this.from = from;
+            this.to = to;
+            this.leavesPerTask = leavesPerTask;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > leavesPerTask) {
+                int mid = (from + to) >>> 1;
+                invokeAll(new LeafTask(source, size, leaves, from, mid, leavesPerTask),
+                        new LeafTask(source, size, leaves, mid, to, leavesPerTask));
+                return;
+            }
+
+            long start = (long) from * leafSize;
+            long end = Math.min((long) to * leafSize, size);
+            ByteBuffer region;
+            try {
+                region = source.region(start, (int) (end - start));
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+            for (int i = from; i < to; i++) {
+                int offset = (int) ((long) (i - from) * leafSize);
+                int length = (int) Math.min(leafSize, end - start - offset);
+                leaves[i] = leafHash(region.slice(offset, length));
+            }
+        }
+    }
+
+    /***
+     * Leaf hashes of a hashed input, from which the root and inclusion proofs are computed
+     */
+    public static final class Tree {
+        private final int leafSize;
+        private final long inputLength;
+        private final byte[][] leaves;
+        private byte[] root;
+
+        Tree(int leafSize, long inputLength, byte[][] leaves) {
+            this.leafSize = leafSize;
+            this.inputLength = inputLength;
+            this.leaves = leaves;
+        }
+
+        public int getLeafSize() {
+            return leafSize;
+        }
+
+        public long getInputLength() {
+            return inputLength;
+        }
+
+        public int getLeafCount() {
+            return leaves.length;
+        }
+
+        public byte[] getLeafHash(int index) {
+            return leaves[index].clone();
+        }
+
+        public synchronized byte[] getRoot() {
+            if (root == null) {
+                root = subtreeHash(new Sha256Hasher(), 0, leaves.length);
+            }
+            return root.clone();
+        }
+
+        // Sibling hashes from the leaf up to the root, as in RFC 6962 audit paths
+        public InclusionProof prove(int index) {
+            if (index < 0 || index >= leaves.length) {
+                throw new IndexOutOfBoundsException("Leaf " + index + " of " + leaves.length);
+            }
+            List<byte[]> path = new ArrayList<>();
+            path(new Sha256Hasher(), index, 0, leaves.length, path);
+            return new InclusionProof(leafSize, inputLength, index, leaves.length, path.toArray(new byte[0][]));
+        }
+
+        private void path(Sha256Hasher hasher, int index, int from, int to, List<byte[]> path) {
+            int n = to - from;
+            if (n == 1) {
+                return;
+            }
+            int k = split(n);
+            if (index < from + k) {
+                path(hasher, index, from, from + k, path);
+                path.add(subtreeHash(hasher, from + k, to));
+            } else {
+                path(hasher, index, from + k, to, path);
+                path.add(subtreeHash(hasher, from, from + k));
+            }
+        }
+
+        private byte[] subtreeHash(Sha256Hasher hasher, int from, int to) {
+            if (to - from == 1) {
+                return leaves[from];
+            }
+            int k = split(to - from);
+            byte[] left = subtreeHash(hasher, from, from + k);
+            byte[] right = subtreeHash(hasher, from + k, to);
+            return nodeHash(hasher, left, right);
+        }
+    }
+}
@@ -0,0 +1,199 @@
+package uk.ac.nottingham.cryptography.hashing;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/***
+ * High throughput compression. The message schedule is computed on the fly in a rolling window of 16
+ * words, and the rounds are unrolled so that the register rotation becomes renaming. Everything lives
+ * in locals, which leaves the JIT free to keep the working state in registers. Stateless, so a single
+ * instance is shared.
+ */
+final class UnrolledEngine implements CompressionEngine {
+    static final UnrolledEngine INSTANCE = new UnrolledEngine();
+
+    private static final VarHandle INT_BE = MethodHandles.byteArrayViewVarHandle(int[].class, ByteOrder.BIG_ENDIAN);
+
+    private UnrolledEngine() {
+
+    }
+
+    @Override
+    public void compress(int[] state, byte[] block, int offset) {
+        compress(state,
+                (int) INT_BE.get(block, offset), (int) INT_BE.get(block, offset + 4),
+                (int) INT_BE.get(block, offset + 8), (int) INT_BE.get(block, offset + 12),
+                (int) INT_BE.get(block, offset + 16), (int) INT_BE.get(block, offset + 20),
+                (int) INT_BE.get(block, offset + 24), (int) INT_BE.get(block, offset + 28),
+                (int) INT_BE.get(block, offset + 32), (int) INT_BE.get(block, offset + 36),
+                (int) INT_BE.get(block, offset + 40), (int) INT_BE.get(block, offset + 44),
+                (int) INT_BE.get(block, offset + 48), (int) INT_BE.get(block, offset + 52),
+                (int) INT_BE.get(block, offset + 56), (int) INT_BE.get(block, offset + 60));
+    }
+
+    @Override
+    public void compress(int[] state, ByteBuffer block, int offset) {
+        compress(state,
+                block.getInt(offset), block.getInt(offset + 4), block.getInt(offset + 8), block.getInt(offset + 12),
+                block.getInt(offset + 16), block.getInt(offset + 20), block.getInt(offset + 24), block.getInt(offset + 28),
+                block.getInt(offset + 32), block.getInt(offset + 36), block.getInt(offset + 40), block.getInt(offset + 44),
+                block.getInt(offset + 48), block.getInt(offset + 52), block.getInt(offset + 56), block.getInt(offset + 60));
+    }
+
+    // Each round is written as h += t1; d += h; h += t2, after which h holds the new a and d the new e.
+    // The next round uses the same variables, each shifted one place along, so after eight rounds the
+    // names line up again. The sigma, ch and maj functions are written out in full rather than called,
+    // as 64 rounds of small method calls exhaust C2's inlining budget for a single method. For the same
+    // reason only the first 16 rounds are fully unrolled, and the remaining 48 run as three passes of
+    // a 16 round body that updates the schedule window in place.
+    static void compress(int[] state, int w0, int w1, int w2, int w3, int w4, int w5, int w6, int w7,
+                         int w8, int w9, int w10, int w11, int w12, int w13, int w14, int w15) {
+        int a = state[0], b = state[1], c = state[2], d = state[3], e = state[4],
+                f = state[5], g = state[6], h = state[7];
+
+        // Rounds 0 to 15 use the message words directly
+        h += (Integer.rotateRight(e, 6) ^ Integer.rotateRight(e, 11) ^ Integer.rotateRight(e, 25)) + ((e & f) ^ (~e & g)) + 0x428a2f98 + w0;
+        d += h;
+        h += (Integer.rotateRight(a, 2) ^ Integer.rotateRight(a, 13) ^ Integer.rotateRight(a, 22)) + ((a & b) ^ (a & c) ^ (b & c));
+        g += (Integer.rotateRight(d, 6) ^ Integer.rotateRight(d, 11) ^ Integer.rotateRight(d, 25)) + ((d & e) ^ (~d & f)) + 0x71374491 + w1;
+        c += g;
+        g += (Integer.rotateRight(h, 2) ^ Integer.rotateRight(h, 13) ^ Integer.rotateRight(h, 22)) + ((h & a) ^ (h & b) ^ (a & b));
+        f += (Integer.rotateRight(c, 6) ^ Integer.rotateRight(c, 11) ^ Integer.rotateRight(c, 25)) + ((c & d) ^ (~c & e)) + 0xb5c0fbcf + w2;
+        b += f;
+        f += (Integer.rotateRight(g, 2) ^ Integer.rotateRight(g, 13) ^ Integer.rotateRight(g, 22)) + ((g & h) ^ (g & a) ^ (h & a));
+        e += (Integer.rotateRight(b, 6) ^ Integer.rotateRight(b, 11) ^ Integer.rotateRight(b, 25)) + ((b & c) ^ (~b & d)) + 0xe9b5dba5 + w3;
+        a += e;
+        e += (Integer.rotateRight(f, 2) ^ Integer.rotateRight(f, 13) ^ Integer.rotateRight(f, 22)) + ((f & g) ^ (f & h) ^ (g & h));
+        d += (Integer.rotateRight(a, 6) ^ Integer.rotateRight(a, 11) ^ Integer.rotateRight(a, 25)) + ((a & b) ^ (~a & c)) + 0x3956c25b + w4;
+        h += d;
+        d += (Integer.rotateRight(e, 2) ^ Integer.rotateRight(e, 13) ^ Integer.rotateRight(e, 22)) + ((e & f) ^ (e & g) ^ (f & g));
+        c += (Integer.rotateRight(h, 6) ^ Integer.rotateRight(h, 11) ^ Integer.rotateRight(h, 25)) + ((h & a) ^ (~h & b)) + 0x59f111f1 + w5;
+        g += c;
+        c += (Integer.rotateRight(d, 2) ^ Integer.rotateRight(d, 13) ^ Integer.rotateRight(d, 22)) + ((d & e) ^ (d & f) ^ (e & f));
+        b += (Integer.rotateRight(g, 6) ^ Integer.rotateRight(g, 11) ^ Integer.rotateRight(g, 25)) + ((g & h) ^ (~g & a)) + 0x923f82a4 + w6;
+        f += b;
+        b += (Integer.rotateRight(c, 2) ^ Integer.rotateRight(c, 13) ^ Integer.rotateRight(c, 22)) + ((c & d) ^ (c & e) ^ (d & e));
+        a += (Integer.rotateRight(f, 6) ^ Integer.rotateRight(f, 11) ^ Integer.rotateRight(f, 25)) + ((f & g) ^ (~f & h)) + 0xab1c5ed5 + w7;
+        e += a;
+        a += (Integer.rotateRight(b, 2) ^ Integer.rotateRight(b, 13) ^ Integer.rotateRight(b, 22)) + ((b & c) ^ (b & d) ^ (c & d));
+        h += (Integer.rotateRight(e, 6) ^ Integer.rotateRight(e, 11) ^ Integer.rotateRight(e, 25)) + ((e & f) ^ (~e & g)) + 0xd807aa98 + w8;
+        d += h;
+        h += (Integer.rotateRight(a, 2) ^ Integer.rotateRight(a, 13) ^ Integer.rotateRight(a, 22)) + ((a & b) ^ (a & c) ^ (b & c));
+        g += (Integer.rotateRight(d, 6) ^ Integer.rotateRight(d, 11) ^ Integer.rotateRight(d, 25)) + ((d & e) ^ (~d & f)) + 0x12835b01 + w9;
+        c += g;
+        g += (Integer.rotateRight(h, 2) ^ Integer.rotateRight(h, 13) ^ Integer.rotateRight(h, 22)) + ((h & a) ^ (h & b) ^ (a & b));
+        f += (Integer.rotateRight(c, 6) ^ Integer.rotateRight(c, 11) ^ Integer.rotateRight(c, 25)) + ((c & d) ^ (~c & e)) + 0x243185be + w10;
+        b += f;
+        f += (Integer.rotateRight(g, 2) ^ Integer.rotateRight(g, 13) ^ Integer.rotateRight(g, 22)) + ((g & h) ^ (g & a) ^ (h & a));
+        e += (Integer.rotateRight(b, 6) ^ Integer.rotateRight(b, 11) ^ Integer.rotateRight(b, 25)) + ((b & c) ^ (~b & d)) + 0x550c7dc3 + w11;
+        a += e;
+        e += (Integer.rotateRight(f, 2) ^ Integer.rotateRight(f, 13) ^ Integer.rotateRight(f, 22)) + ((f & g) ^ (f & h) ^ (g & h));
+        d += (Integer.rotateRight(a, 6) ^ Integer.rotateRight(a, 11) ^ Integer.rotateRight(a, 25)) + ((a & b) ^ (~a & c)) + 0x72be5d74 + w12;
+        h += d;
+        d += (Integer.rotateRight(e, 2) ^ Integer.rotateRight(e, 13) ^ Integer.rotateRight(e, 22)) + ((e & f) ^ (e & g) ^ (f & g));
+        c += (Integer.rotateRight(h, 6) ^ Integer.rotateRight(h, 11) ^ Integer.rotateRight(h, 25)) + ((h & a) ^ (~h & b)) + 0x80deb1fe + w13;
+        g += c;
+        c += (Integer.rotateRight(d, 2) ^ Integer.rotateRight(d, 13) ^ Integer.rotateRight(d, 22)) + ((d & e) ^ (d & f) ^ (e & f));
+        b += (Integer.rotateRight(g, 6) ^ Integer.rotateRight(g, 11) ^ Integer.rotateRight(g, 25)) + ((g & h) ^ (~g & a)) + 0x9bdc06a7 + w14;
+        f += b;
+        b += (Integer.rotateRight(c, 2) ^ Integer.rotateRight(c, 13) ^ Integer.rotateRight(c, 22)) + ((c & d) ^ (c & e) ^ (d & e));
+        a += (Integer.rotateRight(f, 6) ^ Integer.rotateRight(f, 11) ^ Integer.rotateRight(f, 25)) + ((f & g) ^ (~f & h)) + 0xc19bf174 + w15;
+        e += a;
+        a += (Integer.rotateRight(b, 2) ^ Integer.rotateRight(b, 13) ^ Integer.rotateRight(b, 22)) + ((b & c) ^ (b & d) ^ (c & d));
+
+        // Rounds 16 to 63, with w[t] replacing w[t - 16] in the window
+        for (int j = 16; j < 64; j += 16) {
+            w0 += (Integer.rotateRight(w14, 17) ^ Integer.rotateRight(w14, 19) ^ (w14 >>> 10)) + w9
+                    + (Integer.rotateRight(w1, 7) ^ Integer.rotateRight(w1, 18) ^ (w1 >>> 3));
+            h += (Integer.rotateRight(e, 6) ^ Integer.rotateRight(e, 11) ^ Integer.rotateRight(e, 25)) + ((e & f) ^ (~e & g)) + SHA256.K[j] + w0;
+            d += h;
+            h += (Integer.rotateRight(a, 2) ^ Integer.rotateRight(a, 13) ^ Integer.rotateRight(a, 22)) + ((a & b) ^ (a & c) ^ (b & c));
+            w1 += (Integer.rotateRight(w15, 17) ^ Integer.rotateRight(w15, 19) ^ (w15 >>> 10)) + w10
+                    + (Integer.rotateRight(w2, 7) ^ Integer.rotateRight(w2, 18) ^ (w2 >>> 3));
+            g += (Integer.rotateRight(d, 6) ^ Integer.rotateRight(d, 11) ^ Integer.rotateRight(d, 25)) + ((d & e) ^ (~d & f)) + SHA256.K[j + 1] + w1;
+            c += g;
+            g += (Integer.rotateRight(h, 2) ^ Integer.rotateRight(h, 13) ^ Integer.rotateRight(h, 22)) + ((h & a) ^ (h & b) ^ (a & b));
+            w2 += (Integer.rotateRight(w0, 17) ^ Integer.rotateRight(w0, 19) ^ (w0 >>> 10)) + w11
+                    + (Integer.rotateRight(w3, 7) ^ Integer.rotateRight(w3, 18) ^ (w3 >>> 3));
+            f += (Integer.rotateRight(c, 6) ^ Integer.rotateRight(c, 11) ^ Integer.rotateRight(c, 25)) + ((c & d) ^ (~c & e)) + SHA256.K[j + 2] + w2;
+            b += f;
+            f += (Integer.rotateRight(g, 2) ^ Integer.rotateRight(g, 13) ^ Integer.rotateRight(g, 22)) + ((g & h) ^ (g & a) ^ (h & a));
+            w3 += (Integer.rotateRight(w1, 17) ^ Integer.rotateRight(w1, 19) ^ (w1 >>> 10)) + w12
+                    + (Integer.rotateRight(w4, 7) ^ Integer.rotateRight(w4, 18) ^ (w4 >>> 3));
+            e += (Integer.rotateRight(b, 6) ^ Integer.rotateRight(b, 11) ^ Integer.rotateRight(b, 25)) + ((b & c) ^ (~b & d)) + SHA256.K[j + 3] + w3;
+            a += e;
+            e += (Integer.rotateRight(f, 2) ^ Integer.rotateRight(f, 13) ^ Integer.rotateRight(f, 22)) + ((f & g) ^ (f & h) ^ (g & h));
+            w4 += (Integer.rotateRight(w2, 17) ^ Integer.rotateRight(w2, 19) ^ (w2 >>> 10)) + w13
+                    + (Integer.rotateRight(w5, 7) ^ Integer.rotateRight(w5, 18) ^ (w5 >>> 3));
+            d += (Integer.rotateRight(a, 6) ^ Integer.rotateRight(a, 11) ^ Integer.rotateRight(a, 25)) + ((a & b) ^ (~a & c)) + SHA256.K[j + 4] + w4;
+            h += d;
+            d += (Integer.rotateRight(e, 2) ^ Integer.rotateRight(e, 13) ^ Integer.rotateRight(e, 22)) + ((e & f) ^ (e & g) ^ (f & g));
+            w5 += (Integer.rotateRight(w3, 17) ^ Integer.rotateRight(w3, 19) ^ (w3 >>> 10)) + w14
+                    + (Integer.rotateRight(w6, 7) ^ Integer.rotateRight(w6, 18) ^ (w6 >>> 3));
+            c += (Integer.rotateRight(h, 6) ^ Integer.rotateRight(h, 11) ^ Integer.rotateRight(h, 25)) + ((h & a) ^ (~h & b)) + SHA256.K[j + 5] + w5;
+            g += c;
+            c += (Integer.rotateRight(d, 2) ^ Integer.rotateRight(d, 13) ^ Integer.rotateRight(d, 22)) + ((d & e) ^ (d & f) ^ (e & f));
+            w6 += (Integer.rotateRight(w4, 17) ^ Integer.rotateRight(w4, 19) ^ (w4 >>> 10)) + w15
+                    + (Integer.rotateRight(w7, 7) ^ Integer.rotateRight(w7, 18) ^ (w7 >>> 3));
+            b += (Integer.rotateRight(g, 6) ^ Integer.rotateRight(g, 11) ^ Integer.rotateRight(g, 25)) + ((g & h) ^ (~g & a)) + SHA256.K[j + 6] + w6;
+            f += b;
+            b += (Integer.rotateRight(c, 2) ^ Integer.rotateRight(c, 13) ^ Integer.rotateRight(c, 22)) + ((c & d) ^ (c & e) ^ (d & e));
+            w7 += (Integer.rotateRight(w5, 17) ^ Integer.rotateRight(w5, 19) ^ (w5 >>> 10)) + w0
+                    + (Integer.rotateRight(w8, 7) ^ Integer.rotateRight(w8, 18) ^ (w8 >>> 3));
+            a += (Integer.rotateRight(f, 6) ^ Integer.rotateRight(f, 11) ^ Integer.rotateRight(f, 25)) + ((f & g) ^ (~f & h)) + SHA256.K[j + 7] + w7;
+            e += a;
+            a += (Integer.rotateRight(b, 2) ^ Integer.rotateRight(b, 13) ^ Integer.rotateRight(b, 22)) + ((b & c) ^ (b & d) ^ (c & d));
+            w8 += (Integer.rotateRight(w6, 17) ^ Integer.rotateRight(w6, 19) ^ (w6 >>> 10)) + w1
+                    + (Integer.rotateRight(w9, 7) ^ Integer.rotateRight(w9, 18) ^ (w9 >>> 3));
+            h += (Integer.rotateRight(e, 6) ^ Integer.rotateRight(e, 11) ^ Integer.rotateRight(e, 25)) + ((e & f) ^ (~e & g)) + SHA256.K[j + 8] + w8;
+            d += h;
+            h += (Integer.rotateRight(a, 2) ^ Integer.rotateRight(a, 13) ^ Integer.rotateRight(a, 22)) + ((a & b) ^ (a & c) ^ (b & c));
+            w9 += (Integer.rotateRight(w7, 17) ^ Integer.rotateRight(w7, 19) ^ (w7 >>> 10)) + w2
+                    + (Integer.rotateRight(w10, 7) ^ Integer.rotateRight(w10, 18) ^ (w10 >>> 3));
+            g += (Integer.rotateRight(d, 6) ^ Integer.rotateRight(d, 11) ^ Integer.rotateRight(d, 25)) + ((d & e) ^ (~d & f)) + SHA256.K[j + 9] + w9;
+            c += g;
+            g += (Integer.rotateRight(h, 2) ^ Integer.rotateRight(h, 13) ^ Integer.rotateRight(h, 22)) + ((h & a) ^ (h & b) ^ (a & b));
+            w10 += (Integer.rotateRight(w8, 17) ^ Integer.rotateRight(w8, 19) ^ (w8 >>> 10)) + w3
+                    + (Integer.rotateRight(w11, 7) ^ Integer.rotateRight(w11, 18) ^ (w11 >>> 3));
+            f += (Integer.rotateRight(c, 6) ^ Integer.rotateRight(c, 11) ^ Integer.rotateRight(c, 25)) + ((c & d) ^ (~c & e)) + SHA256.K[j + 10] + w10;
+            b += f;
+            f += (Integer.rotateRight(g, 2) ^ Integer.rotateRight(g, 13) ^ Integer.rotateRight(g, 22)) + ((g & h) ^ (g & a) ^ (h & a));
+            w11 += (Integer.rotateRight(w9, 17) ^ Integer.rotateRight(w9, 19) ^ (w9 >>> 10)) + w4
+                    + (Integer.rotateRight(w12, 7) ^ Integer.rotateRight(w12, 18) ^ (w12 >>> 3));
+            e += (Integer.rotateRight(b, 6) ^ Integer.rotateRight(b, 11) ^ Integer.rotateRight(b, 25)) + ((b & c) ^ (~b & d)) + SHA256.K[j + 11] + w11;
+            a += e;
+            e += (Integer.rotateRight(f, 2) ^ Integer.rotateRight(f, 13) ^ Integer.rotateRight(f, 22)) + ((f & g) ^ (f & h) ^ (g & h));
+            w12 += (Integer.rotateRight(w10, 17) ^ Integer.rotateRight(w10, 19) ^ (w10 >>> 10)) + w5
+                    + (Integer.rotateRight(w13, 7) ^ Integer.rotateRight(w13, 18) ^ (w13 >>> 3));
+            d += (Integer.rotateRight(a, 6) ^ Integer.rotateRight(a, 11) ^ Integer.rotateRight(a, 25)) + ((a & b) ^ (~a & c)) + SHA256.K[j + 12] + w12;
+            h += d;
+            d += (Integer.rotateRight(e, 2) ^ Integer.rotateRight(e, 13) ^ Integer.rotateRight(e, 22)) + ((e & f) ^ (e & g) ^ (f & g));
+            w13 += (Integer.rotateRight(w11, 17) ^ Integer.rotateRight(w11, 19) ^ (w11 >>> 10)) + w6
+                    + (Integer.rotateRight(w14, 7) ^ Integer.rotateRight(w14, 18) ^ (w14 >>> 3));
+            c += (Integer.rotateRight(h, 6) ^ Integer.rotateRight(h, 11) ^ Integer.rotateRight(h, 25)) + ((h & a) ^ (~h & b)) + SHA256.K[j + 13] + w13;
+            g += c;
+            c += (Integer.rotateRight(d, 2) ^ Integer.rotateRight(d, 13) ^ Integer.rotateRight(d, 22)) + ((d & e) ^ (d & f) ^ (e & f));
+            w14 += (Integer.rotateRight(w12, 17) ^ Integer.rotateRight(w12, 19) ^ (w12 >>> 10)) + w7
+                    + (Integer.rotateRight(w15, 7) ^ Integer.rotateRight(w15, 18) ^ (w15 >>> 3));
+            b += (Integer.rotateRight(g, 6) ^ Integer.rotateRight(g, 11) ^ Integer.rotateRight(g, 25)) + ((g & h) ^ (~g & a)) + SHA256.K[j + 14] + w14;
+            f += b;
+            b += (Integer.rotateRight(c, 2) ^ Integer.rotateRight(c, 13) ^ Integer.rotateRight(c, 22)) + ((c & d) ^ (c & e) ^ (d & e));
+            w15 += (Integer.rotateRight(w13, 17) ^ Integer.rotateRight(w13, 19) ^ (w13 >>> 10)) + w8
+                    + (Integer.rotateRight(w0, 7) ^ Integer.rotateRight(w0, 18) ^ (w0 >>> 3));
+            a += (Integer.rotateRight(f, 6) ^ Integer.rotateRight(f, 11) ^ Integer.rotateRight(f, 25)) + ((f & g) ^ (~f & h)) + SHA256.K[j + 15] + w15;
+            e += a;
+            a += (Integer.rotateRight(b, 2) ^ Integer.rotateRight(b, 13) ^ Integer.rotateRight(b, 22)) + ((b & c) ^ (b & d) ^ (c & d));
+        }
+
+        state[0] += a;
+        state[1] += b;
+        state[2] += c;
+        state[3] += d;
+        state[4] += e;
+        state[5] += f;
+        state[6] += g;
+        state[7] += h;
+    }
+}
@@ -0,0 +1,171 @@
+package uk.ac.nottingham.cryptography.hashing;
+
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+
+/***
+ * Multi-buffer SHA-256. Each lane of an IntVector holds the state of a different message, so 4, 8 or
+ * 16 messages (depending on the species) are compressed together. Messages of different lengths need
+ * different numbers of blocks, so lanes whose message has already finished are masked out of the
+ * state update. Padding is applied per lane as the blocks are loaded.
+ *
+ * Only loaded when the jdk.incubator.vector module is present, see SHA256.digestBatch.
+ */
+final class VectorBatchHasher implements BatchHasher {
+    private static final VarHandle INT_BE = MethodHandles.byteArrayViewVarHandle(int[].class, ByteOrder.BIG_ENDIAN);
+
+    private final VectorSpecies<Integer> species;
+
+    VectorBatchHasher() {
+        this(IntVector.SPECIES_PREFERRED);
+    }
+
+    VectorBatchHasher(VectorSpecies<Integer> species) {
+        this.species = species;
+    }
+
+    int lanes() {
+        return species.length();
+    }
+
+    @Override
+    public void digest(byte[][] messages, byte[][] out) {
+        int lanes = species.length();
+        int[] words = new int[64 * lanes];
+        int[] blockCounts = new int[lanes];
+        boolean[] active = new boolean[lanes];
+        int[] state = new int[8 * lanes];
+
+        for (int first = 0; first < messages.length; first += lanes) {
+            int count = Math.min(lanes, messages.length - first);
+            int maxBlocks = 0;
+            for (int lane = 0; lane < lanes; lane++) {
+                blockCounts[lane] = lane < count ? blockCount(messages[first + lane].length) : 0;
+                maxBlocks = Math.max(maxBlocks, blockCounts[lane]);
+            }
+
+            for (int i = 0; i < 8; i++) {
+                IntVector.broadcast(species, SHA256.H0[i]).intoArray(state, i * lanes);
+            }
+
+            for (int block = 0; block < maxBlocks; block++) {
+                for (int lane = 0; lane < lanes; lane++) {
+                    active[lane] = block < blockCounts[lane];
+                    if (active[lane]) {
+                        byte[] message = messages[first + lane];
+                        boolean last = block == blockCounts[lane] - 1;
+                        for (int w = 0; w < 16; w++) {
+                            words[w * lanes + lane] = paddedWord(message, block, w, last);
+                        }
+                    }
+                }
+                expandWords(words);
+                compress(state, words, VectorMask.fromArray(species, active, 0));
+            }
+
+            for (int lane = 0; lane < count; lane++) {
+                byte[] digest = out[first + lane];
+                for (int i = 0; i < 8; i++) {
+                    INT_BE.set(digest, i * 4, state[i * lanes + lane]);
+                }
+            }
+        }
+    }
+
+    // Message schedule for all lanes at once, word t of every lane is stored at t * lanes
+    private void expandWords(int[] words) {
+        int lanes = species.length();
+        for (int t = 16; t < 64; t++) {
+            IntVector im15 = IntVector.fromArray(species, words, (t - 15) * lanes);
+            IntVector im2 = IntVector.fromArray(species, words, (t - 2) * lanes);
+            IntVector s0 = im15.lanewise(VectorOperators.ROR, 7)
+                    .lanewise(VectorOperators.XOR, im15.lanewise(VectorOperators.ROR, 18))
+                    .lanewise(VectorOperators.XOR, im15.lanewise(VectorOperators.LSHR, 3));
+            IntVector s1 = im2.lanewise(VectorOperators.ROR, 17)
+                    .lanewise(VectorOperators.XOR, im2.lanewise(VectorOperators.ROR, 19))
+                    .lanewise(VectorOperators.XOR, im2.lanewise(VectorOperators.LSHR, 10));
+            IntVector.fromArray(species, words, (t - 16) * lanes)
+                    .add(s0)
+                    .add(IntVector.fromArray(species, words, (t - 7) * lanes))
+                    .add(s1)
+                    .intoArray(words, t * lanes);
+        }
+    }
+
+    // Same rounds as SHA256.compressionFunction, one lane per message. State word i of every lane
+    // is stored at i * lanes
+    private void compress(int[] state, int[] words, VectorMask<Integer> active) {
+        int lanes = species.length();
+        IntVector a = IntVector.fromArray(species, state, 0);
+        IntVector b = IntVector.fromArray(species, state, lanes);
+        IntVector c = IntVector.fromArray(species, state, 2 * lanes);
+        IntVector d = IntVector.fromArray(species, state, 3 * lanes);
+        IntVector e = IntVector.fromArray(species, state, 4 * lanes);
+        IntVector f = IntVector.fromArray(species, state, 5 * lanes);
+        IntVector g = IntVector.fromArray(species, state, 6 * lanes);
+        IntVector h = IntVector.fromArray(species, state, 7 * lanes);
+
+        for (int i = 0; i < 64; i++) {
+            IntVector s0 = a.lanewise(VectorOperators.ROR, 2)
+                    .lanewise(VectorOperators.XOR, a.lanewise(VectorOperators.ROR, 13))
+                    .lanewise(VectorOperators.XOR, a.lanewise(VectorOperators.ROR, 22));
+            IntVector s1 = e.lanewise(VectorOperators.ROR, 6)
+                    .lanewise(VectorOperators.XOR, e.lanewise(VectorOperators.ROR, 11))
+                    .lanewise(VectorOperators.XOR, e.lanewise(VectorOperators.ROR, 25));
+            IntVector ch = e.and(f).lanewise(VectorOperators.XOR, e.not().and(g));
+            IntVector ma = a.and(b).lanewise(VectorOperators.XOR, a.and(c))
+                    .lanewise(VectorOperators.XOR, b.and(c));
+            IntVector hprime1 = h.add(IntVector.fromArray(species, words, i * lanes))
+                    .add(SHA256.K[i]).add(ch).add(s1);
+            IntVector hprime2 = ma.add(s0);
+            h = g;
+            g = f;
+            f = e;
+            e = d.add(hprime1);
+            d = c;
+            c = b;
+            b = a;
+            a = hprime1.add(hprime2);
+        }
+
+        // Lanes whose message has no block at this index keep their state
+        IntVector.fromArray(species, state, 0).add(a, active).intoArray(state, 0);
+        IntVector.fromArray(species, state, lanes).add(b, active).intoArray(state, lanes);
+        IntVector.fromArray(species, state, 2 * lanes).add(c, active).intoArray(state, 2 * lanes);
+        IntVector.fromArray(species, state, 3 * lanes).add(d, active).intoArray(state, 3 * lanes);
+        IntVector.fromArray(species, state, 4 * lanes).add(e, active).intoArray(state, 4 * lanes);
+        IntVector.fromArray(species, state, 5 * lanes).add(f, active).intoArray(state, 5 * lanes);
+        IntVector.fromArray(species, state, 6 * lanes).add(g, active).intoArray(state, 6 * lanes);
+        IntVector.fromArray(species, state, 7 * lanes).add(h, active).intoArray(state, 7 * lanes);
+    }
+
+    // Number of 64 byte blocks once the 0x80 byte and 8 byte length are added
+    static int blockCount(int length) {
+        return (length + 9 + 63) / 64;
+    }
+
+    // Word w of the given block of the padded message
+    static int paddedWord(byte[] message, int block, int w, boolean lastBlock) {
+        int position = block * 64 + w * 4;
+        if (position + 4 <= message.length) {
+            return (int) INT_BE.get(message, position);
+        }
+        if (lastBlock && w >= 14) {
+            long bitLength = (long) message.length * 8;
+            return w == 14 ? (int) (bitLength >>> 32) : (int) bitLength;
+        }
+        int word = 0;
+        for (int i = 0; i < 4; i++) {
+            int p = position + i;
+            int value = p < message.length ? message[p] & 0xFF : (p == message.length ? 0x80 : 0);
+            word = (word << 8) | value;
+        }
+        return word;
+    }
+}
@@ -0,0 +1,38 @@
+package uk.ac.nottingham.cryptography.pipeline;
+
+import uk.ac.nottingham.cryptography.banking.VerificationResult;
+
+/***
+ * One message<TAB>hexToken line of a transaction log, as it moves through the pipeline
+ */
+public class LogRecord {
+    private final long lineNumber;
+    private final byte[] message;
+    private final byte[] hexToken;
+    byte[] token;
+    VerificationResult result;
+
+    LogRecord(long lineNumber, byte[] message, byte[] hexToken) {
+        this.lineNumber = lineNumber;
+        this.message = message;
+        this.hexToken = hexToken;
+    }
+
+    // Line numbers start from 1
+    public long getLineNumber() {
+        return lineNumber;
+    }
+
+    public byte[] getMessage() {
+        return message;
+    }
+
+    // Null when the line had no tab separator
+    byte[] getHexToken() {
+        return hexToken;
+    }
+
+    public VerificationResult getResult() {
+        return result;
+    }
+}
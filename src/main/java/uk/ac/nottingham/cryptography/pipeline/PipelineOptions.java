@@ -0,0 +1,123 @@
+package uk.ac.nottingham.cryptography.pipeline;
+
+import java.time.Duration;
+import java.util.function.Consumer;
+
+/***
+ * Settings for a VerificationPipeline. Setters return this so options can be chained
+ */
+public class PipelineOptions {
+    private int decodeThreads = 1;
+    private int verifyThreads = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+    private int parseThreads = 1;
+    private int queueCapacity = 64;
+    private int batchSize = 1024;
+    private int chunkSize = 1 << 20;
+    private boolean ordered = true;
+    private int maxInFlightBatches;
+    private Duration progressInterval;
+    private Consumer<PipelineStats> progressListener;
+
+    public PipelineOptions decodeThreads(int threads) {
+        this.decodeThreads = positive(threads, "decodeThreads");
+        return this;
+    }
+
+    public PipelineOptions verifyThreads(int threads) {
+        this.verifyThreads = positive(threads, "verifyThreads");
+        return this;
+    }
+
+    public PipelineOptions parseThreads(int threads) {
+        this.parseThreads = positive(threads, "parseThreads");
+        return this;
+    }
+
+    // Maximum number of batches waiting between any two stages
+    public PipelineOptions queueCapacity(int batches) {
+        this.queueCapacity = positive(batches, "queueCapacity");
+        return this;
+    }
+
+    // Number of records passed between stages at a time
+    public PipelineOptions batchSize(int records) {
+        this.batchSize = positive(records, "batchSize");
+        return this;
+    }
+
+    // Size of each FileChannel read, which is also the longest line that can be handled
+    public PipelineOptions chunkSize(int bytes) {
+        this.chunkSize = positive(bytes, "chunkSize");
+        return this;
+    }
+
+    // Ordered pipelines deliver records to the sink in file order, unordered ones as they complete
+    public PipelineOptions ordered(boolean ordered) {
+        this.ordered = ordered;
+        return this;
+    }
+
+    // Maximum number of batches read but not yet delivered to the sink, including those an ordered pipeline holds
+    // back behind a slow batch. Defaults to enough to fill every queue and keep every worker busy
+    public PipelineOptions maxInFlightBatches(int batches) {
+        this.maxInFlightBatches = positive(batches, "maxInFlightBatches");
+        return this;
+    }
+
+    // Receives a stats snapshot every interval while the pipeline runs
+    public PipelineOptions progress(Duration interval, Consumer<PipelineStats> listener) {
+        this.progressInterval = interval;
+        this.progressListener = listener;
+        return this;
+    }
+
+    int getDecodeThreads() {
+        return decodeThreads;
+    }
+
+    int getVerifyThreads() {
+        return verifyThreads;
+    }
+
+    int getParseThreads() {
+        return parseThreads;
+    }
+
+    int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    int getBatchSize() {
+        return batchSize;
+    }
+
+    int getChunkSize() {
+        return chunkSize;
+    }
+
+    boolean isOrdered() {
+        return ordered;
+    }
+
+    int getMaxInFlightBatches() {
+        if (maxInFlightBatches > 0) {
+            return maxInFlightBatches;
+        }
+        return 4 * queueCapacity + decodeThreads + verifyThreads + parseThreads;
+    }
+
+    Duration getProgressInterval() {
+        return progressInterval;
+    }
+
+    Consumer<PipelineStats> getProgressListener() {
+        return progressListener;
+    }
+
+    private static int positive(int value, String name) {
+        if (value <= 0) {
+            throw new IllegalArgumentException(name + " must be positive, got " + value);
+        }
+        return value;
+    }
+}
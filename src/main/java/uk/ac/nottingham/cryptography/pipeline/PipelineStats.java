@@ -0,0 +1,137 @@
+package uk.ac.nottingham.cryptography.pipeline;
+
+import uk.ac.nottingham.cryptography.banking.FailureReason;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/***
+ * Throughput and queue depth for a pipeline run. Counters can be read while the pipeline is running
+ */
+public class PipelineStats {
+    static final String[] QUEUE_NAMES = new String[] { "read", "decode", "verify", "parse" };
+
+    private final long startNanos = System.nanoTime();
+    private volatile long endNanos;
+    private final AtomicLong bytesRead = new AtomicLong();
+    private final AtomicLong records = new AtomicLong();
+    private final AtomicLong valid = new AtomicLong();
+    private final AtomicLongArray failures = new AtomicLongArray(FailureReason.values().length);
+
+    // Queue depth samples, index i is the queue after stage QUEUE_NAMES[i]
+    private final AtomicLongArray currentDepth = new AtomicLongArray(QUEUE_NAMES.length);
+    private final AtomicLongArray maxDepth = new AtomicLongArray(QUEUE_NAMES.length);
+    private final AtomicLongArray depthTotal = new AtomicLongArray(QUEUE_NAMES.length);
+    private final AtomicLong depthSamples = new AtomicLong();
+
+    void addBytesRead(long bytes) {
+        bytesRead.addAndGet(bytes);
+    }
+
+    void recordResult(LogRecord record) {
+        records.incrementAndGet();
+        if (record.result.isValid()) {
+            valid.incrementAndGet();
+        } else {
+            failures.incrementAndGet(record.result.getFailureReason().ordinal());
+        }
+    }
+
+    void sampleQueues(BlockingQueue<?>[] queues) {
+        for (int i = 0; i < queues.length; i++) {
+            int depth = queues[i].size();
+            currentDepth.set(i, depth);
+            depthTotal.addAndGet(i, depth);
+            if (depth > maxDepth.get(i)) {
+                maxDepth.set(i, depth);
+            }
+        }
+        depthSamples.incrementAndGet();
+    }
+
+    void finish() {
+        endNanos = System.nanoTime();
+    }
+
+    public long getBytesRead() {
+        return bytesRead.get();
+    }
+
+    public long getRecords() {
+        return records.get();
+    }
+
+    public long getValid() {
+        return valid.get();
+    }
+
+    public long getFailures(FailureReason reason) {
+        return failures.get(reason.ordinal());
+    }
+
+    public Map<FailureReason, Long> getFailures() {
+        Map<FailureReason, Long> result = new EnumMap<>(FailureReason.class);
+        for (FailureReason reason : FailureReason.values()) {
+            result.put(reason, failures.get(reason.ordinal()));
+        }
+        return result;
+    }
+
+    public long getElapsedNanos() {
+        long end = endNanos;
+        return (end == 0 ? System.nanoTime() : end) - startNanos;
+    }
+
+    public double getRecordsPerSecond() {
+        return getRecords() * 1e9 / Math.max(1, getElapsedNanos());
+    }
+
+    public double getMegabytesPerSecond() {
+        return getBytesRead() * 1e3 / Math.max(1, getElapsedNanos());
+    }
+
+    // Queue depths in batches, for the queue after the named stage
+    public long getQueueDepth(String stage) {
+        return currentDepth.get(queueIndex(stage));
+    }
+
+    public long getMaxQueueDepth(String stage) {
+        return maxDepth.get(queueIndex(stage));
+    }
+
+    public double getAverageQueueDepth(String stage) {
+        long samples = depthSamples.get();
+        return samples == 0 ? 0 : (double) depthTotal.get(queueIndex(stage)) / samples;
+    }
+
+    private static int queueIndex(String stage) {
+        for (int i = 0; i < QUEUE_NAMES.length; i++) {
+            if (QUEUE_NAMES[i].equals(stage)) {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException("Unknown stage: " + stage);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("%d records (%d valid) in %.2fs, %.0f records/s, %.1f MB/s",
+                getRecords(), getValid(), getElapsedNanos() / 1e9, getRecordsPerSecond(), getMegabytesPerSecond()));
+        for (FailureReason reason : FailureReason.values()) {
+            long count = getFailures(reason);
+            if (count > 0) {
+                sb.append(String.format("%n  %s: %d", reason, count));
+            }
+        }
+        sb.append(String.format("%n  queue depth (now/avg/max):"));
+        for (String stage : QUEUE_NAMES) {
+            sb.append(String.format(" %s %d/%.1f/%d", stage, getQueueDepth(stage), getAverageQueueDepth(stage),
+                    getMaxQueueDepth(stage)));
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,9 @@
+package uk.ac.nottingham.cryptography.pipeline;
+
+/***
+ * Final stage of the pipeline. Called from a single thread, in file order if the pipeline is ordered
+ */
+@FunctionalInterface
+public interface RecordSink {
+    void accept(LogRecord record) throws Exception;
+}
@@ -0,0 +1,376 @@
+package uk.ac.nottingham.cryptography.pipeline;
+
+import uk.ac.nottingham.cryptography.banking.Bank;
+import uk.ac.nottingham.cryptography.banking.FailureReason;
+import uk.ac.nottingham.cryptography.banking.VerificationResult;
+import uk.ac.nottingham.cryptography.hashing.Sha256Hasher;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/***
+ * Streams a transaction log of message<TAB>hexToken lines through read, hex decode, token verification and
+ * transaction parsing stages. Stages run on their own threads and pass batches of records through bounded
+ * queues, so a slow stage holds back the reader rather than letting the file build up in memory. The reader
+ * also takes a permit for every batch, returned when the batch reaches the sink, so batches an ordered pipeline
+ * holds back behind a slow one are bounded too
+ */
+public class VerificationPipeline {
+    private static final int TOKEN_HEX_LENGTH = Sha256Hasher.DIGEST_LENGTH * 2;
+    private static final Batch END = new Batch(-1, 0);
+    private static final long POLL_MILLIS = 100;
+
+    private static final byte[] HEX_VALUES = new byte[128];
+    static {
+        Arrays.fill(HEX_VALUES, (byte) -1);
+        for (int i = 0; i < 10; i++) {
+            HEX_VALUES['0' + i] = (byte) i;
+        }
+        for (int i = 0; i < 6; i++) {
+            HEX_VALUES['a' + i] = (byte) (10 + i);
+            HEX_VALUES['A' + i] = (byte) (10 + i);
+        }
+    }
+
+    private final Bank bank;
+    private final PipelineOptions options;
+
+    public VerificationPipeline(Bank bank) {
+        this(bank, new PipelineOptions());
+    }
+
+    public VerificationPipeline(Bank bank, PipelineOptions options) {
+        this.bank = bank;
+        this.options = options;
+    }
+
+    public PipelineStats run(Path log, RecordSink sink) throws IOException, InterruptedException {
+        try (FileChannel channel = FileChannel.open(log, StandardOpenOption.READ)) {
+            return run(channel, sink);
+        }
+    }
+
+    // Runs the whole log through the pipeline, returning once every record has reached the sink.
+    // The first exception thrown by any stage (or by the sink) stops the pipeline and is rethrown here
+    public PipelineStats run(FileChannel channel, RecordSink sink) throws IOException, InterruptedException {
+        PipelineStats stats = new PipelineStats();
+        Run run = new Run();
+        BlockingQueue<Batch> read = new ArrayBlockingQueue<>(options.getQueueCapacity());
+        BlockingQueue<Batch> decoded = new ArrayBlockingQueue<>(options.getQueueCapacity());
+        BlockingQueue<Batch> verified = new ArrayBlockingQueue<>(options.getQueueCapacity());
+        BlockingQueue<Batch> parsed = new ArrayBlockingQueue<>(options.getQueueCapacity());
+        BlockingQueue<?>[] queues = new BlockingQueue<?>[] { read, decoded, verified, parsed };
+        Semaphore inFlight = new Semaphore(options.getMaxInFlightBatches());
+
+        run.start("pipeline-read", () -> read(channel, read, inFlight, options.getDecodeThreads(), stats));
+        startStage(run, "pipeline-decode", options.getDecodeThreads(), read, decoded,
+                options.getVerifyThreads(), this::decode);
+        startStage(run, "pipeline-verify", options.getVerifyThreads(), decoded, verified,
+                options.getParseThreads(), this::verify);
+        startStage(run, "pipeline-parse", options.getParseThreads(), verified, parsed, 1, this::parse);
+        run.start("pipeline-monitor", () -> monitor(queues, stats));
+
+        try {
+            drain(run, parsed, inFlight, sink, stats);
+        } catch (Exception e) {
+            run.fail(e);
+        } finally {
+            run.stop();
+            stats.finish();
+        }
+
+        Throwable failure = run.failure.get();
+        if (failure instanceof IOException) {
+            throw (IOException) failure;
+        } else if (failure instanceof InterruptedException) {
+            throw (InterruptedException) failure;
+        } else if (failure instanceof RuntimeException) {
+            throw (RuntimeException) failure;
+        } else if (failure instanceof Error) {
+            throw (Error) failure;
+        } else if (failure != null) {
+            throw new IOException("Verification pipeline failed", failure);
+        }
+        return stats;
+    }
+
+    // Splits the file into records, reusing one buffer and compacting any partial line to the front
+    private void read(FileChannel channel, BlockingQueue<Batch> out, Semaphore inFlight, int consumers,
+                      PipelineStats stats) throws IOException, InterruptedException {
+        ByteBuffer buffer = ByteBuffer.allocate(options.getChunkSize());
+        byte[] bytes = buffer.array();
+        long lineNumber = 0;
+        long sequence = 0;
+        Batch batch = new Batch(sequence++, options.getBatchSize());
+
+        while (true) {
+            int n = channel.read(buffer);
+            if (n > 0) {
+                stats.addBytesRead(n);
+            }
+            int limit = buffer.position();
+            int lineStart = 0;
+            for (int i = 0; i < limit; i++) {
+                if (bytes[i] == '\n') {
+                    lineNumber++;
+                    addRecord(batch, lineNumber, bytes, lineStart, i);
+                    lineStart = i + 1;
+                    if (batch.size == batch.records.length) {
+                        inFlight.acquire();
+                        out.put(batch);
+                        batch = new Batch(sequence++, options.getBatchSize());
+                    }
+                }
+            }
+
+            if (n == -1) {
+                if (lineStart < limit) {
+                    addRecord(batch, ++lineNumber, bytes, lineStart, limit);
+                }
+                break;
+            }
+
+            buffer.limit(limit).position(lineStart);
+            buffer.compact();
+            if (!buffer.hasRemaining()) {
+                throw new IOException("Line " + (lineNumber + 1) + " is longer than the "
+                        + options.getChunkSize() + " byte chunk size");
+            }
+        }
+
+        if (batch.size > 0) {
+            inFlight.acquire();
+            out.put(batch);
+        }
+        for (int i = 0; i < consumers; i++) {
+            out.put(END);
+        }
+    }
+
+    private static void addRecord(Batch batch, long lineNumber, byte[] bytes, int start, int end) {
+        if (end > start && bytes[end - 1] == '\r') {
+            end--;
+        }
+        if (end == start) {
+            return;
+        }
+
+        int tab = end - 1;
+        while (tab >= start && bytes[tab] != '\t') {
+            tab--;
+        }
+        LogRecord record;
+        if (tab < start) {
+            record = new LogRecord(lineNumber, Arrays.copyOfRange(bytes, start, end), null);
+        } else {
+            record = new LogRecord(lineNumber, Arrays.copyOfRange(bytes, start, tab),
+                    Arrays.copyOfRange(bytes, tab + 1, end));
+        }
+        batch.records[batch.size++] = record;
+    }
+
+    private void decode(LogRecord record) {
+        byte[] hex = record.getHexToken();
+        if (hex == null || hex.length != TOKEN_HEX_LENGTH) {
+            record.result = VerificationResult.failed(FailureReason.MALFORMED_RECORD);
+            return;
+        }
+
+        byte[] token = new byte[Sha256Hasher.DIGEST_LENGTH];
+        for (int i = 0; i < token.length; i++) {
+            int hi = hexValue(hex[2 * i]);
+            int lo = hexValue(hex[2 * i + 1]);
+            if ((hi | lo) < 0) {
+                record.result = VerificationResult.failed(FailureReason.MALFORMED_RECORD);
+                return;
+            }
+            token[i] = (byte) ((hi << 4) | lo);
+        }
+        record.token = token;
+    }
+
+    private static int hexValue(byte b) {
+        return b < 0 ? -1 : HEX_VALUES[b];
+    }
+
+    private void verify(LogRecord record) {
+        if (record.result != null) {
+            return;
+        }
+        FailureReason rejected = bank.screen(record.getMessage());
+        if (rejected != null) {
+            record.result = VerificationResult.failed(rejected);
+        } else if (!bank.isAuthentic(record.getMessage(), record.token)) {
+            record.result = VerificationResult.failed(FailureReason.INVALID_TOKEN);
+        }
+    }
+
+    private void parse(LogRecord record) {
+        if (record.result == null) {
+            record.result = bank.parseAuthentic(record.getMessage());
+        }
+    }
+
+    // Starts the workers for one stage. The last worker to see END passes one END on to each downstream worker
+    private static void startStage(Run run, String name, int threads, BlockingQueue<Batch> in,
+                                   BlockingQueue<Batch> out, int consumers, Stage stage) {
+        AtomicInteger remaining = new AtomicInteger(threads);
+        for (int t = 0; t < threads; t++) {
+            run.start(name + "-" + t, () -> {
+                while (true) {
+                    Batch batch = in.take();
+                    if (batch == END) {
+                        break;
+                    }
+                    for (int i = 0; i < batch.size; i++) {
+                        stage.process(batch.records[i]);
+                    }
+                    out.put(batch);
+                }
+                if (remaining.decrementAndGet() == 0) {
+                    for (int i = 0; i < consumers; i++) {
+                        out.put(END);
+                    }
+                }
+            });
+        }
+    }
+
+    // Runs on the calling thread. Ordered pipelines hold early batches back until the gap before them fills
+    private void drain(Run run, BlockingQueue<Batch> in, Semaphore inFlight, RecordSink sink, PipelineStats stats)
+            throws Exception {
+        Map<Long, Batch> pending = new HashMap<>();
+        long nextSequence = 0;
+
+        while (true) {
+            Batch batch = in.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+            if (batch == null) {
+                if (run.failure.get() != null) {
+                    return;
+                }
+                continue;
+            }
+            if (batch == END) {
+                break;
+            }
+
+            if (!options.isOrdered()) {
+                emit(batch, inFlight, sink, stats);
+                continue;
+            }
+            // At most maxInFlightBatches - 1 wait here, since the one they are waiting for holds a permit
+            if (batch.sequence != nextSequence) {
+                pending.put(batch.sequence, batch);
+                continue;
+            }
+            emit(batch, inFlight, sink, stats);
+            nextSequence++;
+            while ((batch = pending.remove(nextSequence)) != null) {
+                emit(batch, inFlight, sink, stats);
+                nextSequence++;
+            }
+        }
+
+        if (!pending.isEmpty()) {
+            throw new IllegalStateException(pending.size() + " batches were never released");
+        }
+    }
+
+    private static void emit(Batch batch, Semaphore inFlight, RecordSink sink, PipelineStats stats)
+            throws Exception {
+        inFlight.release();
+        for (int i = 0; i < batch.size; i++) {
+            LogRecord record = batch.records[i];
+            stats.recordResult(record);
+            sink.accept(record);
+        }
+    }
+
+    private void monitor(BlockingQueue<?>[] queues, PipelineStats stats) throws InterruptedException {
+        long sampleMillis = 10;
+        long progressMillis = options.getProgressInterval() == null ? 0 : options.getProgressInterval().toMillis();
+        long lastProgress = System.nanoTime();
+
+        while (true) {
+            Thread.sleep(sampleMillis);
+            stats.sampleQueues(queues);
+            if (progressMillis > 0 && System.nanoTime() - lastProgress >= progressMillis * 1_000_000) {
+                lastProgress = System.nanoTime();
+                options.getProgressListener().accept(stats);
+            }
+        }
+    }
+
+    @FunctionalInterface
+    private interface Stage {
+        void process(LogRecord record);
+    }
+
+    @FunctionalInterface
+    private interface Task {
+        void run() throws Exception;
+    }
+
+    private static final class Batch {
+        final long sequence;
+        final LogRecord[] records;
+        int size;
+
+        Batch(long sequence, int capacity) {
+            this.sequence = sequence;
+            this.records = new LogRecord[capacity];
+        }
+    }
+
+    // Threads belonging to one run. The first failure is kept and every thread is interrupted
+    private static final class Run {
+        final List<Thread> threads = new CopyOnWriteArrayList<>();
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+        void start(String name, Task task) {
+            Thread thread = new Thread(() -> {
+                try {
+                    task.run();
+                } catch (InterruptedException e) {
+                    // Stopped by another stage failing or the run finishing
+                } catch (Throwable e) {
+                    fail(e);
+                }
+            }, name);
+            thread.setDaemon(true);
+            threads.add(thread);
+            thread.start();
+        }
+
+        void fail(Throwable e) {
+            if (failure.compareAndSet(null, e)) {
+                for (Thread thread : threads) {
+                    thread.interrupt();
+                }
+            }
+        }
+
+        void stop() throws InterruptedException {
+            for (Thread thread : threads) {
+                thread.interrupt();
+            }
+            for (Thread thread : threads) {
+                thread.join();
+            }
+        }
+    }
+}
@@ -0,0 +1,336 @@
+package uk.ac.nottingham.cryptography.service;
+
+import uk.ac.nottingham.cryptography.banking.AuthenticationMode;
+import uk.ac.nottingham.cryptography.banking.Bank;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static uk.ac.nottingham.cryptography.service.VerificationProtocol.*;
+
+/***
+ * Closed loop load generator for VerificationServer. Each connection keeps up to pipelineDepth requests in
+ * flight, and the round trip time of every request after the warmup is kept for exact percentiles
+ */
+public class LoadGenerator {
+    private static final String TRANSACTION =
+            "from:20-60-40.23311492;to:35-01-17.11911597;stoken:7a2afc675906eb180ba2e18b;amount:";
+
+    private final InetSocketAddress address;
+    private final AuthenticationMode mode;
+    private int connections = 4;
+    private int pipelineDepth = 16;
+    private Duration warmup = Duration.ofSeconds(2);
+    private Duration duration = Duration.ofSeconds(10);
+
+    public LoadGenerator(InetSocketAddress address, AuthenticationMode mode) {
+        this.address = address;
+        this.mode = mode;
+    }
+
+    public LoadGenerator connections(int connections) {
+        this.connections = connections;
+        return this;
+    }
+
+    public LoadGenerator pipelineDepth(int depth) {
+        this.pipelineDepth = depth;
+        return this;
+    }
+
+    public LoadGenerator warmup(Duration warmup) {
+        this.warmup = warmup;
+        return this;
+    }
+
+    public LoadGenerator duration(Duration duration) {
+        this.duration = duration;
+        return this;
+    }
+
+    public Result run() throws IOException, InterruptedException {
+        // The same transactions are sent repeatedly, so the server must not have a replay guard
+        Bank bank = new Bank(mode);
+        byte[][] transactions = new byte[64][];
+        byte[][] tokens = new byte[transactions.length][];
+        for (int i = 0; i < transactions.length; i++) {
+            transactions[i] = (TRANSACTION + (1000 + i)).getBytes(StandardCharsets.UTF_8);
+            tokens[i] = bank.authenticateTransaction(transactions[i]);
+        }
+
+        long start = System.nanoTime();
+        long measureFrom = start + warmup.toNanos();
+        long stopAt = measureFrom + duration.toNanos();
+
+        List<Connection> running = new ArrayList<>();
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        for (int i = 0; i < connections; i++) {
+            Connection connection = new Connection(SocketChannel.open(address), transactions, tokens,
+                    measureFrom, stopAt, failure);
+            running.add(connection);
+            connection.start(i);
+        }
+        for (Connection connection : running) {
+            connection.join();
+        }
+        if (failure.get() != null) {
+            throw new IOException("Load generation failed", failure.get());
+        }
+
+        long total = 0;
+        long failed = 0;
+        for (Connection connection : running) {
+            total += connection.count;
+            failed += connection.failed;
+        }
+        long[] latencies = new long[(int) total];
+        int offset = 0;
+        for (Connection connection : running) {
+            System.arraycopy(connection.latencies, 0, latencies, offset, connection.count);
+            offset += connection.count;
+        }
+        Arrays.sort(latencies);
+        return new Result(latencies, failed, duration.toNanos());
+    }
+
+    /***
+     * Round trip latencies in nanoseconds and throughput over the measured period
+     */
+    public static final class Result {
+        private final long[] sortedLatencies;
+        private final long failed;
+        private final long elapsedNanos;
+
+        Result(long[] sortedLatencies, long failed, long elapsedNanos) {
+            this.sortedLatencies = sortedLatencies;
+            this.failed = failed;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        public long getRequests() {
+            return sortedLatencies.length;
+        }
+
+        // Responses that did not report a valid transaction
+        public long getFailed() {
+            return failed;
+        }
+
+        public double getThroughput() {
+            return sortedLatencies.length * 1e9 / elapsedNanos;
+        }
+
+        public long getPercentile(double percentile) {
+            if (sortedLatencies.length == 0) {
+                return 0;
+            }
+            int rank = (int) Math.ceil(percentile / 100 * sortedLatencies.length);
+            return sortedLatencies[Math.max(0, rank - 1)];
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d requests (%d failed), %.0f requests/s, latency p50=%.1fus p99=%.1fus"
+                            + " p99.9=%.1fus max=%.1fus", getRequests(), failed, getThroughput(),
+                    getPercentile(50) / 1e3, getPercentile(99) / 1e3, getPercentile(99.9) / 1e3,
+                    getPercentile(100) / 1e3);
+        }
+    }
+
+    // A writer thread keeps the pipeline full while a reader thread matches responses to send times
+    private final class Connection {
+        private final SocketChannel channel;
+        private final byte[][] transactions;
+        private final byte[][] tokens;
+        private final long measureFrom;
+        private final long stopAt;
+        private final AtomicReference<Throwable> failure;
+        private final Semaphore window = new Semaphore(pipelineDepth);
+        private final AtomicLongArray sendTimes = new AtomicLongArray(pipelineDepth);
+        private volatile int sent;
+        private long[] latencies = new long[1 << 16];
+        private int count;
+        private long failed;
+        private Thread writer;
+        private Thread reader;
+
+        Connection(SocketChannel channel, byte[][] transactions, byte[][] tokens, long measureFrom, long stopAt,
+                   AtomicReference<Throwable> failure) throws IOException {
+            this.channel = channel;
+            this.transactions = transactions;
+            this.tokens = tokens;
+            this.measureFrom = measureFrom;
+            this.stopAt = stopAt;
+            this.failure = failure;
+            channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+        }
+
+        void start(int index) {
+            writer = new Thread(this::write, "load-writer-" + index);
+            reader = new Thread(this::read, "load-reader-" + index);
+            writer.start();
+            reader.start();
+        }
+
+        void join() throws InterruptedException {
+            writer.join();
+            reader.join();
+        }
+
+        private void write() {
+            ByteBuffer out = ByteBuffer.allocateDirect(pipelineDepth * (REQUEST_HEADER_LENGTH + 128));
+            int id = 0;
+            try {
+                while (System.nanoTime() < stopAt) {
+                    window.acquire();
+                    int batch = 1 + window.drainPermits();
+                    for (int i = 0; i < batch; i++) {
+                        int tx = id % transactions.length;
+                        if (out.remaining() < requestLength(transactions[tx])) {
+                            send(out);
+                        }
+                        sendTimes.set(id % pipelineDepth, System.nanoTime());
+                        writeRequest(out, id, tokens[tx], transactions[tx]);
+                        id++;
+                    }
+                    send(out);
+                }
+                // The server closes the connection after answering everything, which ends the reader
+                sent = -id - 1;
+                channel.shutdownOutput();
+            } catch (IOException | InterruptedException | RuntimeException ex) {
+                fail(ex);
+            }
+        }
+
+        private void send(ByteBuffer out) throws IOException {
+            out.flip();
+            while (out.hasRemaining()) {
+                channel.write(out);
+            }
+            out.clear();
+        }
+
+        private void read() {
+            ByteBuffer in = ByteBuffer.allocateDirect(pipelineDepth * RESPONSE_LENGTH * 4);
+            int expected = 0;
+            try {
+                while (true) {
+                    int total = sent;
+                    if (total < 0 && expected == -total - 1) {
+                        break;
+                    }
+                    if (channel.read(in) == -1) {
+                        if (sent < 0 && expected == -sent - 1) {
+                            break;
+                        }
+                        throw new IOException("Server closed the connection");
+                    }
+                    long now = System.nanoTime();
+                    in.flip();
+                    while (in.remaining() >= RESPONSE_LENGTH) {
+                        int id = in.getInt();
+                        byte status = in.get();
+                        if (id != expected) {
+                            throw new IOException("Expected response " + expected + " but got " + id);
+                        }
+                        expected++;
+                        long sentAt = sendTimes.get(id % pipelineDepth);
+                        window.release();
+                        if (sentAt >= measureFrom && sentAt < stopAt) {
+                            record(now - sentAt, status);
+                        }
+                    }
+                    in.compact();
+                }
+            } catch (IOException | RuntimeException ex) {
+                fail(ex);
+            } finally {
+                try {
+                    channel.close();
+                } catch (IOException ex) {
+                    // Nothing left to do with the connection
+                }
+            }
+        }
+
+        private void record(long latency, byte status) {
+            if (count == latencies.length) {
+                latencies = Arrays.copyOf(latencies, count * 2);
+            }
+            latencies[count++] = latency;
+            if (status != STATUS_VALID) {
+                failed++;
+            }
+        }
+
+        private void fail(Throwable ex) {
+            failure.compareAndSet(null, ex);
+            try {
+                channel.close();
+            } catch (IOException e) {
+                ex.addSuppressed(e);
+            }
+        }
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        String host = null;
+        int port = 0;
+        AuthenticationMode mode = AuthenticationMode.SECRET_PREFIX;
+        int connections = 4;
+        int pipelineDepth = 16;
+        int warmupSeconds = 2;
+        int durationSeconds = 10;
+        for (int i = 0; i < args.length; i++) {
+            String value = i + 1 < args.length ? args[i + 1] : null;
+            switch (args[i]) {
+                case "--host": host = value; i++; break;
+                case "--port": port = Integer.parseInt(value); i++; break;
+                case "--hmac": mode = AuthenticationMode.HMAC_SHA256; break;
+                case "--sha512-256": mode = AuthenticationMode.SECRET_PREFIX_SHA512_256; break;
+                case "--connections": connections = Integer.parseInt(value); i++; break;
+                case "--pipeline": pipelineDepth = Integer.parseInt(value); i++; break;
+                case "--warmup": warmupSeconds = Integer.parseInt(value); i++; break;
+                case "--duration": durationSeconds = Integer.parseInt(value); i++; break;
+                default:
+                    System.err.println("Usage: LoadGenerator [--host HOST --port PORT] [--hmac|--sha512-256] [--connections N]"
+                            + " [--pipeline DEPTH] [--warmup SECONDS] [--duration SECONDS]");
+                    System.exit(2);
+            }
+        }
+
+        // Without a port, an in-process server is started on loopback
+        VerificationServer server = null;
+        if (port == 0) {
+            server = new VerificationServer(new Bank(mode), 0).start();
+            host = "localhost";
+            port = server.getPort();
+            System.err.println("Started server on port " + port
+                    + (server.usesVirtualThreads() ? " with virtual threads" : " with platform threads"));
+        }
+        try {
+            LoadGenerator generator = new LoadGenerator(new InetSocketAddress(host, port), mode)
+                    .connections(connections)
+                    .pipelineDepth(pipelineDepth)
+                    .warmup(Duration.ofSeconds(warmupSeconds))
+                    .duration(Duration.ofSeconds(durationSeconds));
+            System.out.println(generator.run());
+        } finally {
+            if (server != null) {
+                server.close();
+            }
+        }
+    }
+}
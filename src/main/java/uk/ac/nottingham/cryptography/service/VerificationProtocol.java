@@ -0,0 +1,54 @@
+package uk.ac.nottingham.cryptography.service;
+
+import uk.ac.nottingham.cryptography.banking.FailureReason;
+import uk.ac.nottingham.cryptography.banking.VerificationResult;
+import uk.ac.nottingham.cryptography.hashing.Sha256Hasher;
+
+import java.nio.ByteBuffer;
+
+/***
+ * Wire format for the verification service. All integers are big endian.
+ *
+ * A request is [int length][int id][32 byte token][transaction], where length counts everything after itself.
+ * A response is [int id][byte status], with status 0 for a valid transaction or FailureReason.ordinal() + 1.
+ * Requests may be pipelined, responses come back in request order on the same connection
+ */
+public final class VerificationProtocol {
+    public static final int TOKEN_LENGTH = Sha256Hasher.DIGEST_LENGTH;
+    public static final int REQUEST_HEADER_LENGTH = 4 + 4 + TOKEN_LENGTH;
+    public static final int RESPONSE_LENGTH = 5;
+    public static final int MAX_TRANSACTION_LENGTH = 16 * 1024;
+
+    public static final byte STATUS_VALID = 0;
+
+    private VerificationProtocol() {
+
+    }
+
+    public static int requestLength(byte[] transaction) {
+        return REQUEST_HEADER_LENGTH + transaction.length;
+    }
+
+    public static void writeRequest(ByteBuffer out, int id, byte[] token, byte[] transaction) {
+        if (token.length != TOKEN_LENGTH) {
+            throw new IllegalArgumentException("Token must be " + TOKEN_LENGTH + " bytes");
+        }
+        if (transaction.length > MAX_TRANSACTION_LENGTH) {
+            throw new IllegalArgumentException("Transaction longer than " + MAX_TRANSACTION_LENGTH + " bytes");
+        }
+        out.putInt(4 + TOKEN_LENGTH + transaction.length);
+        out.putInt(id);
+        out.put(token);
+        out.put(transaction);
+    }
+
+    public static void writeResponse(ByteBuffer out, int id, VerificationResult result) {
+        out.putInt(id);
+        out.put(result.isValid() ? STATUS_VALID : (byte) (result.getFailureReason().ordinal() + 1));
+    }
+
+    // Null for a valid transaction
+    public static FailureReason failureReason(byte status) {
+        return status == STATUS_VALID ? null : FailureReason.values()[status - 1];
+    }
+}
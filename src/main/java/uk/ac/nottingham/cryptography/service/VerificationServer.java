@@ -0,0 +1,169 @@
+package uk.ac.nottingham.cryptography.service;
+
+import uk.ac.nottingham.cryptography.banking.AuthenticationMode;
+import uk.ac.nottingham.cryptography.banking.Bank;
+import uk.ac.nottingham.cryptography.banking.VerificationResult;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+
+import static uk.ac.nottingham.cryptography.service.VerificationProtocol.*;
+
+/***
+ * TCP front end for Bank.verify, speaking VerificationProtocol. Each connection is served by its own thread
+ * with blocking reads, a virtual thread where the runtime supports them. Every complete request in a read is
+ * verified before the responses are written back together, so pipelining clients get batched responses
+ */
+public class VerificationServer implements Closeable {
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final Bank bank;
+    private final ServerSocketChannel server;
+    private final ExecutorService connections;
+    private final boolean virtualThreads;
+    private final Set<SocketChannel> open = ConcurrentHashMap.newKeySet();
+    private Thread acceptor;
+    private volatile boolean closed;
+
+    // Port 0 picks a free port, see getPort
+    public VerificationServer(Bank bank, int port) throws IOException {
+        this(bank, new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+    }
+
+    public VerificationServer(Bank bank, InetSocketAddress address) throws IOException {
+        this.bank = bank;
+        this.server = ServerSocketChannel.open();
+        server.bind(address, 1024);
+        ExecutorService executor = VirtualThreads.newVirtualThreadExecutor();
+        this.virtualThreads = executor != null;
+        this.connections = virtualThreads ? executor : VirtualThreads.newPlatformThreadExecutor("verification-connection");
+    }
+
+    public synchronized VerificationServer start() {
+        if (acceptor == null) {
+            acceptor = new Thread(this::acceptLoop, "verification-acceptor");
+            acceptor.setDaemon(true);
+            acceptor.start();
+        }
+        return this;
+    }
+
+    public int getPort() throws IOException {
+        return ((InetSocketAddress) server.getLocalAddress()).getPort();
+    }
+
+    public boolean usesVirtualThreads() {
+        return virtualThreads;
+    }
+
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        server.close();
+        for (SocketChannel channel : open) {
+            channel.close();
+        }
+        connections.shutdownNow();
+    }
+
+    private void acceptLoop() {
+        while (!closed) {
+            try {
+                SocketChannel channel = server.accept();
+                channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                open.add(channel);
+                connections.execute(() -> serve(channel));
+            } catch (ClosedChannelException ex) {
+                return;
+            } catch (IOException ex) {
+                if (!closed) {
+                    System.err.println("Accept failed: " + ex);
+                }
+            }
+        }
+    }
+
+    private void serve(SocketChannel channel) {
+        ByteBuffer in = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        ByteBuffer out = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        byte[] token = new byte[TOKEN_LENGTH];
+
+        try (channel) {
+            while (channel.read(in) != -1) {
+                in.flip();
+                while (in.remaining() >= 4) {
+                    int length = in.getInt(in.position());
+                    if (length < 4 + TOKEN_LENGTH || length > 4 + TOKEN_LENGTH + MAX_TRANSACTION_LENGTH) {
+                        // Not a frame we can resynchronise after, drop the connection
+                        return;
+                    }
+                    if (in.remaining() < 4 + length) {
+                        break;
+                    }
+                    int end = in.position() + 4 + length;
+                    in.position(in.position() + 4);
+                    int id = in.getInt();
+                    in.get(token);
+                    VerificationResult result = bank.verify(in.slice(in.position(), end - in.position()), token);
+                    in.position(end);
+
+                    if (out.remaining() < RESPONSE_LENGTH) {
+                        flush(channel, out);
+                    }
+                    writeResponse(out, id, result);
+                }
+                in.compact();
+                // Everything received so far has been answered, send the batch before blocking on the next read
+                flush(channel, out);
+            }
+        } catch (IOException ex) {
+            // Client went away or the server is closing
+        } finally {
+            open.remove(channel);
+        }
+    }
+
+    private static void flush(SocketChannel channel, ByteBuffer out) throws IOException {
+        out.flip();
+        while (out.hasRemaining()) {
+            channel.write(out);
+        }
+        out.clear();
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int port = 7878;
+        AuthenticationMode mode = AuthenticationMode.SECRET_PREFIX;
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--hmac")) {
+                mode = AuthenticationMode.HMAC_SHA256;
+            } else if (args[i].equals("--sha512-256")) {
+                mode = AuthenticationMode.SECRET_PREFIX_SHA512_256;
+            } else if (args[i].equals("--port") && i + 1 < args.length) {
+                port = Integer.parseInt(args[++i]);
+            } else {
+                System.err.println("Usage: VerificationServer [--port PORT] [--hmac|--sha512-256]");
+                System.exit(2);
+            }
+        }
+
+        Bank bank = new Bank(mode);
+        try (VerificationServer server = new VerificationServer(bank, port).start()) {
+            System.err.println("Listening on port " + server.getPort()
+                    + (server.usesVirtualThreads() ? " with virtual threads" : " with platform threads"));
+            bank.getMetrics().startReporting(Duration.ofSeconds(5), System.err::println);
+            Thread.currentThread().join();
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package uk.ac.nottingham.cryptography.service;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/***
+ * Thread per task executors that use virtual threads where the runtime has them (JDK 21 onwards). The
+ * project targets Java 17, so the factory is looked up reflectively and falls back to platform threads
+ */
+final class VirtualThreads {
+    private VirtualThreads() {
+
+    }
+
+    // Null if this runtime cannot create virtual threads
+    static ExecutorService newVirtualThreadExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException | RuntimeException ex) {
+            // Not available, or still a preview feature that has not been enabled
+            return null;
+        }
+    }
+
+    static ExecutorService newPlatformThreadExecutor(String name) {
+        return Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, name);
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+}
@@ -0,0 +1,101 @@
+package uk.ac.nottingham.cryptography.banking;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import uk.ac.nottingham.cryptography.hashing.HashMetrics;
+import uk.ac.nottingham.cryptography.hashing.SHA256;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BankMetricsTests {
+
+    private static final byte[] TRANSACTION =
+            "from:20-60-40.23311492;to:35-01-17.11911597;stoken:7a2afc675906eb180ba2e18b;amount:1000"
+                    .getBytes(StandardCharsets.UTF_8);
+
+    @Test
+    void bankMetricsTest() throws Exception {
+        Bank bank = new Bank();
+        byte[] token = bank.authenticateTransaction(TRANSACTION);
+        bank.verifyTransaction(TRANSACTION, token);
+        bank.verifyTransactions(List.of(TRANSACTION, "amount".getBytes(StandardCharsets.UTF_8), TRANSACTION),
+                List.of(token, bank.authenticateTransaction("amount".getBytes(StandardCharsets.UTF_8)), new byte[32]));
+
+        BankMetrics.Snapshot snapshot = bank.getMetrics().snapshot();
+        assertEquals(2, snapshot.getAuthentications());
+        assertEquals(4, snapshot.getVerifications());
+        assertEquals(2, snapshot.getValid());
+        assertEquals(1, snapshot.getFailures(FailureReason.INVALID_TOKEN));
+        assertEquals(1, snapshot.getFailures(FailureReason.MALFORMED_TRANSACTION));
+        assertEquals(4, snapshot.getVerifyLatency().getCount());
+        assertTrue(snapshot.getVerifyLatency().getPercentile(50) <= snapshot.getVerifyLatency().getMax());
+
+        bank.getMetrics().reset();
+        bank.getMetrics().setEnabled(false);
+        bank.verifyTransaction(TRANSACTION, token);
+        assertEquals(0, bank.getMetrics().snapshot().getVerifications());
+    }
+
+    @Test
+    void histogramTest() {
+        for (long value : new long[] { 0, 1, 3, 4, 5, 7, 8, 9, 1000, 123456789, Long.MAX_VALUE }) {
+            int bucket = LatencyHistogram.bucket(value);
+            assertTrue(LatencyHistogram.lowerBound(bucket) <= value, Long.toString(value));
+            assertTrue(LatencyHistogram.upperBound(bucket) >= value, Long.toString(value));
+        }
+
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(i);
+        }
+        BankMetrics.Latency latency = histogram.snapshot();
+        assertEquals(1000, latency.getCount());
+        assertEquals(1000, latency.getMax());
+        long p50 = latency.getPercentile(50);
+        assertTrue(p50 >= 500 && p50 <= 500 * 1.25, Long.toString(p50));
+        assertEquals(1000, latency.getPercentile(100));
+    }
+
+    @Test
+    void flightRecorderTest(@TempDir Path dir) throws Exception {
+        Path file = dir.resolve("metrics.jfr");
+        long bytes = HashMetrics.getBytesHashed();
+        try (Recording recording = new Recording()) {
+            recording.enable("uk.ac.nottingham.cryptography.Transaction").withoutThreshold();
+            recording.enable("uk.ac.nottingham.cryptography.Sha256Digest").withoutThreshold();
+            recording.start();
+
+            Bank bank = new Bank();
+            byte[] token = bank.authenticateTransaction(TRANSACTION);
+            token[0] ^= 1;
+            assertThrows(InvalidTransactionException.class, () -> bank.verifyTransaction(TRANSACTION, token));
+            SHA256.digest(new ByteArrayInputStream(new byte[100]));
+
+            recording.stop();
+            recording.dump(file);
+        }
+        assertTrue(HashMetrics.getBytesHashed() >= bytes + 100);
+
+        List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+        List<String> operations = events.stream()
+                .filter(e -> e.getEventType().getName().equals("uk.ac.nottingham.cryptography.Transaction"))
+                .map(e -> e.getString("operation") + ":" + e.getString("failureReason"))
+                .collect(Collectors.toList());
+        assertEquals(List.of("authenticate:null", "verify:INVALID_TOKEN"), operations);
+
+        RecordedEvent digest = events.stream()
+                .filter(e -> e.getEventType().getName().equals("uk.ac.nottingham.cryptography.Sha256Digest"))
+                .findFirst().orElseThrow();
+        assertEquals(100, digest.getLong("bytes"));
+        assertEquals(2, digest.getLong("blocks"));
+    }
+}
@@ -0,0 +1,119 @@
+package uk.ac.nottingham.cryptography.banking;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BankTests {
+
+    @Test
+    void verifyTransactionTest() throws IOException, InvalidTransactionException {
+        Bank bank = new Bank();
+        byte[] transaction = transaction(1000);
+        byte[] token = bank.authenticateTransaction(transaction);
+
+        BankTransaction bt = bank.verifyTransaction(transaction, token);
+        assertEquals("20-60-40.23311492", bt.getFromAccount());
+        assertEquals("35-01-17.11911597", bt.getToAccount());
+        assertEquals("1000", bt.getAmount());
+
+        token[0] ^= 1;
+        InvalidTransactionException ex = assertThrows(InvalidTransactionException.class,
+                () -> bank.verifyTransaction(transaction, token));
+        assertEquals(FailureReason.INVALID_TOKEN.getMessage(), ex.getMessage());
+    }
+
+    @Test
+    void verifyBufferTest() throws IOException, InvalidTransactionException {
+        for (AuthenticationMode mode : AuthenticationMode.values()) {
+            Bank bank = new Bank(mode);
+            byte[] transaction = transaction(1000);
+            byte[] token = bank.authenticateTransaction(transaction);
+
+            ByteBuffer direct = ByteBuffer.allocateDirect(transaction.length + 2);
+            direct.put((byte) 0).put(transaction).flip().position(1);
+            assertArrayEquals(token, bank.authenticateTransaction(direct));
+            assertEquals("1000", bank.verifyTransaction(direct, token).getAmount());
+            assertEquals(1, direct.position());
+
+            direct.limit(direct.limit() - 1);
+            assertThrows(InvalidTransactionException.class, () -> bank.verifyTransaction(direct, token));
+        }
+    }
+
+    @Test
+    void hmacModeTest() throws IOException, InvalidTransactionException {
+        Bank prefix = new Bank();
+        Bank hmac = new Bank(AuthenticationMode.HMAC_SHA256);
+        byte[] transaction = transaction(1000);
+
+        byte[] token = hmac.authenticateTransaction(transaction);
+        assertEquals("1000", hmac.verifyTransaction(transaction, token).getAmount());
+        assertFalse(Arrays.equals(token, prefix.authenticateTransaction(transaction)));
+        assertThrows(InvalidTransactionException.class, () -> prefix.verifyTransaction(transaction, token));
+    }
+
+    @Test
+    void sha512ModeTest() throws IOException, InvalidTransactionException, NoSuchAlgorithmException {
+        Bank bank = new Bank(AuthenticationMode.SECRET_PREFIX_SHA512_256);
+        byte[] transaction = transaction(1000);
+
+        MessageDigest jdk = MessageDigest.getInstance("SHA-512/256");
+        jdk.update("5a95b9feba8efda0b6c3c6a96ad05a87".getBytes(StandardCharsets.UTF_8));
+        byte[] token = bank.authenticateTransaction(transaction);
+        assertArrayEquals(jdk.digest(transaction), token);
+        assertEquals("1000", bank.verifyTransaction(transaction, token).getAmount());
+        assertThrows(InvalidTransactionException.class, () -> new Bank().verifyTransaction(transaction, token));
+    }
+
+    @Test
+    void verifyTransactionsTest() throws IOException {
+        // Every third token is corrupted, results must stay in input order
+        Bank bank = new Bank();
+        List<byte[]> transactions = new ArrayList<>();
+        List<byte[]> tokens = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            byte[] transaction = transaction(i);
+            byte[] token = bank.authenticateTransaction(transaction);
+            if (i % 3 == 0) {
+                token[31] ^= 1;
+            }
+            transactions.add(transaction);
+            tokens.add(token);
+        }
+
+        List<VerificationResult> results = bank.verifyTransactions(transactions, tokens);
+        List<VerificationResult> streamed = bank.verifyTransactionStream(transactions, tokens)
+                .collect(Collectors.toList());
+
+        for (List<VerificationResult> r : List.of(results, streamed)) {
+            assertEquals(transactions.size(), r.size());
+            for (int i = 0; i < r.size(); i++) {
+                if (i % 3 == 0) {
+                    assertFalse(r.get(i).isValid());
+                    assertEquals(FailureReason.INVALID_TOKEN, r.get(i).getFailureReason());
+                } else {
+                    assertTrue(r.get(i).isValid());
+                    assertEquals(Integer.toString(i), r.get(i).getTransaction().getAmount());
+                }
+            }
+        }
+
+        assertThrows(IllegalArgumentException.class, () -> bank.verifyTransactions(transactions, List.of()));
+    }
+
+    private static byte[] transaction(int amount) {
+        return ("from:20-60-40.23311492;to:35-01-17.11911597;stoken:7a2afc675906eb180ba2e18b;amount:" + amount)
+                .getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,56 @@
+package uk.ac.nottingham.cryptography.banking;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BankTransactionTests {
+
+    @Test
+    void parseTest() throws InvalidTransactionException {
+        BankTransaction bt = parse("from:20-60-40.23311492;to:35-01-17.11911597;stoken:7a2afc675906eb180ba2e18b;amount:1000");
+        assertEquals("20-60-40.23311492", bt.getFromAccount());
+        assertEquals("35-01-17.11911597", bt.getToAccount());
+        assertEquals("7a2afc675906eb180ba2e18b", bt.getSecurityToken());
+        assertEquals("1000", bt.getAmount());
+        assertEquals(100000, bt.getAmountMinorUnits());
+        assertFalse(bt.hasDuplicateKeys());
+        assertFalse(bt.hasUnknownKeys());
+
+        // Missing fields are empty, as with the String constructor
+        bt = new BankTransaction("amount:12.5;");
+        assertEquals("", bt.getFromAccount());
+        assertEquals(1250, bt.getAmountMinorUnits());
+    }
+
+    @Test
+    void duplicateAndUnknownKeysTest() throws InvalidTransactionException {
+        // The extended message from Main, the last amount wins but the repeat is reported
+        String message = "from:a;to:b;amount:1000\u0000\u0003;amount:100000;memo:x";
+        BankTransaction bt = parse(message);
+        assertEquals("100000", bt.getAmount());
+        assertEquals(10000000, bt.getAmountMinorUnits());
+        assertTrue(bt.hasDuplicateKeys());
+        assertTrue(bt.hasUnknownKeys());
+    }
+
+    @Test
+    void malformedTest() throws InvalidTransactionException {
+        assertThrows(InvalidTransactionException.class, () -> parse("from:a;amount"));
+        assertThrows(IllegalArgumentException.class, () -> new BankTransaction("to"));
+
+        String[] invalidAmounts = new String[] { "amount:", "amount:-", "amount:1.234", "amount:1.2.3", "amount:12a",
+                "amount:99999999999999999999" };
+        for (String amount : invalidAmounts) {
+            BankTransaction bt = parse(amount);
+            assertThrows(RuntimeException.class, bt::getAmountMinorUnits, amount);
+        }
+        assertEquals(-150, parse("amount:-1.5").getAmountMinorUnits());
+    }
+
+    private static BankTransaction parse(String transaction) throws InvalidTransactionException {
+        return BankTransaction.parse(transaction.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,146 @@
+package uk.ac.nottingham.cryptography.banking;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class KeyRingTests {
+    private static final String BANK_KEY = "5a95b9feba8efda0b6c3c6a96ad05a87";
+
+    @Test
+    void cacheTest() {
+        KeyRing ring = new KeyRing(AuthenticationMode.SECRET_PREFIX,
+                id -> id.startsWith("acct") ? KeyRing.Keys.of("key-" + id) : null, 3);
+        assertNotNull(ring.lookup("acct1"));
+        assertNotNull(ring.lookup("acct1"));
+        assertNull(ring.lookup("nobody"));
+        assertNull(ring.lookup("nobody"));
+        assertEquals(1, ring.getHits());
+        assertEquals(3, ring.getMisses());
+        assertEquals(2, ring.getUnknown());
+        assertEquals(1, ring.size());
+
+        // acct1 was looked up since it was loaded, so it gets a second chance and acct2 is evicted instead
+        ring.lookup("acct2");
+        ring.lookup("acct3");
+        ring.lookup("acct4");
+        assertEquals(3, ring.size());
+        assertEquals(1, ring.getEvictions());
+        long misses = ring.getMisses();
+        ring.lookup("acct1");
+        assertEquals(misses, ring.getMisses());
+        ring.lookup("acct2");
+        assertEquals(misses + 1, ring.getMisses());
+
+        for (int i = 0; i < 100; i++) {
+            ring.lookup("acct" + i);
+            assertTrue(ring.size() <= ring.getCapacity());
+        }
+        ring.invalidateAll();
+        assertEquals(0, ring.size());
+        assertThrows(IllegalArgumentException.class, () -> new KeyRing(AuthenticationMode.HMAC_SHA256, id -> null, 0));
+    }
+
+    @Test
+    void invalidateChurnTest() {
+        KeyRing ring = new KeyRing(AuthenticationMode.HMAC_SHA256, id -> KeyRing.Keys.of("key-" + id), 100);
+        // Rotating a few ids many times, well under capacity, so eviction never runs to clear the queue
+        for (int i = 0; i < 10_000; i++) {
+            String id = "acct" + (i % 5);
+            assertNotNull(ring.lookup(id));
+            ring.invalidate(id);
+            assertNotNull(ring.lookup(id));
+        }
+        assertEquals(5, ring.size());
+        assertEquals(5, ring.queued());
+        assertEquals(0, ring.getEvictions());
+
+        for (int i = 0; i < 1000; i++) {
+            ring.lookup("acct" + i);
+            if (i % 50 == 0) {
+                ring.invalidateAll();
+                assertEquals(0, ring.queued());
+            }
+        }
+        assertEquals(ring.size(), ring.queued());
+        ring.invalidateAll();
+        assertEquals(0, ring.size());
+        assertEquals(0, ring.queued());
+    }
+
+    @Test
+    void rotationTest() throws InvalidTransactionException {
+        AtomicLong clock = new AtomicLong(1_000);
+        Map<String, KeyRing.Keys> keys = new HashMap<>();
+        keys.put("acct", KeyRing.Keys.of("old key"));
+        for (AuthenticationMode mode : AuthenticationMode.values()) {
+            KeyRing ring = new KeyRing(mode, keys::get, 16, clock::get);
+            Bank bank = new Bank(ring);
+            byte[] transaction = transaction(1000);
+            byte[] oldToken = bank.authenticateTransaction("acct", transaction);
+            assertEquals("1000", bank.verifyTransaction("acct", transaction, oldToken).getAmount());
+
+            // Rotated, with the old key accepted until 2000. The ring only sees it once the id is invalidated
+            keys.put("acct", KeyRing.Keys.of("new key").withGrace("old key", Instant.ofEpochMilli(2_000)));
+            ring.invalidate("acct");
+            byte[] newToken = bank.authenticateTransaction("acct", transaction);
+            assertFalse(Arrays.equals(oldToken, newToken));
+            assertTrue(bank.verify("acct", transaction, newToken).isValid());
+            assertTrue(bank.verify("acct", transaction, oldToken).isValid());
+            assertEquals(1, ring.getGraceMatches());
+
+            clock.set(2_001);
+            assertEquals(FailureReason.INVALID_TOKEN, bank.verify("acct", transaction, oldToken).getFailureReason());
+            assertTrue(bank.verify("acct", transaction, newToken).isValid());
+
+            assertEquals(FailureReason.UNKNOWN_KEY, bank.verify("other", transaction, newToken).getFailureReason());
+            assertThrows(IllegalArgumentException.class, () -> bank.authenticateTransaction("other", transaction));
+            keys.put("acct", KeyRing.Keys.of("old key"));
+            clock.set(1_000);
+        }
+    }
+
+    @Test
+    void defaultKeyTest() throws IOException {
+        for (AuthenticationMode mode : AuthenticationMode.values()) {
+            Bank bank = new Bank(new KeyRing(mode, id -> KeyRing.Keys.of(BANK_KEY)));
+            byte[] transaction = transaction(1000);
+            byte[] token = bank.authenticateTransaction(transaction);
+            assertArrayEquals(token, bank.authenticateTransaction("acct", transaction), mode.toString());
+            assertArrayEquals(token, new Bank(mode).authenticateTransaction(transaction), mode.toString());
+            assertTrue(bank.verify("acct", transaction, token).isValid());
+        }
+
+        // Keys longer than a block are absorbed as whole blocks, and still match a Bank hashing the key each time
+        String longKey = BANK_KEY.repeat(5);
+        KeyRing ring = new KeyRing(AuthenticationMode.SECRET_PREFIX, id -> KeyRing.Keys.of(longKey));
+        assertTrue(new Bank(ring).verify("acct", transaction(5), prefixToken(longKey, transaction(5))).isValid());
+
+        assertThrows(IllegalStateException.class, () -> new Bank().authenticateTransaction("acct", transaction(1)));
+    }
+
+    private static byte[] prefixToken(String key, byte[] transaction) {
+        try {
+            MessageDigest md = MessageDigest.getInstance("SHA-256");
+            md.update(key.getBytes(StandardCharsets.UTF_8));
+            return md.digest(transaction);
+        } catch (NoSuchAlgorithmException ex) {
+            throw new AssertionError(ex);
+        }
+    }
+
+    private static byte[] transaction(int amount) {
+        return ("from:20-60-40.23311492;to:35-01-17.11911597;stoken:7a2afc675906eb180ba2e18b;amount:" + amount)
+                .getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,146 @@
+package uk.ac.nottingham.cryptography.banking;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReplayGuardTests {
+
+    @Test
+    void replayGuardTests() {
+        AtomicLong clock = new AtomicLong(1);
+        ReplayGuard guard = new ReplayGuard(1000, clock::get, 10);
+        assertEquals(1024, guard.getCapacity());
+        assertEquals(1024 * 24, guard.getMemoryBytes());
+
+        assertEquals(ReplayGuard.Result.FRESH, guard.checkAndInsert("7a2afc675906eb180ba2e18b"));
+        assertEquals(ReplayGuard.Result.REPLAY, guard.checkAndInsert("7A2AFC675906EB180BA2E18B"));
+        assertEquals(ReplayGuard.Result.FRESH, guard.checkAndInsert("7a2afc675906eb180ba2e18c"));
+        assertThrows(IllegalArgumentException.class, () -> guard.checkAndInsert("7a2afc675906eb180ba2e18"));
+        assertThrows(IllegalArgumentException.class, () -> guard.checkAndInsert("7a2afc675906eb180ba2e18g"));
+
+        // Still remembered at the end of the window, forgotten after it
+        clock.set(11);
+        assertEquals(ReplayGuard.Result.REPLAY, guard.checkAndInsert("7a2afc675906eb180ba2e18b"));
+        clock.set(12);
+        assertEquals(ReplayGuard.Result.FRESH, guard.checkAndInsert("7a2afc675906eb180ba2e18b"));
+        assertEquals(ReplayGuard.Result.REPLAY, guard.checkAndInsert("7a2afc675906eb180ba2e18b"));
+
+        ReplayGuard counted = ReplayGuard.withCountWindow(16, 3);
+        assertEquals(ReplayGuard.Result.FRESH, counted.checkAndInsert(1, 1));
+        assertEquals(ReplayGuard.Result.FRESH, counted.checkAndInsert(2, 2));
+        assertEquals(ReplayGuard.Result.REPLAY, counted.checkAndInsert(1, 1));
+        assertEquals(ReplayGuard.Result.FRESH, counted.checkAndInsert(3, 3));
+        assertEquals(ReplayGuard.Result.FRESH, counted.checkAndInsert(1, 1));
+    }
+
+    @Test
+    void capacityTest() {
+        AtomicLong clock = new AtomicLong(1);
+        ReplayGuard guard = new ReplayGuard(16, clock::get, 100);
+        for (int i = 0; i < 16; i++) {
+            assertEquals(ReplayGuard.Result.FRESH, guard.checkAndInsert(i, i));
+        }
+        assertEquals(ReplayGuard.Result.CAPACITY_EXCEEDED, guard.checkAndInsert(16, 16));
+        for (int i = 0; i < 16; i++) {
+            assertEquals(ReplayGuard.Result.REPLAY, guard.checkAndInsert(i, i));
+        }
+
+        // Expired slots are reused, and expired tokens are forgotten
+        clock.set(200);
+        for (int i = 16; i < 31; i++) {
+            assertEquals(ReplayGuard.Result.FRESH, guard.checkAndInsert(i, i));
+        }
+        assertEquals(ReplayGuard.Result.FRESH, guard.checkAndInsert(0, 0));
+    }
+
+    @Test
+    void concurrentTest() throws Exception {
+        ReplayGuard guard = ReplayGuard.withCountWindow(1 << 16, Long.MAX_VALUE);
+        int threads = 8;
+        int tokens = 20000;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Integer>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                int offset = t;
+                futures.add(executor.submit(() -> {
+                    int fresh = 0;
+                    for (int i = 0; i < tokens; i++) {
+                        int token = (i + offset * 7) % tokens;
+                        if (guard.checkAndInsert(token * 31L, token) == ReplayGuard.Result.FRESH) {
+                            fresh++;
+                        }
+                    }
+                    return fresh;
+                }));
+            }
+            int fresh = 0;
+            for (Future<Integer> future : futures) {
+                fresh += future.get();
+            }
+            assertEquals(tokens, fresh);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void stalledWriterTest() {
+        ReplayGuard guard = ReplayGuard.withCountWindow(16, 1000);
+        int home = guard.hash(5, 5);
+
+        // A thread stalled while writing the token's home slot is passed over, not waited for
+        guard.setSlot(home, 1, 0, 0);
+        assertTimeoutPreemptively(Duration.ofSeconds(10), () -> {
+            assertEquals(ReplayGuard.Result.FRESH, guard.checkAndInsert(5, 5));
+            assertEquals(ReplayGuard.Result.REPLAY, guard.checkAndInsert(5, 5));
+        });
+
+        // One stalled with a PENDING copy of the same token further along the chain is waited for a bounded
+        // time, after which this copy backs off as well. The token is picked to start a chain of its own
+        int token = 6;
+        while (((guard.hash(token, token) - home) & 15) < 2 || ((home - guard.hash(token, token)) & 15) < 2) {
+            token++;
+        }
+        int pending = token;
+        guard.setSlot((guard.hash(token, token) + 1) & 15, (1 << 2) | 2, token, token);
+        assertTimeoutPreemptively(Duration.ofSeconds(10),
+                () -> assertEquals(ReplayGuard.Result.REPLAY, guard.checkAndInsert(pending, pending)));
+    }
+
+    @Test
+    void bankReplayTest() throws Exception {
+        for (AuthenticationMode mode : AuthenticationMode.values()) {
+            Bank bank = new Bank(mode);
+            bank.setReplayGuard(ReplayGuard.withCountWindow(1024, 1000));
+            byte[] transaction = ("from:20-60-40.23311492;to:35-01-17.11911597;stoken:7a2afc675906eb180ba2e18b;"
+                    + "amount:1000").getBytes(StandardCharsets.UTF_8);
+            byte[] token = bank.authenticateTransaction(transaction);
+
+            // A forged token is rejected before the stoken is recorded
+            byte[] forged = token.clone();
+            forged[0] ^= 1;
+            assertThrows(InvalidTransactionException.class, () -> bank.verifyTransaction(transaction, forged));
+
+            assertEquals("1000", bank.verifyTransaction(transaction, token).getAmount());
+            InvalidTransactionException ex = assertThrows(InvalidTransactionException.class,
+                    () -> bank.verifyTransaction(transaction, token));
+            assertEquals(FailureReason.REPLAYED.getMessage(), ex.getMessage());
+
+            byte[] noToken = "from:20-60-40.23311492;amount:5".getBytes(StandardCharsets.UTF_8);
+            VerificationResult result = bank.verifyTransactions(List.of(noToken),
+                    List.of(bank.authenticateTransaction(noToken))).get(0);
+            assertEquals(FailureReason.MALFORMED_TRANSACTION, result.getFailureReason());
+        }
+    }
+}
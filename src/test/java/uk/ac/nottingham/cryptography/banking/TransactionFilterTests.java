@@ -0,0 +1,128 @@
+package uk.ac.nottingham.cryptography.banking;
+
+import org.junit.jupiter.api.Test;
+import uk.ac.nottingham.cryptography.hashing.LengthExtender;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TransactionFilterTests {
+    private static final String MESSAGE =
+            "from:20-60-40.23311492;to:35-01-17.11911597;stoken:7a2afc675906eb180ba2e18b;amount:1000";
+
+    @Test
+    void transactionFilterTest() {
+        TransactionFilter filter = new TransactionFilter(32);
+        TransactionFilter anyKey = new TransactionFilter();
+        byte[] message = bytes(MESSAGE);
+        assertNull(filter.check(message));
+        assertNull(anyKey.check(message));
+        assertNull(filter.check(new byte[0]));
+
+        // Forged with the key length guessed right, and wrong
+        byte[] forged = extend(message, 32);
+        assertEquals(FailureReason.GLUE_PADDING, filter.check(forged));
+        assertEquals(FailureReason.GLUE_PADDING, anyKey.check(forged));
+        byte[] misaligned = extend(message, 20);
+        assertEquals(FailureReason.NON_PRINTABLE, filter.check(misaligned));
+        assertEquals(FailureReason.GLUE_PADDING, anyKey.check(misaligned));
+        for (int keyLength = 0; keyLength <= TransactionFilter.MAX_KEY_LENGTH; keyLength += 7) {
+            assertEquals(FailureReason.GLUE_PADDING, anyKey.check(extend(message, keyLength)));
+        }
+
+        // Every position of a bad byte is caught, whether it falls in a word or the tail
+        for (int i = 0; i < message.length; i++) {
+            for (byte b : new byte[] {0, 0x1f, 0x7f, (byte) 0x80, (byte) 0xff}) {
+                byte[] bad = message.clone();
+                bad[i] = b;
+                assertEquals(FailureReason.NON_PRINTABLE, filter.check(bad), "byte " + b + " at " + i);
+            }
+        }
+        for (int b = 0x20; b < 0x7f; b++) {
+            assertEquals(0, TransactionFilter.nonPrintable(b * 0x0101010101010101L));
+        }
+
+        assertEquals(FailureReason.DUPLICATE_KEY, filter.check(bytes(MESSAGE + ";amount:100000")));
+        assertEquals(FailureReason.DUPLICATE_KEY, filter.check(bytes("to:1;from:2;to:3")));
+        assertNull(filter.check(bytes("to:1;top:2;t:3;;x")));
+        StringBuilder many = new StringBuilder("k0:0");
+        for (int i = 1; i < 40; i++) {
+            many.append(";k").append(i).append(":0");
+        }
+        assertNull(filter.check(bytes(many.toString())));
+        assertEquals(FailureReason.DUPLICATE_KEY, filter.check(bytes(many + ";k7:1")));
+
+        // Keys of one length, the worst case for comparisons, up to the item limit and well past it. Each
+        // key is only looked up once, so a check costs about the same per byte however many keys there are
+        StringBuilder distinct = new StringBuilder();
+        for (int i = 0; i < TransactionFilter.MAX_ITEMS - 1; i++) {
+            distinct.append(String.format("key%05d:0;", i));
+        }
+        assertNull(filter.check(bytes(distinct + "last:0")));
+        assertEquals(FailureReason.DUPLICATE_KEY, filter.check(bytes(distinct + "key00254:1")));
+        assertEquals(FailureReason.TOO_MANY_ITEMS, filter.check(bytes(distinct + "x:0;y:0")));
+        byte[] small = bytes(distinct.toString());
+        byte[] large = bytes(distinct.toString().repeat(160));
+        assertEquals(FailureReason.TOO_MANY_ITEMS, filter.check(large));
+        long smallTime = timeChecks(filter, small, 1000);
+        long largeTime = timeChecks(filter, large, 1000 / 160);
+        // Equal bytes checked either way, so a quadratic check would take over a hundred times longer
+        assertTrue(largeTime < smallTime * 10 + 50_000_000L, smallTime + " ns against " + largeTime + " ns");
+
+        // Buffers are checked from their position without moving it
+        ByteBuffer direct = ByteBuffer.allocateDirect(forged.length + 4);
+        direct.put(bytes("x;y:")).put(forged).flip().position(4);
+        assertEquals(FailureReason.GLUE_PADDING, filter.check(direct));
+        assertEquals(4, direct.position());
+        ByteBuffer heap = ByteBuffer.wrap(bytes("xx;" + MESSAGE), 3, message.length).slice();
+        assertNull(filter.check(heap));
+    }
+
+    @Test
+    void bankFilterTest() throws IOException {
+        Bank bank = new Bank();
+        bank.setTransactionFilter(new TransactionFilter(bank.getKeyLength()));
+        byte[] message = bytes(MESSAGE);
+        byte[] token = bank.authenticateTransaction(message);
+        assertTrue(bank.verify(ByteBuffer.wrap(message), token).isValid());
+
+        // The forgery has a valid token, so only the filter stops it
+        LengthExtender.Extension extension = new LengthExtender(message, token, bytes(";amount:100000"))
+                .extend(bank.getKeyLength());
+        assertEquals(FailureReason.GLUE_PADDING, bank.verifyTransactions(
+                List.of(extension.getMessage()), List.of(extension.getToken()))
+                .get(0).getFailureReason());
+        InvalidTransactionException ex = assertThrows(InvalidTransactionException.class,
+                () -> bank.verifyTransaction(ByteBuffer.wrap(extension.getMessage()), extension.getToken()));
+        assertEquals(FailureReason.GLUE_PADDING.getMessage(), ex.getMessage());
+
+        bank.setTransactionFilter(null);
+        assertNull(bank.screen(extension.getMessage()));
+        assertTrue(bank.isAuthentic(extension.getMessage(), extension.getToken()));
+    }
+
+    // Best of a few runs of repeated checks, in nanoseconds
+    private static long timeChecks(TransactionFilter filter, byte[] transaction, int repeats) {
+        long best = Long.MAX_VALUE;
+        for (int run = 0; run < 5; run++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < repeats; i++) {
+                filter.check(transaction);
+            }
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        return best;
+    }
+
+    private static byte[] extend(byte[] message, int keyLength) {
+        return new LengthExtender(message, new byte[32], bytes(";amount:100000")).extend(keyLength).getMessage();
+    }
+
+    private static byte[] bytes(String s) {
+        return s.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,118 @@
+package uk.ac.nottingham.cryptography.checksum;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ParallelChecksumTests {
+
+    @Test
+    void hashTreeTest(@TempDir Path dir) throws IOException, InterruptedException, NoSuchAlgorithmException {
+        Random random = new Random(23);
+        List<Path> expectedOrder = new ArrayList<>();
+        Files.createDirectories(dir.resolve("b/nested"));
+        Files.createDirectories(dir.resolve("a"));
+        // Names are created out of order, and sizes either side of the mapping threshold and window
+        for (String name : new String[] {"b/z", "b/nested/y", "a/x", "a/empty", "b/c", "a/large"}) {
+            int size = name.equals("a/empty") ? 0 : name.equals("a/large") ? 10_000 : random.nextInt(3000);
+            byte[] data = new byte[size];
+            random.nextBytes(data);
+            Files.write(dir.resolve(name), data);
+        }
+        for (String name : new String[] {"a/empty", "a/large", "a/x", "b/c", "b/nested/y", "b/z"}) {
+            expectedOrder.add(dir.resolve(name));
+        }
+        Path missing = dir.resolve("missing");
+
+        ChecksumOptions options = new ChecksumOptions().threads(4).maxOpenFiles(2).maxInFlightBytes(8192)
+                .mappedThreshold(2048).mapWindow(4096).bufferSize(512).maxPending(2);
+        List<FileChecksum> results = new ArrayList<>();
+        ChecksumStats stats = new ParallelChecksum(options).hash(List.of(dir, missing), results::add);
+
+        assertEquals(expectedOrder.size() + 1, results.size());
+        MessageDigest md = MessageDigest.getInstance("SHA-256");
+        long bytes = 0;
+        for (int i = 0; i < expectedOrder.size(); i++) {
+            FileChecksum result = results.get(i);
+            assertEquals(expectedOrder.get(i), result.getPath());
+            assertEquals(expectedOrder.get(i).toString(), result.getName());
+            byte[] data = Files.readAllBytes(result.getPath());
+            assertArrayEquals(md.digest(data), result.getDigest(), result.getName());
+            assertTrue(result.matches());
+            bytes += data.length;
+        }
+        FileChecksum last = results.get(expectedOrder.size());
+        assertTrue(last.getError() instanceof NoSuchFileException);
+        assertNull(last.getDigest());
+        assertEquals(7, stats.getFiles());
+        assertEquals(1, stats.getErrors());
+        assertEquals(bytes, stats.getBytesHashed());
+    }
+
+    @Test
+    void checkTest(@TempDir Path dir) throws IOException, InterruptedException {
+        Files.writeString(dir.resolve("good"), "abc");
+        Files.writeString(dir.resolve("bad"), "abd");
+        String abc = "ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad";
+        String listing = ChecksumFormat.format(abc, "good", false, false) + "\n"
+                + ChecksumFormat.format(abc, "bad", true, false) + "\n"
+                + ChecksumFormat.format(abc, "gone", false, true) + "\n"
+                + "not a checksum line\n";
+
+        List<ChecksumFormat.Entry> entries = new ArrayList<>();
+        for (String line : listing.split("\n")) {
+            ChecksumFormat.Entry entry = ChecksumFormat.parse(line);
+            if (entry != null) {
+                entries.add(entry);
+            }
+        }
+        assertEquals(3, entries.size());
+        assertEquals("gone", entries.get(2).getName());
+
+        List<FileChecksum> results = new ArrayList<>();
+        ChecksumStats stats = new ParallelChecksum(new ChecksumOptions().threads(2)).check(entries, dir, results::add);
+        assertTrue(results.get(0).matches());
+        assertFalse(results.get(1).matches());
+        assertNull(results.get(1).getError());
+        assertTrue(results.get(2).getError() instanceof NoSuchFileException);
+        assertEquals(1, stats.getMismatches());
+        assertEquals(1, stats.getErrors());
+    }
+
+    @Test
+    void formatTest() {
+        String hex = HexFormat.of().formatHex(new byte[32]);
+        assertEquals(hex + "  plain", ChecksumFormat.format(hex, "plain", false, false));
+        assertEquals(hex + " *plain", ChecksumFormat.format(hex, "plain", true, false));
+        assertEquals("SHA256 (plain) = " + hex, ChecksumFormat.format(hex, "plain", false, true));
+
+        // Names needing escapes round trip, whichever format they are written in
+        String odd = "back\\slash\nnew line";
+        assertEquals("\\" + hex + "  back\\\\slash\\nnew line", ChecksumFormat.format(hex, odd, false, false));
+        assertEquals("\\back\\\\slash\\nnew line", ChecksumFormat.displayName(odd));
+        assertEquals("back\\slash", ChecksumFormat.displayName("back\\slash"));
+        for (boolean tag : new boolean[] {false, true}) {
+            ChecksumFormat.Entry entry = ChecksumFormat.parse(ChecksumFormat.format(hex, odd, false, tag));
+            assertEquals(odd, entry.getName());
+            assertArrayEquals(new byte[32], entry.getExpected());
+        }
+
+        assertNotNull(ChecksumFormat.parse(hex.toUpperCase() + "  name with  spaces "));
+        assertNull(ChecksumFormat.parse(hex + " name"));
+        assertNull(ChecksumFormat.parse(hex.substring(1) + "g  name"));
+        assertNull(ChecksumFormat.parse(hex + "  "));
+        assertNull(ChecksumFormat.parse("\\" + hex + "  bad\\escape"));
+    }
+}
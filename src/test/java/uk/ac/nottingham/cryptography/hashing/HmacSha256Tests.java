@@ -0,0 +1,50 @@
+package uk.ac.nottingham.cryptography.hashing;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static uk.ac.nottingham.cryptography.hashing.SHA256Tests.hexToBytes;
+
+class HmacSha256Tests {
+
+    @Test
+    void rfc4231Tests() {
+        byte[] longKey = new byte[131];
+        Arrays.fill(longKey, (byte) 0xaa);
+
+        byte[][] keys = new byte[][] {
+                hexToBytes("0b0b0b0b0b0b0b0b0b0b0b0b0b0b0b0b0b0b0b0b"),
+                "Jefe".getBytes(),
+                longKey,
+                longKey
+        };
+
+        byte[][] messages = new byte[][] {
+                "Hi There".getBytes(),
+                "what do ya want for nothing?".getBytes(),
+                "Test Using Larger Than Block-Size Key - Hash Key First".getBytes(),
+                ("This is a test using a larger than block-size key and a larger than block-size data. " +
+                        "The key needs to be hashed before being used by the HMAC algorithm.").getBytes()
+        };
+
+        byte[][] outputs = new byte[][] {
+                hexToBytes("b0344c61d8db38535ca8afceaf0bf12b881dc200c9833da726e9376c2e32cff7"),
+                hexToBytes("5bdcc146bf60754e6a042426089575c75a003f089d2739839dec58b964ec3843"),
+                hexToBytes("60e431591ee0b67f0d8a26aacbf5b77f8e0bc6213728c5140546040f0ee37f54"),
+                hexToBytes("9b09ffa71b942fcb27635fbcd5b0e944bfdc63644f0713938a7f51535c3a35e2")
+        };
+
+        Sha256Hasher hasher = new Sha256Hasher();
+        for (int i = 0; i < keys.length; i++) {
+            HmacSha256 hmac = new HmacSha256(keys[i]);
+            assertArrayEquals(outputs[i], hmac.mac(messages[i]));
+
+            // Reusing one hasher across keys and calls
+            byte[] out = new byte[HmacSha256.MAC_LENGTH + 4];
+            hmac.macInto(hasher, messages[i], 0, messages[i].length, out, 4);
+            assertArrayEquals(outputs[i], Arrays.copyOfRange(out, 4, out.length));
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package uk.ac.nottingham.cryptography.hashing;
+
+import org.junit.jupiter.api.Test;
+import uk.ac.nottingham.cryptography.banking.Bank;
+import uk.ac.nottingham.cryptography.banking.InvalidTransactionException;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LengthExtenderTests {
+
+    @Test
+    void gluePaddingTest() {
+        // The padding hard coded in Main, for a 32 byte key and 87 byte message
+        assertArrayEquals(hexToBytes("8000000000000003b8"), LengthExtender.gluePadding(119));
+        for (long length = 0; length < 200; length++) {
+            assertEquals(0, (length + LengthExtender.gluePadding(length).length) % 64);
+        }
+    }
+
+    @Test
+    void extendTest() throws IOException {
+        // Extensions must match hashing the extended message directly, for short and multi block suffixes
+        byte[] key = "5a95b9feba8efda0b6c3c6a96ad05a87".getBytes(StandardCharsets.UTF_8);
+        byte[] message = "amount:1000".getBytes(StandardCharsets.UTF_8);
+        byte[] token = SHA256.digest(new ByteArrayInputStream(concat(key, message)));
+
+        for (int suffixLength : new int[] { 0, 14, 64, 150 }) {
+            byte[] suffix = new byte[suffixLength];
+            LengthExtender extender = new LengthExtender(message, token, suffix);
+            List<LengthExtender.Extension> extensions = extender.extendAll(0, 70);
+            assertEquals(71, extensions.size());
+
+            LengthExtender.Extension extension = extensions.get(key.length);
+            assertEquals(key.length, extension.getKeyLength());
+            byte[] expected = SHA256.digest(new ByteArrayInputStream(concat(key, extension.getMessage())));
+            assertArrayEquals(expected, extension.getToken());
+        }
+    }
+
+    @Test
+    void findValidTest() throws IOException {
+        // Unknown key length recovered against Bank as the oracle
+        Bank bank = new Bank();
+        byte[] message = "from:20-60-40.23311492;to:35-01-17.11911597;stoken:7a2afc675906eb180ba2e18b;amount:1000"
+                .getBytes(StandardCharsets.UTF_8);
+        byte[] token = bank.authenticateTransaction(message);
+        byte[] suffix = ";amount:100000".getBytes(StandardCharsets.UTF_8);
+
+        Optional<LengthExtender.Extension> found = new LengthExtender(message, token, suffix)
+                .findValid(1, 512, extension -> {
+                    try {
+                        return bank.verifyTransaction(extension.getMessage(), extension.getToken())
+                                .getAmount().equals("100000");
+                    } catch (InvalidTransactionException ex) {
+                        return false;
+                    }
+                });
+        assertTrue(found.isPresent());
+        assertEquals(32, found.get().getKeyLength());
+    }
+
+    private static byte[] hexToBytes(String hex) {
+        return SHA256Tests.hexToBytes(hex);
+    }
+
+    private static byte[] concat(byte[] a, byte[] b) {
+        byte[] output = new byte[a.length + b.length];
+        System.arraycopy(a, 0, output, 0, a.length);
+        System.arraycopy(b, 0, output, a.length, b.length);
+        return output;
+    }
+}
@@ -0,0 +1,104 @@
+package uk.ac.nottingham.cryptography.hashing;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Random;
+import java.util.zip.CRC32;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LogHasherTests {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void checkpointTests() throws NoSuchAlgorithmException {
+        Random random = new Random(5);
+        byte[] data = new byte[1000];
+        random.nextBytes(data);
+        byte[] expected = MessageDigest.getInstance("SHA-256").digest(data);
+        for (int split : new int[] { 0, 1, 63, 64, 65, 640, 999, 1000 }) {
+            Sha256Hasher hasher = new Sha256Hasher();
+            hasher.update(data, 0, split);
+            HashCheckpoint checkpoint = HashCheckpoint.fromBytes(hasher.checkpoint().toBytes());
+            assertEquals(split, checkpoint.getLength());
+            assertEquals(split % 64, checkpoint.getPartialBlock().length);
+
+            Sha256Hasher resumed = new Sha256Hasher();
+            resumed.restore(checkpoint);
+            resumed.update(data, split, data.length - split);
+            assertArrayEquals(expected, resumed.digest());
+        }
+
+        byte[] bytes = new Sha256Hasher().checkpoint().toBytes();
+        bytes[5] ^= 1;
+        assertThrows(IllegalArgumentException.class, () -> HashCheckpoint.fromBytes(bytes));
+        assertThrows(IllegalArgumentException.class, () -> HashCheckpoint.fromBytes(new byte[10]));
+
+        // Well formed with a valid CRC, but the length says 70 bytes while only 5 are buffered rather than 6
+        Sha256Hasher hasher = new Sha256Hasher();
+        hasher.update(data, 0, 69);
+        byte[] inconsistent = hasher.checkpoint().toBytes();
+        ByteBuffer.wrap(inconsistent).putLong(4, 70);
+        CRC32 crc = new CRC32();
+        crc.update(inconsistent, 0, inconsistent.length - 8);
+        ByteBuffer.wrap(inconsistent).putLong(inconsistent.length - 8, crc.getValue());
+        IllegalArgumentException ex = assertThrows(IllegalArgumentException.class,
+                () -> HashCheckpoint.fromBytes(inconsistent));
+        assertTrue(ex.getMessage().contains("invalid for length 70"), ex.getMessage());
+    }
+
+    @Test
+    void appendTests() throws IOException, NoSuchAlgorithmException {
+        Path log = dir.resolve("ledger.log");
+        Files.write(log, new byte[0]);
+        LogHasher hasher = new LogHasher(log);
+        ByteArrayOutputStream contents = new ByteArrayOutputStream();
+        Random random = new Random(9);
+
+        // Appends of awkward sizes, including one large enough to be memory mapped
+        int[] appends = new int[] { 0, 10, 54, 1, 64, 100, (int) SHA256.MAPPED_THRESHOLD + 7, 3 };
+        for (int append : appends) {
+            byte[] data = new byte[append];
+            random.nextBytes(data);
+            Files.write(log, data, StandardOpenOption.APPEND);
+            contents.write(data);
+
+            LogHasher.Result result = hasher.digest();
+            assertArrayEquals(MessageDigest.getInstance("SHA-256").digest(contents.toByteArray()), result.getDigest());
+            assertEquals(contents.size(), result.getLength());
+            assertEquals(append, result.getBytesHashed());
+        }
+        assertTrue(Files.exists(hasher.getCheckpointFile()));
+
+        // A fresh hasher picks up the saved checkpoint
+        assertEquals(0, new LogHasher(log).digest().getBytesHashed());
+
+        hasher.reset();
+        assertEquals(contents.size(), hasher.digest().getBytesHashed());
+    }
+
+    @Test
+    void changedLogTests() throws IOException {
+        Path log = dir.resolve("ledger.log");
+        Files.write(log, "first line\nsecond line\n".getBytes());
+        LogHasher hasher = new LogHasher(log, dir.resolve("ledger.ck"));
+        hasher.digest();
+
+        Files.write(log, "first line\nsecond LINE\n".getBytes());
+        assertThrows(IOException.class, hasher::digest);
+
+        Files.write(log, "first line\n".getBytes());
+        assertThrows(IOException.class, hasher::digest);
+    }
+}
@@ -0,0 +1,75 @@
+package uk.ac.nottingham.cryptography.hashing;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class NonceSearchTests {
+
+    @Test
+    void lowestNonceTests() throws InterruptedException {
+        // Prefix lengths put the nonce in one final block, across two, or entirely before a padding block
+        Random random = new Random(3);
+        NonceSearch.Target target = NonceSearch.Target.leadingZeroBits(8);
+        for (int length : new int[] { 0, 1, 47, 48, 55, 56, 60, 63, 64, 100, 130 }) {
+            byte[] prefix = new byte[length];
+            random.nextBytes(prefix);
+
+            long expected = -1;
+            for (long nonce = 0; nonce < 1 << 16; nonce++) {
+                if (NonceSearch.verify(prefix, nonce, target)) {
+                    expected = nonce;
+                    break;
+                }
+            }
+            assertTrue(expected >= 0);
+
+            for (int threads : new int[] { 1, 3 }) {
+                NonceSearch.Result result = new NonceSearch(prefix, target).threads(threads).chunkSize(17).solve();
+                assertEquals(NonceSearch.Result.Status.FOUND, result.getStatus());
+                assertEquals(expected, result.getNonce(), "prefix length " + length);
+                assertArrayEquals(NonceSearch.hash(prefix, expected), result.getHash());
+                assertTrue(result.getHashes() > 0);
+            }
+        }
+    }
+
+    @Test
+    void targetTests() throws InterruptedException {
+        byte[] zero = new byte[32];
+        byte[] max = new byte[32];
+        Arrays.fill(max, (byte) 0xff);
+        assertTrue(NonceSearch.Target.leadingZeroBits(0).isMetBy(max));
+        assertTrue(NonceSearch.Target.leadingZeroBits(256).isMetBy(zero));
+        byte[] oneBit = zero.clone();
+        oneBit[1] = 0x40;
+        assertTrue(NonceSearch.Target.leadingZeroBits(9).isMetBy(oneBit));
+        assertFalse(NonceSearch.Target.leadingZeroBits(10).isMetBy(oneBit));
+        assertTrue(NonceSearch.Target.threshold(oneBit).isMetBy(oneBit));
+
+        // Nothing meets the target in a short range, or the search is cancelled first
+        byte[] prefix = "challenge".getBytes();
+        NonceSearch.Result exhausted = new NonceSearch(prefix, NonceSearch.Target.leadingZeroBits(64))
+                .range(100, 1100).threads(2).solve();
+        assertEquals(NonceSearch.Result.Status.EXHAUSTED, exhausted.getStatus());
+        assertEquals(1000, exhausted.getHashes());
+        assertThrows(IllegalStateException.class, exhausted::getNonce);
+
+        // Changing the settings does not reach a search that has already started
+        NonceSearch settings = new NonceSearch(prefix, NonceSearch.Target.leadingZeroBits(64))
+                .range(100, 1100).chunkSize(10).threads(2);
+        NonceSearch.Search started = settings.start();
+        settings.range(0, 5).chunkSize(1 << 20);
+        NonceSearch.Result unchanged = started.await();
+        assertEquals(NonceSearch.Result.Status.EXHAUSTED, unchanged.getStatus());
+        assertEquals(1000, unchanged.getHashes());
+
+        NonceSearch.Search search = new NonceSearch(prefix, NonceSearch.Target.leadingZeroBits(128)).threads(2).start();
+        search.cancel();
+        assertEquals(NonceSearch.Result.Status.CANCELLED, search.await().getStatus());
+        assertTrue(search.isDone());
+    }
+}
@@ -1,10 +1,19 @@
 package uk.ac.nottingham.cryptography.hashing;
 
+import jdk.incubator.vector.IntVector;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.Arrays;
+import java.util.Random;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -126,6 +135,224 @@ class SHA256Tests {
         }
     }
 
+    @Test
+    void hasherTests() {
+        // Incremental updates of every size must give the same digest as a single update
+        byte[] message = new byte[300];
+        for (int i = 0; i < message.length; i++) {
+            message[i] = (byte) (i * 7);
+        }
+        Sha256Hasher hasher = new Sha256Hasher();
+        hasher.update(message);
+        byte[] expected = hasher.digest();
+
+        for (int chunk = 1; chunk <= 130; chunk++) {
+            for (int i = 0; i < message.length; i += chunk) {
+                hasher.update(message, i, Math.min(chunk, message.length - i));
+            }
+            assertArrayEquals(expected, hasher.digest());
+        }
+
+        for (byte b : message) {
+            hasher.update(b);
+        }
+        byte[] output = new byte[40];
+        hasher.digestInto(output, 8);
+        assertArrayEquals(expected, Arrays.copyOfRange(output, 8, 40));
+
+        // Digest resets the hasher, so it can be reused directly
+        hasher.update("abc".getBytes());
+        assertArrayEquals(hexToBytes("ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad"), hasher.digest());
+    }
+
+    @Test
+    void continueDigestTest() throws IOException {
+        // h(m) extended with x must equal h(m|padding|x)
+        byte[] message = "abc".getBytes();
+        byte[] padding = new byte[61];
+        padding[0] = (byte) 0x80;
+        padding[60] = 24;
+        byte[] suffix = ";amount:100000".getBytes();
+
+        byte[] extended = new byte[64 + suffix.length];
+        System.arraycopy(message, 0, extended, 0, 3);
+        System.arraycopy(padding, 0, extended, 3, 61);
+        System.arraycopy(suffix, 0, extended, 64, suffix.length);
+
+        byte[] token = SHA256.digest(new ByteArrayInputStream(message));
+        byte[] extendedToken = SHA256.continueDigest(new ByteArrayInputStream(suffix), token, 64);
+        assertArrayEquals(SHA256.digest(new ByteArrayInputStream(extended)), extendedToken);
+    }
+
+    @Test
+    void compressionEngineTests() {
+        // The unrolled engine must match the reference engine for any state and block
+        Random random = new Random(7);
+        CompressionEngine reference = CompressionEngine.reference();
+        CompressionEngine unrolled = CompressionEngine.unrolled();
+        byte[] block = new byte[64 + 3];
+        for (int i = 0; i < 1000; i++) {
+            random.nextBytes(block);
+            int[] expected = random.ints(8).toArray();
+            int[] actual = Arrays.copyOf(expected, 8);
+            reference.compress(expected, block, 3);
+            unrolled.compress(actual, block, 3);
+            assertArrayEquals(expected, actual);
+
+            ByteBuffer direct = ByteBuffer.allocateDirect(block.length).put(block);
+            unrolled.compress(actual, direct, 3);
+            reference.compress(expected, direct, 3);
+            assertArrayEquals(expected, actual);
+        }
+
+        byte[] a = new byte[1000000];
+        Arrays.fill(a, (byte)0b01100001);
+        for (CompressionEngine engine : new CompressionEngine[] { reference, unrolled }) {
+            Sha256Hasher hasher = new Sha256Hasher(engine);
+            hasher.update(a);
+            assertArrayEquals(hexToBytes("cdc76e5c9914fb9281a1c7e284d73e67f1809a48a497200e046d39ccc7112cd0"), hasher.digest());
+        }
+    }
+
+    @Test
+    void batchDigestTests() {
+        // Messages of differing lengths, including ones that need an extra padding block
+        Random random = new Random(3);
+        byte[][] messages = new byte[37][];
+        byte[][] expected = new byte[messages.length][];
+        Sha256Hasher hasher = new Sha256Hasher();
+        for (int i = 0; i < messages.length; i++) {
+            messages[i] = new byte[i == 0 ? 0 : random.nextInt(300)];
+            random.nextBytes(messages[i]);
+            hasher.update(messages[i]);
+            expected[i] = hasher.digest();
+        }
+
+        byte[][] out = new byte[messages.length][];
+        SHA256.digestBatch(messages, out);
+        assertArrayEquals(expected, out);
+
+        BatchHasher[] hashers = new BatchHasher[] {
+                new ScalarBatchHasher(),
+                new VectorBatchHasher(IntVector.SPECIES_128),
+                new VectorBatchHasher(IntVector.SPECIES_256),
+                new VectorBatchHasher(IntVector.SPECIES_512)
+        };
+        for (BatchHasher batchHasher : hashers) {
+            out = new byte[messages.length][32];
+            batchHasher.digest(messages, out);
+            assertArrayEquals(expected, out);
+        }
+    }
+
+    @Test
+    void gatherDigestTests() throws NoSuchAlgorithmException {
+        // Segments split at every boundary must hash as the concatenated message
+        byte[] message = new byte[200];
+        new Random(4).nextBytes(message);
+        byte[] expected = MessageDigest.getInstance("SHA-256").digest(message);
+
+        for (int split = 0; split <= message.length; split += 7) {
+            byte[] first = Arrays.copyOfRange(message, 0, split);
+            byte[] second = Arrays.copyOfRange(message, split, message.length);
+            assertArrayEquals(expected, SHA256.digest(first, second));
+
+            ByteBuffer direct = ByteBuffer.allocateDirect(second.length);
+            direct.put(second).flip();
+            ByteBuffer littleEndian = ByteBuffer.wrap(first).asReadOnlyBuffer().order(ByteOrder.LITTLE_ENDIAN);
+            assertArrayEquals(expected, SHA256.digest(littleEndian, direct));
+            assertFalse(direct.hasRemaining());
+            assertEquals(ByteOrder.LITTLE_ENDIAN, littleEndian.order());
+        }
+
+        // Direct buffers are read through a big endian view, so their order is untouched even if an engine throws
+        ByteBuffer direct = ByteBuffer.allocateDirect(message.length).put(message).flip().order(ByteOrder.LITTLE_ENDIAN);
+        Sha256Hasher hasher = new Sha256Hasher();
+        hasher.update(direct);
+        assertArrayEquals(expected, hasher.digest());
+        assertEquals(ByteOrder.LITTLE_ENDIAN, direct.order());
+        CompressionEngine failing = new CompressionEngine() {
+            @Override
+            public void compress(int[] state, byte[] block, int offset) {
+                throw new IllegalStateException("engine");
+            }
+
+            @Override
+            public void compress(int[] state, ByteBuffer block, int offset) {
+                throw new IllegalStateException("engine");
+            }
+        };
+        direct.rewind();
+        assertThrows(IllegalStateException.class, () -> new Sha256Hasher(failing).update(direct));
+        assertEquals(ByteOrder.LITTLE_ENDIAN, direct.order());
+    }
+
+    @Test
+    void paddingLengthTest() throws IOException {
+        // Message lengths beyond 2^32 bits must not overflow in the length field
+        long length = (1L << 32) + 64;
+        PaddedInputStream ps = new PaddedInputStream(new ByteArrayInputStream(new byte[0]), length);
+        byte[] block = new byte[64];
+        assertEquals(64, ps.read(block));
+        assertEquals(length * 8, ByteBuffer.wrap(block, 56, 8).getLong());
+    }
+
+    @Test
+    void fileDigestTests(@TempDir Path dir) throws IOException, NoSuchAlgorithmException {
+        // Both the read and memory mapped paths must agree with the JDK
+        Random random = new Random(1);
+        int[] sizes = new int[] { 0, 55, 64, 1000, (int) SHA256.MAPPED_THRESHOLD + 13 };
+        for (int size : sizes) {
+            byte[] data = new byte[size];
+            random.nextBytes(data);
+            Path file = dir.resolve("data-" + size);
+            Files.write(file, data);
+
+            byte[] expected = MessageDigest.getInstance("SHA-256").digest(data);
+            assertArrayEquals(expected, SHA256.digest(file));
+
+            ByteBuffer direct = ByteBuffer.allocateDirect(size);
+            direct.put(data).flip();
+            Sha256Hasher hasher = new Sha256Hasher();
+            hasher.update(direct);
+            assertArrayEquals(expected, hasher.digest());
+        }
+    }
+
+    @Test
+    void fixedLengthTests() throws NoSuchAlgorithmException {
+        MessageDigest md = MessageDigest.getInstance("SHA-256");
+        Random random = new Random(22);
+        // Every position of the padding relative to the block boundary, with and without an extra block
+        for (int length = 0; length <= 200; length++) {
+            byte[] message = new byte[length + 3];
+            random.nextBytes(message);
+            FixedLengthHasher hasher = new FixedLengthHasher(length);
+            byte[] expected = md.digest(Arrays.copyOfRange(message, 3, length + 3));
+
+            byte[] out = new byte[Sha256Hasher.DIGEST_LENGTH + 1];
+            hasher.digestInto(message, 3, out, 1);
+            assertArrayEquals(expected, Arrays.copyOfRange(out, 1, out.length), "length " + length);
+            assertArrayEquals(expected, hasher.digest(Arrays.copyOfRange(message, 3, length + 3)));
+
+            // Engines other than the unrolled one take the completed tail and padding blocks
+            out = new byte[Sha256Hasher.DIGEST_LENGTH];
+            new FixedLengthHasher(length, CompressionEngine.reference()).digestInto(message, 3, out, 0);
+            assertArrayEquals(expected, out, "reference engine, length " + length);
+        }
+
+        byte[] digest = md.digest("abc".getBytes());
+        assertArrayEquals(md.digest(digest), SHA256.digest32(digest));
+        byte[] pair = new byte[64];
+        random.nextBytes(pair);
+        assertArrayEquals(md.digest(pair), SHA256.digest64(pair));
+
+        assertThrows(IllegalArgumentException.class, () -> SHA256.digest32(pair));
+        assertThrows(IndexOutOfBoundsException.class,
+                () -> new FixedLengthHasher(32).digestInto(pair, 40, new byte[32], 0));
+        assertThrows(IllegalArgumentException.class, () -> new FixedLengthHasher(-1));
+    }
+
     public static byte[] hexToBytes(String s) {
         int len = s.length();
         byte[] data = new byte[len / 2];
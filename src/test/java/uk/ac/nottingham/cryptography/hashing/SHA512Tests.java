@@ -0,0 +1,109 @@
+package uk.ac.nottingham.cryptography.hashing;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SHA512Tests {
+
+    @Test
+    void initialiseStateTest() {
+        long[] state = new long[8];
+        SHA512.initialiseState(state);
+        assertEquals(0x6a09e667f3bcc908L, state[0]);
+        assertEquals(0x5be0cd19137e2179L, state[7]);
+    }
+
+    @Test
+    void knownDigestTests() throws IOException {
+        byte[] abc = "abc".getBytes();
+        assertEquals("ddaf35a193617abacc417349ae20413112e6fa4e89a97ea20a9eeee64b55d39a"
+                        + "2192992a274fc1a836ba3c23a3feebbd454d4423643ce80e2a9ac94fa54ca49f",
+                HexFormat.of().formatHex(SHA512.digest(new ByteArrayInputStream(abc))));
+        assertEquals("53048e2681941ef99b2e29b76b4c7dabe4c2d0c634fc6d46e0e2f13107e7af23",
+                HexFormat.of().formatHex(SHA512.digest512_256(new ByteArrayInputStream(abc))));
+    }
+
+    @Test
+    void digestTests() throws IOException, NoSuchAlgorithmException {
+        // Sizes either side of the 112 byte point where the length no longer fits in the final block
+        Random random = new Random(7);
+        int[] sizes = new int[] { 0, 1, 111, 112, 113, 127, 128, 129, 255, 256, 1000, 10000 };
+        Sha512Hasher hasher = new Sha512Hasher();
+        Sha512Hasher truncated = Sha512Hasher.sha512_256();
+        for (int size : sizes) {
+            byte[] data = new byte[size];
+            random.nextBytes(data);
+            byte[] expected = MessageDigest.getInstance("SHA-512").digest(data);
+            byte[] expected256 = MessageDigest.getInstance("SHA-512/256").digest(data);
+
+            assertArrayEquals(expected, SHA512.digest(new ByteArrayInputStream(data)));
+            assertArrayEquals(expected256, SHA512.digest512_256(new ByteArrayInputStream(data)));
+            int split = size / 3;
+            assertArrayEquals(expected, SHA512.digest(Arrays.copyOf(data, split),
+                    Arrays.copyOfRange(data, split, size)));
+
+            for (int i = 0; i < size; i++) {
+                hasher.update(data[i]);
+            }
+            assertArrayEquals(expected, hasher.digest());
+
+            // Direct buffers are read a word at a time, after topping up the block the array part left partial
+            ByteBuffer direct = ByteBuffer.allocateDirect(size - split).order(ByteOrder.LITTLE_ENDIAN);
+            direct.put(data, split, size - split).flip();
+            truncated.update(data, 0, split);
+            truncated.update(direct);
+            assertFalse(direct.hasRemaining());
+            assertEquals(ByteOrder.LITTLE_ENDIAN, direct.order());
+            assertArrayEquals(expected256, truncated.digest());
+        }
+    }
+
+    @Test
+    void continueDigestTest() throws IOException, NoSuchAlgorithmException {
+        // Continuing from a digest matches hashing the original message, its padding and the suffix
+        byte[] original = "from:20-60-40.23311492;to:35-01-17.11911597;amount:10".getBytes();
+        byte[] suffix = ";amount:100000".getBytes();
+        byte[] state = SHA512.digest(new ByteArrayInputStream(original));
+
+        byte[] padded = new byte[Sha512Hasher.BLOCK_LENGTH];
+        PaddedInputStream ps = new PaddedInputStream(new ByteArrayInputStream(original), 0,
+                Sha512Hasher.BLOCK_LENGTH);
+        assertEquals(Sha512Hasher.BLOCK_LENGTH, ps.read(padded));
+        assertEquals(-1, ps.read(padded));
+        assertEquals(original.length * 8L, ByteBuffer.wrap(padded, 120, 8).getLong());
+        assertEquals(0, ByteBuffer.wrap(padded, 112, 8).getLong());
+
+        MessageDigest jdk = MessageDigest.getInstance("SHA-512");
+        jdk.update(padded);
+        jdk.update(suffix);
+        assertArrayEquals(jdk.digest(),
+                SHA512.continueDigest(new ByteArrayInputStream(suffix), state, padded.length));
+
+        assertThrows(UnsupportedOperationException.class, () -> Sha512Hasher.sha512_256().reset(state, 128));
+    }
+
+    @Test
+    void paddingLengthTest() throws IOException {
+        // Lengths of 2^61 bytes or more carry into the high word of the 128-bit length
+        long length = (1L << 61) + 128;
+        PaddedInputStream ps = new PaddedInputStream(new ByteArrayInputStream(new byte[0]), length,
+                Sha512Hasher.BLOCK_LENGTH);
+        byte[] block = new byte[128];
+        assertEquals(128, ps.read(block));
+        assertEquals(1, ByteBuffer.wrap(block, 112, 8).getLong());
+        assertEquals(128 * 8, ByteBuffer.wrap(block, 120, 8).getLong());
+        assertThrows(IllegalArgumentException.class,
+                () -> new PaddedInputStream(new ByteArrayInputStream(new byte[0]), 0, 96));
+    }
+}
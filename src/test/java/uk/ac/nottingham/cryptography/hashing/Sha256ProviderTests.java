@@ -0,0 +1,63 @@
+package uk.ac.nottingham.cryptography.hashing;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.security.DigestException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class Sha256ProviderTests {
+
+    @Test
+    void messageDigestTest() throws NoSuchAlgorithmException, DigestException {
+        MessageDigest md = MessageDigest.getInstance("SHA-256", new Sha256Provider());
+        assertEquals(Sha256Provider.NAME, md.getProvider().getName());
+        assertEquals(32, md.getDigestLength());
+        assertArrayEquals(SHA256Tests.hexToBytes("ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad"),
+                md.digest("abc".getBytes()));
+
+        // Heap and direct buffers, and digesting into an offset
+        byte[] data = new byte[1000];
+        new Random(5).nextBytes(data);
+        byte[] expected = MessageDigest.getInstance("SHA-256").digest(data);
+
+        md.update(ByteBuffer.wrap(data, 0, 300));
+        ByteBuffer direct = ByteBuffer.allocateDirect(700);
+        direct.put(data, 300, 700).flip();
+        md.update(direct);
+        assertFalse(direct.hasRemaining());
+
+        byte[] out = new byte[40];
+        assertEquals(32, md.digest(out, 8, 32));
+        assertArrayEquals(expected, Arrays.copyOfRange(out, 8, 40));
+        assertThrows(DigestException.class, () -> md.digest(out, 0, 16));
+    }
+
+    @Test
+    void cloneTest() throws NoSuchAlgorithmException, CloneNotSupportedException {
+        // A shared prefix hashed once, then finished with different suffixes from clones
+        byte[] prefix = new byte[1000 + 17];
+        new Random(6).nextBytes(prefix);
+        MessageDigest md = MessageDigest.getInstance("SHA-256", new Sha256Provider());
+        md.update(prefix);
+
+        MessageDigest jdk = MessageDigest.getInstance("SHA-256");
+        for (int i = 0; i < 10; i++) {
+            byte[] suffix = ("suffix " + i).getBytes();
+            MessageDigest copy = (MessageDigest) md.clone();
+            copy.update(suffix);
+
+            jdk.update(prefix);
+            jdk.update(suffix);
+            assertArrayEquals(jdk.digest(), copy.digest());
+        }
+
+        jdk.update(prefix);
+        assertArrayEquals(jdk.digest(), md.digest());
+    }
+}
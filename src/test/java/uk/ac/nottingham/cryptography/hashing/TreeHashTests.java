@@ -0,0 +1,102 @@
+package uk.ac.nottingham.cryptography.hashing;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TreeHashTests {
+
+    @Test
+    void treeHashTest() {
+        // SHA256(0x00), the RFC 6962 hash of an empty leaf
+        assertArrayEquals(SHA256Tests.hexToBytes("6e340b9cffb37a989ca544e6bb780a2c78901d3fb33738768511a30617afa01d"),
+                new TreeHash().digest(new byte[0]));
+
+        // Three leaves split 2 + 1
+        byte[] data = "abcdefgh".getBytes();
+        byte[] a = SHA256.digest(new byte[] { 0 }, "abc".getBytes());
+        byte[] b = SHA256.digest(new byte[] { 0 }, "def".getBytes());
+        byte[] c = SHA256.digest(new byte[] { 0 }, "gh".getBytes());
+        byte[] ab = SHA256.digest(new byte[] { 1 }, a, b);
+        byte[] expected = SHA256.digest(new byte[] { 1 }, ab, c);
+        assertArrayEquals(expected, new TreeHash(3).digest(data));
+
+        // A single leaf is still separated from plain SHA-256
+        assertFalse(Arrays.equals(SHA256.digest(data), new TreeHash().digest(data)));
+        assertThrows(IllegalArgumentException.class, () -> new TreeHash(0));
+    }
+
+    @Test
+    void deterministicTest(@TempDir Path dir) throws IOException {
+        byte[] data = new byte[1 << 20];
+        new Random(3).nextBytes(data);
+        Path file = dir.resolve("data");
+        Files.write(file, data);
+
+        ForkJoinPool single = new ForkJoinPool(1);
+        ForkJoinPool many = new ForkJoinPool(4);
+        try {
+            for (int leafSize : new int[] { 1000, 4096, 1 << 20, 1 << 21 }) {
+                byte[] expected = new TreeHash(leafSize, single).digest(data);
+                assertArrayEquals(expected, new TreeHash(leafSize, many).digest(data));
+                assertArrayEquals(expected, new TreeHash(leafSize, many).digest(file));
+                assertArrayEquals(expected, new TreeHash(leafSize).digest(file));
+            }
+        } finally {
+            single.shutdown();
+            many.shutdown();
+        }
+    }
+
+    @Test
+    void inclusionProofTest() {
+        Random random = new Random(5);
+        for (int leaves = 1; leaves <= 17; leaves++) {
+            byte[] data = new byte[leaves * 10 - 3];
+            random.nextBytes(data);
+            TreeHash.Tree tree = new TreeHash(10).hash(data);
+            byte[] root = tree.getRoot();
+            assertEquals(leaves, tree.getLeafCount());
+
+            for (int i = 0; i < leaves; i++) {
+                InclusionProof proof = tree.prove(i);
+                byte[] leaf = Arrays.copyOfRange(data, i * 10, Math.min(data.length, i * 10 + 10));
+                assertTrue(proof.verifyLeaf(leaf, root), leaves + " leaves, leaf " + i);
+
+                leaf[0] ^= 1;
+                assertFalse(proof.verifyLeaf(leaf, root));
+                leaf[0] ^= 1;
+                InclusionProof moved = new InclusionProof(10, data.length, (i + 1) % leaves, leaves, proof.getPath());
+                assertEquals(leaves == 1, moved.verifyLeaf(leaf, root));
+            }
+        }
+    }
+
+    @Test
+    void verifyLeafTest(@TempDir Path dir) throws IOException {
+        byte[] data = new byte[100000];
+        new Random(7).nextBytes(data);
+        Path file = dir.resolve("data");
+        Files.write(file, data);
+
+        TreeHash treeHash = new TreeHash(4096);
+        TreeHash.Tree tree = treeHash.hash(file);
+        byte[] root = tree.getRoot();
+        InclusionProof first = tree.prove(0);
+        InclusionProof changed = tree.prove(20);
+        assertTrue(TreeHash.verifyLeaf(file, changed, root));
+
+        data[20 * 4096 + 5] ^= 1;
+        Files.write(file, data);
+        assertFalse(TreeHash.verifyLeaf(file, changed, root));
+        assertTrue(TreeHash.verifyLeaf(file, first, root));
+    }
+}
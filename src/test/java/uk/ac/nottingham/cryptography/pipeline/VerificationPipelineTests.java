@@ -0,0 +1,153 @@
+package uk.ac.nottingham.cryptography.pipeline;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import uk.ac.nottingham.cryptography.banking.Bank;
+import uk.ac.nottingham.cryptography.banking.FailureReason;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class VerificationPipelineTests {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void pipelineTests() throws IOException, InterruptedException {
+        Bank bank = new Bank();
+        Map<Long, FailureReason> expected = new TreeMap<>();
+        StringBuilder log = new StringBuilder();
+        int lines = 5000;
+        for (int i = 1; i <= lines; i++) {
+            String message = "from:20-60-40.23311492;to:35-01-17.11911597;stoken:7a2afc675906eb180ba2e18b;amount:" + i;
+            String token = HexFormat.of().formatHex(bank.authenticateTransaction(message.getBytes(StandardCharsets.UTF_8)));
+            FailureReason reason = null;
+            if (i % 7 == 0) {
+                token = token.replace(token.charAt(0), token.charAt(0) == 'f' ? 'e' : 'f');
+                reason = FailureReason.INVALID_TOKEN;
+            } else if (i % 11 == 0) {
+                token = token.substring(1);
+                reason = FailureReason.MALFORMED_RECORD;
+            } else if (i % 13 == 0) {
+                message = "amount" + i;
+                token = HexFormat.of().formatHex(bank.authenticateTransaction(message.getBytes(StandardCharsets.UTF_8)));
+                reason = FailureReason.MALFORMED_TRANSACTION;
+            }
+            expected.put((long) i, reason);
+            log.append(message).append('\t').append(token).append(i % 2 == 0 ? "\r\n" : "\n");
+        }
+        // Blank lines are skipped but still counted, and the last line has no newline
+        log.append("\n");
+        log.append("no separator");
+        expected.put((long) lines + 2, FailureReason.MALFORMED_RECORD);
+        Path file = dir.resolve("transactions.log");
+        Files.write(file, log.toString().getBytes(StandardCharsets.UTF_8));
+
+        // Small chunks and batches exercise line compaction and reordering
+        PipelineOptions[] configurations = new PipelineOptions[] {
+                new PipelineOptions(),
+                new PipelineOptions().chunkSize(1000).batchSize(7).queueCapacity(2).verifyThreads(3).parseThreads(2),
+                new PipelineOptions().ordered(false).batchSize(13).decodeThreads(2).verifyThreads(4)
+        };
+        for (PipelineOptions options : configurations) {
+            List<Long> order = new ArrayList<>();
+            Map<Long, FailureReason> actual = new TreeMap<>();
+            PipelineStats stats = new VerificationPipeline(bank, options).run(file, record -> {
+                order.add(record.getLineNumber());
+                actual.put(record.getLineNumber(),
+                        record.getResult().isValid() ? null : record.getResult().getFailureReason());
+                if (record.getResult().isValid()) {
+                    assertEquals(Long.toString(record.getLineNumber()), record.getResult().getTransaction().getAmount());
+                }
+            });
+
+            assertEquals(expected, actual);
+            if (options.isOrdered()) {
+                assertEquals(new ArrayList<>(expected.keySet()), order);
+            }
+            assertEquals(expected.size(), stats.getRecords());
+            assertEquals(expected.values().stream().filter(r -> r == null).count(), stats.getValid());
+            for (FailureReason reason : FailureReason.values()) {
+                assertEquals(expected.values().stream().filter(r -> r == reason).count(), stats.getFailures(reason));
+            }
+            assertEquals(Files.size(file), stats.getBytesRead());
+        }
+    }
+
+    @Test
+    void pipelineFailureTests() throws IOException {
+        Path file = dir.resolve("long.log");
+        Files.write(file, ("x".repeat(100) + "\n").repeat(10).getBytes(StandardCharsets.UTF_8));
+
+        VerificationPipeline small = new VerificationPipeline(new Bank(), new PipelineOptions().chunkSize(64));
+        assertThrows(IOException.class, () -> small.run(file, record -> { }));
+
+        VerificationPipeline pipeline = new VerificationPipeline(new Bank());
+        IllegalStateException ex = assertThrows(IllegalStateException.class,
+                () -> pipeline.run(file, record -> { throw new IllegalStateException("sink"); }));
+        assertEquals("sink", ex.getMessage());
+    }
+
+    @Test
+    void inFlightBoundTest() throws IOException, InterruptedException {
+        StringBuilder log = new StringBuilder();
+        for (int i = 1; i <= 100; i++) {
+            log.append("amount:").append(i).append('\t').append("00".repeat(32)).append('\n');
+        }
+        Path file = dir.resolve("stalled.log");
+        Files.write(file, log.toString().getBytes(StandardCharsets.UTF_8));
+
+        // The first record stalls verification, so later batches finish first and wait to be delivered in order
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger screened = new AtomicInteger();
+        Bank bank = new Bank() {
+            @Override
+            public FailureReason screen(byte[] transaction) {
+                if (screened.getAndIncrement() == 0) {
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                return super.screen(transaction);
+            }
+        };
+        PipelineOptions options = new PipelineOptions().batchSize(1).verifyThreads(2).maxInFlightBatches(4);
+        AtomicInteger screenedWhileStalled = new AtomicInteger();
+        Thread releaser = new Thread(() -> {
+            try {
+                Thread.sleep(300);
+                screenedWhileStalled.set(screened.get());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                release.countDown();
+            }
+        });
+        releaser.start();
+
+        List<Long> order = new ArrayList<>();
+        new VerificationPipeline(bank, options).run(file, record -> order.add(record.getLineNumber()));
+        releaser.join();
+        // Batch 0 is stalled and at most three more are held back behind it, so the reader can go no further
+        assertTrue(screenedWhileStalled.get() <= 4, screenedWhileStalled.get() + " batches verified");
+        assertTrue(screenedWhileStalled.get() > 1);
+        assertEquals(100, order.size());
+        for (int i = 0; i < order.size(); i++) {
+            assertEquals(i + 1, order.get(i));
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package uk.ac.nottingham.cryptography.service;
+
+import org.junit.jupiter.api.Test;
+import uk.ac.nottingham.cryptography.banking.Bank;
+import uk.ac.nottingham.cryptography.banking.FailureReason;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class VerificationServerTests {
+
+    private static final byte[] TRANSACTION =
+            "from:20-60-40.23311492;to:35-01-17.11911597;stoken:7a2afc675906eb180ba2e18b;amount:1000"
+                    .getBytes(StandardCharsets.UTF_8);
+
+    @Test
+    void pipelinedRequestTest() throws IOException {
+        Bank bank = new Bank();
+        byte[] token = bank.authenticateTransaction(TRANSACTION);
+        byte[] forged = token.clone();
+        forged[0] ^= 1;
+        byte[] malformed = "amount".getBytes(StandardCharsets.UTF_8);
+
+        try (VerificationServer server = new VerificationServer(bank, 0).start();
+             SocketChannel channel = SocketChannel.open(new InetSocketAddress("localhost", server.getPort()))) {
+            // All three requests go out in one write
+            ByteBuffer out = ByteBuffer.allocate(1024);
+            VerificationProtocol.writeRequest(out, 7, token, TRANSACTION);
+            VerificationProtocol.writeRequest(out, 8, forged, TRANSACTION);
+            VerificationProtocol.writeRequest(out, 9, bank.authenticateTransaction(malformed), malformed);
+            out.flip();
+            while (out.hasRemaining()) {
+                channel.write(out);
+            }
+
+            ByteBuffer in = ByteBuffer.allocate(3 * VerificationProtocol.RESPONSE_LENGTH);
+            while (in.hasRemaining()) {
+                assertNotEquals(-1, channel.read(in));
+            }
+            in.flip();
+            assertEquals(7, in.getInt());
+            assertNull(VerificationProtocol.failureReason(in.get()));
+            assertEquals(8, in.getInt());
+            assertEquals(FailureReason.INVALID_TOKEN, VerificationProtocol.failureReason(in.get()));
+            assertEquals(9, in.getInt());
+            assertEquals(FailureReason.MALFORMED_TRANSACTION, VerificationProtocol.failureReason(in.get()));
+
+            // A frame that is too short for a token drops the connection
+            ByteBuffer bad = ByteBuffer.allocate(8).putInt(4).putInt(10).flip();
+            channel.write(bad);
+            assertEquals(-1, channel.read(ByteBuffer.allocate(16)));
+        }
+    }
+
+    @Test
+    void loadGeneratorTest() throws Exception {
+        Bank bank = new Bank();
+        try (VerificationServer server = new VerificationServer(bank, 0).start()) {
+            LoadGenerator.Result result = new LoadGenerator(
+                    new InetSocketAddress("localhost", server.getPort()), bank.getAuthenticationMode())
+                    .connections(2)
+                    .pipelineDepth(8)
+                    .warmup(Duration.ofMillis(100))
+                    .duration(Duration.ofMillis(300))
+                    .run();
+            assertTrue(result.getRequests() > 0);
+            assertEquals(0, result.getFailed());
+            assertTrue(result.getPercentile(50) <= result.getPercentile(99.9));
+        }
+    }
+}